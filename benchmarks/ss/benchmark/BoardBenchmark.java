@@ -0,0 +1,99 @@
+package ss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ss.gamedesign.BitBoard;
+import ss.gamedesign.Board;
+import ss.gamedesign.BoardPool;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of creating, filling, copying and serialising boards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    private SplittableRandom random;
+    private Board board;
+    private Board other;
+    private BoardPool pool;
+
+    @Setup
+    public void setUp() {
+        random = new SplittableRandom(42);
+        board = new Board(random);
+        other = new Board(random);
+        pool = new BoardPool(64);
+        pool.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.stop();
+    }
+
+    @Benchmark
+    public Board newBoard() {
+        return new Board(random);
+    }
+
+    @Benchmark
+    public Board initialiseBoard() {
+        board.initialiseBoard(random);
+        return board;
+    }
+
+    @Benchmark
+    public Board takePooledBoard() {
+        return pool.takeBoard();
+    }
+
+    @Benchmark
+    public Board deepCopy() {
+        return board.deepCopy();
+    }
+
+    @Benchmark
+    public Board copyFieldsFrom() {
+        board.copyFieldsFrom(other);
+        return board;
+    }
+
+    @Benchmark
+    public String serialise() {
+        return board.getField();
+    }
+
+    @Benchmark
+    public long computeHash() {
+        return board.computeHash();
+    }
+
+    @Benchmark
+    public int neighbourLookups() {
+        int same = 0;
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            if (board.hasSameNeighbours(i)) {
+                same++;
+            }
+            same += Board.getNeighbour(i, Board.RIGHT);
+        }
+        return same;
+    }
+}
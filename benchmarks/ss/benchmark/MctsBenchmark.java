@@ -0,0 +1,84 @@
+package ss.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ss.gamedesign.BitBoard;
+import ss.gamedesign.Board;
+import ss.gamedesign.MctsSearch;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Playout throughput of the MCTS bot for a number of search threads.
+ * Every operation is one 100 ms search on a starting board; the
+ * playouts counter reports playouts per second over all threads, divide
+ * it by the threads parameter for the playouts per second per core.
+ * For example: java -jar target/benchmarks.jar MctsBenchmark -p threads=1,2,4,8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MctsBenchmark {
+
+    private static final long BUDGET_NANOS = 100_000_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private MctsSearch search;
+    private long[] cells;
+    private int[] noBalls;
+
+    /**
+     * The counter JMH reports next to the score, as a rate per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Playouts {
+        public long playouts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            playouts = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        search = new MctsSearch(threads, new SplittableRandom(42));
+        Board board = new Board(new SplittableRandom(42));
+        cells = BitBoard.newCells();
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            BitBoard.set(cells, i, BitBoard.encode(board.getColour(i)));
+        }
+        noBalls = new int[7];
+    }
+
+    @TearDown
+    public void tearDown() {
+        search.shutdown();
+    }
+
+    @Benchmark
+    public long search(Playouts counter) {
+        long playouts = search.search(cells, noBalls, noBalls, BUDGET_NANOS).getNodes();
+        counter.playouts += playouts;
+        return playouts;
+    }
+}
@@ -0,0 +1,145 @@
+package ss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ss.gamedesign.Board;
+import ss.gamedesign.HumanPlayer;
+import ss.gamedesign.Move;
+import ss.gamedesign.MoveCache;
+import ss.gamedesign.MoveGenerator;
+import ss.gamedesign.Player;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of move generation and of playing single and double moves.
+ * Every benchmark that changes the board first restores it from a fixed
+ * position, the restore is a three word copy and is measured separately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    /**
+     * A freshly generated board.
+     */
+    private Board start;
+
+    /**
+     * A board without single moves, where the double move search has to run.
+     */
+    private Board blocked;
+
+    private Board board;
+    private Move move;
+    private Player player;
+    private ForkJoinPool pool;
+    private MoveCache cache;
+    private MoveCache symmetricCache;
+    private int singleCommand;
+    private int firstCommand;
+    private int secondCommand;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        start = new Board(random);
+        blocked = RandomPlayout.boardWithoutSingleMoves(random);
+        board = start.deepCopy();
+        move = new Move(board);
+        player = new HumanPlayer("player");
+        pool = new ForkJoinPool();
+        cache = new MoveCache(1024);
+        symmetricCache = new MoveCache(1024, true);
+        move.fillSingleMovesMap();
+        singleCommand = Integer.numberOfTrailingZeros(move.getSingleMovesMask());
+        board.copyFieldsFrom(blocked);
+        firstCommand = -1;
+        for (int command = 0; command < MoveGenerator.COMMANDS && firstCommand == -1; command++) {
+            int seconds = move.getSecondMovesMask(command);
+            if (seconds != 0) {
+                firstCommand = command;
+                secondCommand = Integer.numberOfTrailingZeros(seconds);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public Board restore() {
+        board.copyFieldsFrom(start);
+        return board;
+    }
+
+    @Benchmark
+    public boolean fillSingleMovesMap() {
+        board.copyFieldsFrom(start);
+        move.fillSingleMovesMap();
+        return move.noPossibleSingleMoves();
+    }
+
+    @Benchmark
+    public boolean noPossibleDoubleMoves() {
+        board.copyFieldsFrom(blocked);
+        return move.noPossibleDoubleMoves();
+    }
+
+    @Benchmark
+    public boolean noPossibleDoubleMovesParallel() {
+        board.copyFieldsFrom(blocked);
+        return move.noPossibleDoubleMoves(pool);
+    }
+
+    @Benchmark
+    public boolean cachedDoubleMoveLookup() {
+        return cache.hasDoubleMove(blocked);
+    }
+
+    @Benchmark
+    public boolean cachedSymmetricDoubleMoveLookup() {
+        return symmetricCache.hasDoubleMove(blocked);
+    }
+
+    @Benchmark
+    public Board singleMove() {
+        board.copyFieldsFrom(start);
+        move.singleMove(player, singleCommand);
+        return board;
+    }
+
+    @Benchmark
+    public Board doubleMove() {
+        board.copyFieldsFrom(blocked);
+        if (firstCommand != -1) {
+            move.doubleMove(player, firstCommand, secondCommand);
+        }
+        return board;
+    }
+
+    @Benchmark
+    public Board invalidDoubleMove() {
+        board.copyFieldsFrom(blocked);
+        move.doubleMove(player, 0, 0);
+        return board;
+    }
+}
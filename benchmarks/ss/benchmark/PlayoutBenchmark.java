@@ -0,0 +1,47 @@
+package ss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ss.gamedesign.Board;
+import ss.gamedesign.Move;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of whole games played with random moves, from a new board to
+ * the end of the game. The score is games per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlayoutBenchmark {
+
+    private SplittableRandom random;
+    private Board board;
+    private Move move;
+
+    @Setup
+    public void setUp() {
+        random = new SplittableRandom(42);
+        board = new Board(random);
+        move = new Move(board);
+    }
+
+    @Benchmark
+    public int randomPlayout() {
+        board.initialiseBoard(random);
+        return RandomPlayout.play(move, random);
+    }
+}
@@ -0,0 +1,100 @@
+package ss.benchmark;
+
+import ss.gamedesign.Board;
+import ss.gamedesign.HumanPlayer;
+import ss.gamedesign.Move;
+import ss.gamedesign.MoveGenerator;
+import ss.gamedesign.Player;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays a game with uniformly random legal moves, the workload the benchmarks
+ * use for full games. Single moves are chosen while there are any, double
+ * moves only when no single move is left, as the rules require.
+ */
+public final class RandomPlayout {
+
+    private RandomPlayout() {
+    }
+
+    /**
+     * Plays random moves on a board until the game is over.
+     * @requires move != null && random != null
+     * @param move the move engine of the board to play on, changed in place
+     * @param random the source of the chosen moves
+     * @return the number of moves played
+     */
+    public static int play(Move move, SplittableRandom random) {
+        return play(move, random, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Plays random moves on a board until the game is over or a number of moves is played.
+     * @requires move != null && random != null && maxMoves >= 0
+     * @param move the move engine of the board to play on, changed in place
+     * @param random the source of the chosen moves
+     * @param maxMoves the largest number of moves to play
+     * @return the number of moves played
+     */
+    public static int play(Move move, SplittableRandom random, int maxMoves) {
+        Player[] players = {new HumanPlayer("first"), new HumanPlayer("second")};
+        move.fillSingleMovesMap();
+        int moves = 0;
+        while (moves < maxMoves) {
+            Player player = players[moves % 2];
+            int singles = move.getSingleMovesMask();
+            if (singles != 0) {
+                move.singleMove(player, pick(singles, random));
+            } else {
+                int first = -1;
+                int seconds = 0;
+                int choices = 0;
+                for (int command = 0; command < MoveGenerator.COMMANDS; command++) {
+                    int mask = move.getSecondMovesMask(command);
+                    // Reservoir sampling over the first moves that have a valid second move
+                    if (mask != 0 && random.nextInt(++choices) == 0) {
+                        first = command;
+                        seconds = mask;
+                    }
+                }
+                if (first == -1) {
+                    break;
+                }
+                move.doubleMove(player, first, pick(seconds, random));
+            }
+            moves++;
+        }
+        return moves;
+    }
+
+    /**
+     * Plays random moves on a new board until no single move is left, so
+     * that the next move would have to be a double move.
+     * @param random the source of the board and of the chosen moves
+     * @return a board without single moves, which may still have double moves
+     */
+    public static Board boardWithoutSingleMoves(SplittableRandom random) {
+        Board board = new Board(random);
+        Move move = new Move(board);
+        move.fillSingleMovesMap();
+        while (!move.noPossibleSingleMoves()) {
+            move.singleMove(new HumanPlayer("player"), pick(move.getSingleMovesMask(), random));
+        }
+        return board;
+    }
+
+    /**
+     * Picks a random command out of a mask of moves.
+     * @requires moves != 0
+     * @param moves a mask of commands
+     * @param random the source of the choice
+     * @return one of the commands set in moves
+     */
+    private static int pick(int moves, SplittableRandom random) {
+        for (int skip = random.nextInt(Integer.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Integer.numberOfTrailingZeros(moves);
+    }
+}
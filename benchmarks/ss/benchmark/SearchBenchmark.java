@@ -0,0 +1,57 @@
+package ss.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ss.gamedesign.AlphaBetaSearch;
+import ss.gamedesign.BitBoard;
+import ss.gamedesign.Board;
+import ss.gamedesign.SearchResult;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the alpha-beta search of the computer player. Every
+ * operation is one search of 20 ms on a starting board, so the score
+ * shows the searches per second; run with -prof gc for the allocation.
+ * The nodes per second and bytes per node of a search are printed by
+ * {@link SearchResult#toString()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final long BUDGET_NANOS = 20_000_000;
+
+    private AlphaBetaSearch search;
+    private long[] cells;
+    private int[] noBalls;
+
+    @Setup
+    public void setUp() {
+        search = new AlphaBetaSearch();
+        Board board = new Board(new SplittableRandom(42));
+        cells = BitBoard.newCells();
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            BitBoard.set(cells, i, BitBoard.encode(board.getColour(i)));
+        }
+        noBalls = new int[7];
+    }
+
+    @Benchmark
+    public long search() {
+        return search.search(cells, noBalls, noBalls, BUDGET_NANOS).getNodes();
+    }
+}
@@ -0,0 +1,286 @@
+package ss.gamedesign;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Iterative-deepening alpha-beta search over the Collecto game tree.
+ * <p>
+ * A position is the packed cells of the board and the balls every player
+ * collected, by colour. A move is a single move while there is one, and a
+ * double move otherwise, as the rules require; the balls it gathers go to
+ * the player who made it. Positions are scored with the scoring of
+ * {@link Player#setPoints()}: a point for every three balls of a colour,
+ * with the number of balls breaking ties. Finished games score as a win
+ * or a loss before any difference in points.
+ * <p>
+ * The search works on buffers allocated once per searcher, one set for
+ * every ply, so searching allocates nothing per position. The best move of
+ * every searched position is kept in a small table indexed by its Zobrist
+ * hash and tried first in the next, deeper, iteration. The search stops at
+ * a hard deadline and returns the best move of the deepest iteration it
+ * completed. A searcher is not thread-safe, use one per thread.
+ */
+public class AlphaBetaSearch {
+
+    /**
+     * The deepest search, in moves.
+     */
+    public static final int MAX_DEPTH = 32;
+
+    /**
+     * The score of a won game, before the difference in points and balls.
+     */
+    public static final int WIN = 1_000_000;
+
+    /**
+     * The number of colour codes, the counters of a player are indexed by code.
+     */
+    private static final int CODES = PackedGame.CODES;
+
+    /**
+     * The number of positions searched between two looks at the clock, minus one.
+     */
+    private static final int CLOCK_MASK = 1023;
+
+    /**
+     * The number of entries of the table of best moves.
+     */
+    private static final int TABLE_SIZE = 1 << 16;
+
+    /**
+     * The cells of the position at every ply.
+     */
+    private final long[][] cells = new long[MAX_DEPTH + 1][BitBoard.WORDS];
+
+    /**
+     * The balls of both players at every ply, player p's balls of code c at p * CODES + c.
+     * Player 0 is the player to move at the root.
+     */
+    private final int[][] balls = new int[MAX_DEPTH + 1][2 * CODES];
+
+    /**
+     * The moves generated at every ply.
+     */
+    private final int[][] moves = new int[MAX_DEPTH + 1][PackedGame.MAX_MOVES];
+
+    private final long[] scratch = BitBoard.newCells();
+    private final long[] afterFirst = BitBoard.newCells();
+    private final long[] afterSecond = BitBoard.newCells();
+
+    /**
+     * The hashes of the positions in the table of best moves.
+     */
+    private final long[] tableKeys = new long[TABLE_SIZE];
+
+    /**
+     * The best move found for every position in the table, -1 for an empty entry.
+     */
+    private final int[] tableMoves = new int[TABLE_SIZE];
+
+    private long nodes;
+    private long deadline;
+    private boolean aborted;
+
+    /**
+     * True if the current iteration stopped at its depth limit somewhere,
+     * false if every line was searched to the end of the game.
+     */
+    private boolean limited;
+
+    /**
+     * Creates a searcher with empty buffers.
+     */
+    public AlphaBetaSearch() {
+        Arrays.fill(tableMoves, -1);
+    }
+
+    /**
+     * Searches the best move for the player to move.
+     * @requires position.length == BitBoard.WORDS && ownBalls.length == 7
+     *           && opponentBalls.length == 7 && budgetNanos > 0
+     * @param position the packed cells of the board, not changed
+     * @param ownBalls the balls of the player to move, by colour code
+     * @param opponentBalls the balls of the opponent, by colour code
+     * @param budgetNanos the time the search may take, in nanoseconds
+     * @return the chosen move and the statistics of the search,
+     *         with first command -1 if the game is over
+     */
+    public SearchResult search(long[] position, int[] ownBalls, int[] opponentBalls, long budgetNanos) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        deadline = start + budgetNanos;
+        nodes = 0;
+        aborted = false;
+        System.arraycopy(position, 0, cells[0], 0, BitBoard.WORDS);
+        System.arraycopy(ownBalls, 0, balls[0], 0, CODES);
+        System.arraycopy(opponentBalls, 0, balls[0], CODES, CODES);
+
+        int count = generate(0);
+        int best = count == 0 ? -1 : moves[0][0];
+        int bestScore = count == 0 ? score(0, true) : 0;
+        int completed = 0;
+        for (int depth = 1; depth <= MAX_DEPTH && count > 0; depth++) {
+            limited = false;
+            int alpha = -Integer.MAX_VALUE;
+            int bestIndex = 0;
+            for (int i = 0; i < count; i++) {
+                play(0, moves[0][i]);
+                int value = -negamax(1, depth - 1, -Integer.MAX_VALUE, -alpha);
+                if (aborted) {
+                    break;
+                }
+                if (value > alpha) {
+                    alpha = value;
+                    bestIndex = i;
+                }
+            }
+            if (aborted) {
+                break;
+            }
+            best = moves[0][bestIndex];
+            bestScore = alpha;
+            completed = depth;
+            // The best move of this iteration is searched first in the next one
+            moves[0][bestIndex] = moves[0][0];
+            moves[0][0] = best;
+            if (!limited) {
+                break;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        if (best == -1) {
+            return new SearchResult(-1, -1, bestScore, 0, nodes, elapsed, allocated);
+        }
+        return new SearchResult(PackedGame.first(best), PackedGame.second(best),
+                bestScore, completed, nodes, elapsed, allocated);
+    }
+
+    /**
+     * Searches a position to a given depth.
+     * @param ply the number of moves from the root
+     * @param depth the number of moves still to search
+     * @param alpha the score the player to move is already sure of
+     * @param beta the score the opponent is already sure of
+     * @return the score of the position for the player to move
+     */
+    private int negamax(int ply, int depth, int alpha, int beta) {
+        nodes++;
+        if ((nodes & CLOCK_MASK) == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (depth == 0 || ply == MAX_DEPTH) {
+            if (PackedGame.isOver(cells[ply], scratch, afterFirst, afterSecond)) {
+                return score(ply, true);
+            }
+            limited = true;
+            return score(ply, false);
+        }
+        int count = generate(ply);
+        if (count == 0) {
+            return score(ply, true);
+        }
+        int entry = -1;
+        long hash = 0;
+        if (depth >= 2) {
+            hash = Zobrist.hash(cells[ply]);
+            entry = (int) (hash ^ hash >>> 32) & TABLE_SIZE - 1;
+            if (tableKeys[entry] == hash) {
+                moveToFront(moves[ply], count, tableMoves[entry]);
+            }
+        }
+        int best = -Integer.MAX_VALUE;
+        int bestMove = moves[ply][0];
+        for (int i = 0; i < count; i++) {
+            play(ply, moves[ply][i]);
+            int value = -negamax(ply + 1, depth - 1, -beta, -alpha);
+            if (aborted) {
+                return 0;
+            }
+            if (value > best) {
+                best = value;
+                bestMove = moves[ply][i];
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (entry != -1) {
+            tableKeys[entry] = hash;
+            tableMoves[entry] = bestMove;
+        }
+        return best;
+    }
+
+    /**
+     * Generates the moves of the position at a ply.
+     * @param ply the ply of the position
+     * @return the number of moves stored in moves[ply]
+     */
+    private int generate(int ply) {
+        return PackedGame.generate(cells[ply], moves[ply], scratch, afterFirst);
+    }
+
+    /**
+     * Plays a move on the position of a ply and stores the result at the next ply.
+     * @param ply the ply of the position
+     * @param move the encoded move
+     */
+    private void play(int ply, int move) {
+        System.arraycopy(cells[ply], 0, cells[ply + 1], 0, BitBoard.WORDS);
+        System.arraycopy(balls[ply], 0, balls[ply + 1], 0, 2 * CODES);
+        PackedGame.play(cells[ply + 1], move, balls[ply + 1], ply & 1);
+    }
+
+    /**
+     * Scores the position of a ply for the player to move.
+     * @param ply the ply of the position
+     * @param over true if the game is over at this position
+     * @return the difference between the scores of the player to move and the opponent,
+     *         moved by WIN towards the winner if the game is over
+     */
+    private int score(int ply, boolean over) {
+        int difference = PackedGame.scoreDifference(balls[ply], ply & 1);
+        if (over && difference != 0) {
+            return difference > 0 ? WIN + difference : -WIN + difference;
+        }
+        return difference;
+    }
+
+    /**
+     * Moves a move to the front of a list, if it is in the list.
+     * @param list the moves
+     * @param count the number of moves in the list
+     * @param move the move to search first
+     */
+    private static void moveToFront(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move) {
+                list[i] = list[0];
+                list[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the current thread allocated so far.
+     * @return the allocated bytes, -1 if the JVM does not measure them
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -20,7 +20,7 @@ public class Ball {
         return this.colour;
     }
     public int getColourInt() {
-    	switch (this.colour) {
+    	switch (getColour()) {
         case BLUE:
             return 1;
         case YELLOW:
@@ -51,7 +51,7 @@ public class Ball {
      * The enum value Colour.EMPTY is unreachable.
      */
     public void setRandomColour() {
-        this.colour = getRandomColour();
+        setColour(getRandomColour());
     }
 
     /**
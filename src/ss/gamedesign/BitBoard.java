@@ -0,0 +1,396 @@
+package ss.gamedesign;
+
+/**
+ * Packed representation of the fields of a Collecto board.
+ * Every field takes three bits holding a colour code: 0 for an empty field
+ * and 1 to 6 for the ball colours, in the same order as the network protocol.
+ * The 49 fields are stored row by row, three rows of 21 bits in every long,
+ * so a whole board fits in {@link #WORDS} longs and is copied with three
+ * word copies.
+ */
+public final class BitBoard {
+
+    /**
+     * The board dimensions size.
+     */
+    public static final int DIM = 7;
+
+    /**
+     * The number of fields on the board.
+     */
+    public static final int SIZE = DIM * DIM;
+
+    /**
+     * The number of bits used for the colour of one field.
+     */
+    public static final int BITS = 3;
+
+    /**
+     * The number of fields (three full rows) stored in one long.
+     */
+    public static final int FIELDS_PER_WORD = 3 * DIM;
+
+    /**
+     * The number of longs needed for the whole board.
+     */
+    public static final int WORDS = 3;
+
+    /**
+     * The code of an empty field.
+     */
+    public static final int EMPTY = 0;
+
+    /**
+     * The mask of the colour code of a single field.
+     */
+    public static final long CODE_MASK = (1L << BITS) - 1;
+
+    /**
+     * The mask of the 21 bits holding one row.
+     */
+    private static final long ROW_MASK = (1L << DIM * BITS) - 1;
+
+    /**
+     * The lowest bit of every field of a word.
+     */
+    private static final long LOW_BITS = lowBits(FIELDS_PER_WORD, -1);
+
+    /**
+     * The lowest bit of every field of a word that has a right neighbour in the same row.
+     */
+    private static final long RIGHT_EDGE_FREE = lowBits(FIELDS_PER_WORD, DIM - 1);
+
+    /**
+     * The lowest bit of every field of the first two rows of a word,
+     * which have their lower neighbour in the same word.
+     */
+    private static final long LOWER_IN_WORD = lowBits(2 * DIM, -1);
+
+    /**
+     * The lowest bit of every field of the first row of a word.
+     */
+    private static final long FIRST_ROW = lowBits(DIM, -1);
+
+    /**
+     * The shift of the last row stored in a word.
+     */
+    private static final int LAST_ROW_SHIFT = 2 * DIM * BITS;
+
+    /**
+     * The colours indexed by their code.
+     */
+    private static final Colour[] COLOURS = {Colour.EMPTY, Colour.BLUE, Colour.YELLOW,
+        Colour.RED, Colour.ORANGE, Colour.PURPLE, Colour.GREEN};
+
+    /**
+     * The codes indexed by the ordinal of their colour.
+     */
+    private static final int[] CODES = new int[Colour.values().length];
+
+    static {
+        for (int code = 0; code < COLOURS.length; code++) {
+            CODES[COLOURS[code].ordinal()] = code;
+        }
+    }
+
+    private BitBoard() {
+    }
+
+    /**
+     * Creates the packed cells of an empty board.
+     * @return an array of {@link #WORDS} longs with every field empty
+     */
+    public static long[] newCells() {
+        return new long[WORDS];
+    }
+
+    /**
+     * Returns the colour code of a field.
+     * @requires cells.length == WORDS && index >= 0 && index < SIZE
+     * @param cells the packed cells of the board
+     * @param index the index of the field
+     * @return the colour code of the field, between 0 and 6
+     */
+    public static int get(long[] cells, int index) {
+        return (int) (cells[index / FIELDS_PER_WORD] >>> shift(index) & CODE_MASK);
+    }
+
+    /**
+     * Sets the colour code of a field.
+     * @requires cells.length == WORDS && index >= 0 && index < SIZE && code >= 0 && code <= 6
+     * @param cells the packed cells of the board
+     * @param index the index of the field
+     * @param code the new colour code of the field
+     */
+    public static void set(long[] cells, int index, int code) {
+        int word = index / FIELDS_PER_WORD;
+        int shift = shift(index);
+        cells[word] = cells[word] & ~(CODE_MASK << shift) | (long) code << shift;
+    }
+
+    /**
+     * Returns the position of the lowest bit of a field inside its long.
+     * @param index the index of the field
+     * @return the bit offset of the field in its word
+     */
+    public static int shift(int index) {
+        return BITS * (index % FIELDS_PER_WORD);
+    }
+
+    /**
+     * Slides the balls of one row or column as far as possible in the direction of the command.
+     * Commands 0 to 6 move a row to the left, 7 to 13 a row to the right, 14 to 20
+     * a column up and 21 to 27 a column down, the same numbering as the protocol.
+     * @requires cells.length == WORDS && command >= 0 && command < 28
+     * @param cells the packed cells of the board, changed in place
+     * @param command the command of the move
+     * @return true if any ball moved, false if the command left the board unchanged
+     */
+    public static boolean slide(long[] cells, int command) {
+        int line = command % DIM;
+        switch (command / DIM) {
+            case 0:
+                return slideRow(cells, line, true);
+            case 1:
+                return slideRow(cells, line, false);
+            case 2:
+                return slideColumn(cells, line, true);
+            default:
+                return slideColumn(cells, line, false);
+        }
+    }
+
+    /**
+     * Moves the balls of a row to the left or to the right end of the row.
+     * @param cells the packed cells of the board
+     * @param row the row to move
+     * @param left true to move to the left, false to move to the right
+     * @return true if the row changed
+     */
+    private static boolean slideRow(long[] cells, int row, boolean left) {
+        int word = row / 3;
+        int base = row % 3 * DIM * BITS;
+        long before = cells[word] >>> base & ROW_MASK;
+        long after = 0;
+        int target = left ? 0 : DIM - 1;
+        int step = left ? 1 : -1;
+        for (int col = target; col >= 0 && col < DIM; col += step) {
+            long code = before >>> BITS * col & CODE_MASK;
+            if (code != EMPTY) {
+                after |= code << BITS * target;
+                target += step;
+            }
+        }
+        if (after == before) {
+            return false;
+        }
+        cells[word] = cells[word] & ~(ROW_MASK << base) | after << base;
+        return true;
+    }
+
+    /**
+     * Moves the balls of a column to the upper or to the lower end of the column.
+     * @param cells the packed cells of the board
+     * @param col the column to move
+     * @param up true to move up, false to move down
+     * @return true if the column changed
+     */
+    private static boolean slideColumn(long[] cells, int col, boolean up) {
+        int target = up ? 0 : DIM - 1;
+        int step = up ? 1 : -1;
+        boolean changed = false;
+        for (int row = target; row >= 0 && row < DIM; row += step) {
+            int code = get(cells, row * DIM + col);
+            if (code != EMPTY) {
+                if (row != target) {
+                    set(cells, target * DIM + col, code);
+                    set(cells, row * DIM + col, EMPTY);
+                    changed = true;
+                }
+                target += step;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Counts the balls on the board.
+     * @requires cells.length == WORDS
+     * @param cells the packed cells of the board
+     * @return the number of fields that are not empty
+     */
+    public static int countBalls(long[] cells) {
+        int count = 0;
+        for (long w : cells) {
+            count += Long.bitCount(nonZero(w));
+        }
+        return count;
+    }
+
+    /**
+     * Checks if two neighbouring fields hold balls of the same colour.
+     * All fields are compared at once, a word at a time.
+     * @requires cells.length == WORDS
+     * @param cells the packed cells of the board
+     * @return true if there is at least one pair of equal neighbouring balls
+     */
+    public static boolean hasPairs(long[] cells) {
+        for (int word = 0; word < WORDS; word++) {
+            if (pairsInWord(cells, word) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the fields of a word that have the same ball as their right
+     * neighbour, or as their lower neighbour.
+     * @param cells the packed cells of the board
+     * @param word the word to check
+     * @return the lowest bit of every field of the word that starts a pair
+     */
+    private static long pairsInWord(long[] cells, int word) {
+        long w = cells[word];
+        long starts = rightPairs(w) | lowerPairs(w);
+        if (word + 1 < WORDS) {
+            starts |= crossPairs(w, cells[word + 1]) << LAST_ROW_SHIFT;
+        }
+        return starts;
+    }
+
+    /**
+     * Finds the balls of a word that have a ball of the same colour on their right.
+     * @param w a word of packed fields
+     * @return the lowest bit of every such field
+     */
+    private static long rightPairs(long w) {
+        return nonZero(w) & ~nonZero(w ^ w >>> BITS) & RIGHT_EDGE_FREE;
+    }
+
+    /**
+     * Finds the balls of the first two rows of a word that have a ball of the same colour beneath them.
+     * @param w a word of packed fields
+     * @return the lowest bit of every such field
+     */
+    private static long lowerPairs(long w) {
+        return nonZero(w) & ~nonZero(w ^ w >>> DIM * BITS) & LOWER_IN_WORD;
+    }
+
+    /**
+     * Finds the balls of the last row of a word that have a ball of the same
+     * colour beneath them, in the first row of the next word.
+     * @param w a word of packed fields
+     * @param next the next word
+     * @return the lowest bit of every such field, as a field of the first row
+     */
+    private static long crossPairs(long w, long next) {
+        // The last row of this word and the first row of the next one
+        long last = w >>> LAST_ROW_SHIFT;
+        return nonZero(last) & ~nonZero(last ^ next & ROW_MASK) & FIRST_ROW;
+    }
+
+    /**
+     * Removes every ball that has a neighbour of the same colour, all at
+     * once as the rules require, and counts the removed balls by colour.
+     * @requires cells.length == WORDS && removed.length >= offset + 7
+     * @param cells the packed cells of the board, changed in place
+     * @param removed the counters, removed[offset + code] is increased for every removed ball
+     * @param offset the position of the counter of code 0 in removed
+     * @return the number of removed balls
+     */
+    public static int removePairs(long[] cells, int[] removed, int offset) {
+        // Every mark is taken before any ball is removed; a pair across two
+        // words marks the upper ball in the last row of its word and the
+        // lower ball in the first row of the next word
+        long cross0 = crossPairs(cells[0], cells[1]);
+        long cross1 = crossPairs(cells[1], cells[2]);
+        long marks0 = pairMarks(cells[0]) | cross0 << LAST_ROW_SHIFT;
+        long marks1 = pairMarks(cells[1]) | cross1 << LAST_ROW_SHIFT | cross0;
+        long marks2 = pairMarks(cells[2]) | cross1;
+        if ((marks0 | marks1 | marks2) == 0) {
+            return 0;
+        }
+        return removeMarked(cells, 0, marks0, removed, offset)
+                + removeMarked(cells, 1, marks1, removed, offset)
+                + removeMarked(cells, 2, marks2, removed, offset);
+    }
+
+    /**
+     * Marks both balls of every pair that lies inside a word.
+     * @param w a word of packed fields
+     * @return the lowest bit of every ball of the word in such a pair
+     */
+    private static long pairMarks(long w) {
+        long right = rightPairs(w);
+        long lower = lowerPairs(w);
+        return right | right << BITS | lower | lower << DIM * BITS;
+    }
+
+    /**
+     * Empties the marked fields of a word and counts their balls.
+     * @param cells the packed cells of the board
+     * @param word the word to change
+     * @param marks the lowest bit of every field to empty
+     * @param removed the counters by colour code
+     * @param offset the position of the counter of code 0 in removed
+     * @return the number of emptied fields
+     */
+    private static int removeMarked(long[] cells, int word, long marks, int[] removed, int offset) {
+        long w = cells[word];
+        cells[word] = w & ~(marks | marks << 1 | marks << 2);
+        int count = 0;
+        while (marks != 0) {
+            int shift = Long.numberOfTrailingZeros(marks);
+            removed[offset + (int) (w >>> shift & CODE_MASK)]++;
+            count++;
+            marks &= marks - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Marks the fields that hold a non-zero code.
+     * @param w a word of packed fields
+     * @return the lowest bit of every field of w that is not zero
+     */
+    private static long nonZero(long w) {
+        return (w | w >>> 1 | w >>> 2) & LOW_BITS;
+    }
+
+    /**
+     * Builds a mask with the lowest bit of the first fields of a word.
+     * @param fields the number of fields to include
+     * @param skipCol a column to leave out, or -1 to include all columns
+     * @return the mask
+     */
+    private static long lowBits(int fields, int skipCol) {
+        long mask = 0;
+        for (int i = 0; i < fields; i++) {
+            if (i % DIM != skipCol) {
+                mask |= 1L << BITS * i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns the code used to store a colour.
+     * @requires colour != null
+     * @param colour the colour of the ball
+     * @return 0 for Colour.EMPTY, the protocol number of the colour otherwise
+     */
+    public static int encode(Colour colour) {
+        return CODES[colour.ordinal()];
+    }
+
+    /**
+     * Returns the colour stored under a code.
+     * @requires code >= 0 && code <= 6
+     * @param code the colour code
+     * @return the colour belonging to the code
+     */
+    public static Colour decode(int code) {
+        return COLOURS[code];
+    }
+}
@@ -1,7 +1,8 @@
 package ss.gamedesign;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.SplittableRandom;
 
 public class Board {
 
@@ -22,89 +23,133 @@ public class Board {
     private static final String BOTTOM_COLUMNS = "     | 14 | 15 | 16 | 17 | 18 | 19 | 20 |";
 
     /**
-     * A double array that represents the fields from the board.
+     * The directions of the neighbours of a field, in the order used by getNeighboursIndex.
      */
-    private final Field[][] fields;
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int UP = 2;
+    public static final int DOWN = 3;
 
     /**
-     * A map that uses the 6 colours as keys and stores
-     * the number of balls that are missing from the board
-     * to their corresponding key.
+     * The number of neighbour directions of a field.
      */
-    private final Map<Colour, Integer> colourCounter;
+    public static final int NEIGHBOURS = 4;
 
     /**
-     * The counters showing the number of the balls
-     * for every colour that are not on the board.
+     * The index of the neighbour of every field in every direction,
+     * stored at index * NEIGHBOURS + direction, or -1 where the field
+     * is on the edge of the board. The table is never handed out.
      */
-    private int blueCounter = 8;
-    private int redCounter = 8;
-    private int orangeCounter = 8;
-    private int greenCounter = 8;
-    private int yellowCounter = 8;
-    private int purpleCounter = 8;
+    private static final int[] ADJACENCY = new int[DIM * DIM * NEIGHBOURS];
+
+    static {
+        for (int index = 0; index < DIM * DIM; index++) {
+            int row = index / DIM;
+            int col = index % DIM;
+            ADJACENCY[index * NEIGHBOURS + LEFT] = col > 0 ? index - 1 : -1;
+            ADJACENCY[index * NEIGHBOURS + RIGHT] = col < DIM - 1 ? index + 1 : -1;
+            ADJACENCY[index * NEIGHBOURS + UP] = row > 0 ? index - DIM : -1;
+            ADJACENCY[index * NEIGHBOURS + DOWN] = row < DIM - 1 ? index + DIM : -1;
+        }
+    }
 
     /**
-     * Initialises instance variable fields[][].
+     * The colours of the fields packed into a few longs, see {@link BitBoard}.
+     */
+    private final long[] cells;
+
+    /**
+     * The Field objects handed out by getField, created only when
+     * they are asked for. They keep no colour of their own and read and
+     * write the packed cells.
+     */
+    private Field[] views;
+
+    /**
+     * The journal the changes of the fields are recorded in, or null.
+     */
+    private UndoJournal journal;
+
+    /**
+     * The cells before the last slide, used to find the fields it changed.
+     */
+    private final long[] before = BitBoard.newCells();
+
+    /**
+     * The Zobrist hash of the fields, kept up to date by every write, see {@link Zobrist}.
+     */
+    private long hash;
+
+    /**
+     * The counters showing the number of the balls for every colour
+     * that are not on the board, indexed by the ordinal of the colour.
+     */
+    private final int[] colourCounters = new int[Colour.values().length];
+
+    /**
+     * A map view of colourCounters, created when it is first asked for.
+     */
+    private Map<Colour, Integer> colourCounter;
+
+    /**
+     * Initialises the packed cells of the board.
      * Creates an empty board and then fills it with random balls
      * with 8 balls of every one of the six colors.
      * Sets the center field to be empty.
      */
     public Board() {
-        colourCounter = new HashMap<>();
-        fields = new Field[7][7];
-        initialiseBoard();
+        this(new SplittableRandom());
+    }
 
+    /**
+     * Creates a board with a random layout drawn from the given source,
+     * so that the same seed always gives the same board.
+     * @requires random != null
+     * @param random the source of randomness for the layout
+     */
+    public Board(SplittableRandom random) {
+        cells = BitBoard.newCells();
+        initialiseBoard(random);
+    }
+
+    /**
+     * Creates a board with a layout that was generated before, for example by a {@link BoardPool}.
+     * @requires layout.length == BitBoard.WORDS and layout is a valid starting layout
+     * @param layout the packed cells of the board, used without copying
+     */
+    Board(long[] layout) {
+        cells = layout;
+        hash = Zobrist.hash(cells);
     }
 
     /**
-     *
+     * Creates a copy of a board without generating a layout.
+     * @param original the board to copy
+     */
+    private Board(Board original) {
+        cells = original.cells.clone();
+        hash = original.hash;
+        System.arraycopy(original.colourCounters, 0, colourCounters, 0, colourCounters.length);
+    }
+
+    /**
+     * Fills the board with a new random layout of 8 balls of every colour,
+     * no neighbouring balls of the same colour and an empty centre field.
      */
     public void initialiseBoard() {
-        int breakPoint = 0;
-        boolean boardNotReady = true;
-        fillMap();
-
-        while (boardNotReady) { // Fill/refill the board until it is created correctly
-
-            setBoardFieldsToEmpty(); // Set the fields to empty
-            setColourCounterValuesToMax(); // Set the counters to 8
-
-            Task:
-            for (int i = 0; i < 7; i++) { // Iterate through the rows
-                for (int j = 0; j < 7; j++) { // Iterate through the columns
-                    if (fields[i][j] != fields[3][3]) {
-                        fields[i][j].getBall().setRandomColour();
-                        subtractCount(fields[i][j]);
-                        while (hasSameNeighbours(i, j) || getColourCounter(fields[i][j]) < 0) { // Change the ball value until it is appropriate for the field
-
-                            if (hasSameNeighbours(i, j)) { // Check if the field has different neighbours
-                                increaseCount(fields[i][j]);
-                                fields[i][j].getBall().setRandomColour();
-                                subtractCount(fields[i][j]);
-                            }
-
-                            if (getColourCounter(fields[i][j]) < 0) { // Check if there are balls of this type left to be put on the board
-                                fields[i][j].getBall().setRandomColour();
-                                subtractCount(fields[i][j]);
-                            }
-
-                            breakPoint++;
-                            if (breakPoint == 1000) { // Cancel the for loops if breakpoint reaches 1000
-                                breakPoint = 0;
-                                fields[i][j].getBall().setColour(Colour.EMPTY);
-                                break Task;
-                            }
-                        }
-                    }
-                }
-            }
+        initialiseBoard(new SplittableRandom());
+    }
 
-            if (boardIsReady(fields)) {
-                boardNotReady = false;
-            }
-            setColourCounterValuesToZero();
-        }
+    /**
+     * Fills the board with a new random layout drawn from the given source.
+     * @requires random != null
+     * @ensures boardIsReady and no field has a neighbour of the same colour
+     * @param random the source of randomness for the layout
+     */
+    public void initialiseBoard(SplittableRandom random) {
+        BoardGenerator.generate(cells, random);
+        hash = Zobrist.hash(cells);
+        setColourCounterValuesToZero();
     }
 
     /**
@@ -116,14 +161,7 @@ public class Board {
      * @return false if the ball in the field has a neighbour with the same colour, true otherwise
      */
     public boolean hasSameNeighbours(int row, int col) {
-        for (int i = 0; i < getNeighboursIndex(row, col).length; i++) {
-            if (isField(getNeighboursIndex(row, col)[i])) {
-                if (ballHasSameColour(getField(row, col), getField(getNeighboursIndex(row, col)[i]))) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return isField(row, col) && hasSameNeighbours(row * DIM + col);
     }
 
     /**
@@ -134,16 +172,32 @@ public class Board {
      * @return false if the ball in the field has a neighbour with the same colour, true otherwise
      */
     public boolean hasSameNeighbours(int index) {
-        for (int i = 0; i < getNeighboursIndex(index).length; i++) {
-            if (isField(getNeighboursIndex(index)[i])) {
-                if (ballHasSameColour(getField(index), getField(getNeighboursIndex(index)[i]))) {
-                    return true;
-                }
+        if (!isField(index)) {
+            return false;
+        }
+        int code = BitBoard.get(cells, index);
+        for (int direction = 0; direction < NEIGHBOURS; direction++) {
+            int neighbour = getNeighbour(index, direction);
+            if (neighbour != -1 && BitBoard.get(cells, neighbour) == code) {
+                return true;
             }
         }
         return false;
     }
 
+    /**
+     * Returns the index of the neighbour of a field in one direction.
+     * Unlike getNeighboursIndex it does not allocate, so it can be used
+     * in loops that visit the whole board.
+     * @requires index >= 0 && index < 49 && direction >= 0 && direction < NEIGHBOURS
+     * @param index the index of the field
+     * @param direction LEFT, RIGHT, UP or DOWN
+     * @return the index of the neighbour or -1 if there is no neighbour
+     */
+    public static int getNeighbour(int index, int direction) {
+        return ADJACENCY[index * NEIGHBOURS + direction];
+    }
+
     /**
      * Returns an array with values the indexes of the neighbours of a field
      * or -1 if there is no neighbour.
@@ -153,23 +207,10 @@ public class Board {
      * @return neighbours(an array of the indexes).
      */
     public int[] getNeighboursIndex(int row, int col) {
-        int[] neighbours = new int[]{-1, -1, -1, -1};
-
         if (isField(row, col)) {
-            if (isField(row, col - 1)) {
-                neighbours[0] = getField(row, col - 1).getIndex();
-            }
-            if (isField(row, col + 1)) {
-                neighbours[1] = getField(row, col + 1).getIndex();
-            }
-            if (isField(row - 1, col)) {
-                neighbours[2] = getField(row - 1, col).getIndex();
-            }
-            if (isField(row + 1, col)) {
-                neighbours[3] = getField(row + 1, col).getIndex();
-            }
+            return getNeighboursIndex(row * DIM + col);
         }
-        return neighbours;
+        return new int[]{-1, -1, -1, -1};
     }
 
     /**
@@ -183,63 +224,24 @@ public class Board {
         int[] neighbours = new int[]{-1, -1, -1, -1};
 
         if (isField(index)) {
-            if (isField(index - 1) && getRow(index) == getRow(index - 1)) {
-                neighbours[0] = getField(index - 1).getIndex();
-            }
-            if (isField(index + 1) && getRow(index) == getRow(index + 1)) {
-                neighbours[1] = getField(index + 1).getIndex();
-            }
-            if (isField(index - 7) && getCol(index) == getCol(index - 7)) {
-                neighbours[2] = getField(index - 7).getIndex();
-            }
-            if (isField(index + 7) && getCol(index) == getCol(index + 7)) {
-                neighbours[3] = getField(index + 7).getIndex();
-            }
+            System.arraycopy(ADJACENCY, index * NEIGHBOURS, neighbours, 0, NEIGHBOURS);
         }
-
         return neighbours;
     }
 
     /**
-     * Fills the map with all the ball colours as
-     * keys and all the values as the initial number
-     * of the balls from the colour.
-     * @ensures colourCounter is initialised
-     */
-    private void fillMap() {
-        colourCounter.put(Colour.BLUE, blueCounter);
-        colourCounter.put(Colour.RED, redCounter);
-        colourCounter.put(Colour.YELLOW, yellowCounter);
-        colourCounter.put(Colour.GREEN, greenCounter);
-        colourCounter.put(Colour.PURPLE, purpleCounter);
-        colourCounter.put(Colour.ORANGE, orangeCounter);
-    }
-
-    /**
-     * Sets all the values in the colourCounter Map
-     * to 8 for every colour.
+     * Sets all the colour counters to 8 for every colour.
      */
     public void setColourCounterValuesToMax() {
-        blueCounter = 8;
-        redCounter = 8;
-        greenCounter = 8;
-        yellowCounter = 8;
-        orangeCounter = 8;
-        purpleCounter = 8;
-
+        Arrays.fill(colourCounters, 8);
+        colourCounters[Colour.EMPTY.ordinal()] = 0;
     }
 
     /**
-     * Sets all the values in the colourCounter Map
-     * to 0 for every colour.
+     * Sets all the colour counters to 0 for every colour.
      */
     public void setColourCounterValuesToZero() {
-        blueCounter = 0;
-        redCounter = 0;
-        greenCounter = 0;
-        yellowCounter = 0;
-        orangeCounter = 0;
-        purpleCounter = 0;
+        Arrays.fill(colourCounters, 0);
     }
 
     /**
@@ -292,51 +294,16 @@ public class Board {
         return blueCount == 8 && redCount == 8 && greenCount == 8 && purpleCount == 8 && orangeCount == 8 && yellowCount == 8;
     }
 
+
     /**
      * Increases the count of the balls depending on their colour.
      * @param field the field of the board
      * @requires field != null
      */
     public void increaseCount(Field field) {
-        switch (field.getBall().getColour()) {
-            case BLUE:
-                if (blueCounter < 8) {
-                    blueCounter++;
-                }
-                break;
-
-            case RED:
-                if (redCounter < 8) {
-                    redCounter++;
-                }
-                break;
-
-            case GREEN:
-                if (greenCounter < 8) {
-                    greenCounter++;
-                }
-                break;
-
-            case PURPLE:
-                if (purpleCounter < 8) {
-                    purpleCounter++;
-                }
-                break;
-
-            case ORANGE:
-                if (orangeCounter < 8) {
-                    orangeCounter++;
-                }
-                break;
-
-            case YELLOW:
-                if (yellowCounter < 8) {
-                    yellowCounter++;
-                }
-                break;
-
-            default:
-                break;
+        Colour colour = field.getBall().getColour();
+        if (colour != Colour.EMPTY && colourCounters[colour.ordinal()] < 8) {
+            colourCounters[colour.ordinal()]++;
         }
     }
 
@@ -346,33 +313,9 @@ public class Board {
      * @requires field != null
      */
     public void subtractCount(Field field) {
-        switch (field.getBall().getColour()) {
-            case BLUE:
-                blueCounter--;
-                break;
-
-            case RED:
-                redCounter--;
-                break;
-
-            case GREEN:
-                greenCounter--;
-                break;
-
-            case PURPLE:
-                purpleCounter--;
-                break;
-
-            case ORANGE:
-                orangeCounter--;
-                break;
-
-            case YELLOW:
-                yellowCounter--;
-                break;
-
-            default:
-                break;
+        Colour colour = field.getBall().getColour();
+        if (colour != Colour.EMPTY) {
+            colourCounters[colour.ordinal()]--;
         }
     }
 
@@ -380,31 +323,11 @@ public class Board {
      * Returns the number of the balls from a specific colour
      * that is not on the board.
      * @param field the field of the board
-     * @return the number of balls remaining outside the board.
+     * @return the number of balls remaining outside the board, -1 for an empty field.
      */
     public int getColourCounter(Field field) {
-        switch (field.getBall().getColour()) {
-            case BLUE:
-                return blueCounter;
-
-            case RED:
-                return redCounter;
-
-            case GREEN:
-                return greenCounter;
-
-            case YELLOW:
-                return yellowCounter;
-
-            case ORANGE:
-                return orangeCounter;
-
-            case PURPLE:
-                return purpleCounter;
-
-            default:
-                return -1;
-        }
+        Colour colour = field.getBall().getColour();
+        return colour == Colour.EMPTY ? -1 : colourCounters[colour.ordinal()];
     }
 
     /**
@@ -420,26 +343,67 @@ public class Board {
 
     /**
      * Sets all the fields from the board to Colour.EMPTY.
-     * @ensures fields[i][j] != null
+     * @ensures isEmptyField(i) for every field
      */
     public void setBoardFieldsToEmpty() {
-        for (int i = 0; i < 7; i++) {
-            for (int j = 0; j < 7; j++) {
-                fields[i][j] = new Field(new Ball(Colour.EMPTY), j + i * DIM);
+        if (journal == null) {
+            Arrays.fill(cells, 0L);
+            hash = 0;
+        } else {
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                write(i, BitBoard.EMPTY);
             }
         }
     }
 
     /**
      * Creates a deep copy of the board completely identical to the original.
+     * The copy has its own packed cells, so changing one board does not
+     * change the other. No layout is generated for the copy, copying
+     * costs a few word copies.
      * @return newBoard which is a copy of the game board.
      */
     public Board deepCopy() {
-        Board newBoard = new Board();
-        for (int i = 0; i < DIM; i++) {
-            System.arraycopy(this.fields[i], 0, newBoard.fields[i], 0, DIM);
-        }
-        return newBoard;
+        return new Board(this);
+    }
+
+    /**
+     * Makes the fields of this board equal to the fields of another board.
+     * @requires other != null
+     * @param other the board whose fields are copied
+     */
+    public void copyFieldsFrom(Board other) {
+        System.arraycopy(other.cells, 0, cells, 0, BitBoard.WORDS);
+        hash = other.hash;
+    }
+
+    /**
+     * Returns the Zobrist hash of the fields of the board. Equal positions
+     * have equal hashes, so the hash can be used as a key for a position.
+     * It is updated with every change of a field and costs nothing to read.
+     * @return the 64-bit hash of the position
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Computes the Zobrist hash of the fields from scratch, without using the kept hash.
+     * @ensures the result equals getHash()
+     * @return the 64-bit hash of the position
+     */
+    public long computeHash() {
+        return Zobrist.hash(cells);
+    }
+
+    /**
+     * Starts or stops recording the changes of the fields.
+     * While a journal is set, every field changed through this board is
+     * recorded in it, so the changes can be undone with {@link UndoJournal#undo(Board)}.
+     * @param journal the journal to record in, or null to stop recording
+     */
+    public void setJournal(UndoJournal journal) {
+        this.journal = journal;
     }
 
     /**
@@ -492,12 +456,8 @@ public class Board {
      * @return the index of the row or -1 if there is no such row
      */
     public int getRow(int index) {
-        for (int i = 0; i < DIM; i++) {
-            for (int j = 0; j < DIM; j++) {
-                if (fields[i][j] == getField(index)) {
-                    return i;
-                }
-            }
+        if (isField(index)) {
+            return index / DIM;
         }
         return -1;
     }
@@ -510,12 +470,8 @@ public class Board {
      * @return the index of the column or -1 if there is no such column
      */
     public int getCol(int index) {
-        for (int i = 0; i < DIM; i++) {
-            for (int j = 0; j < DIM; j++) {
-                if (fields[i][j] == getField(index)) {
-                    return j;
-                }
-            }
+        if (isField(index)) {
+            return index % DIM;
         }
         return -1;
     }
@@ -528,13 +484,7 @@ public class Board {
      */
     public Field getField(int i) {
         if (isField(i)) {
-            for (int j = 0; j < DIM; j++) {
-                for (int k = 0; k < DIM; k++) {
-                    if (fields[j][k].getIndex() == i) {
-                        return fields[j][k];
-                    }
-                }
-            }
+            return view(i);
         }
         return null;
     }
@@ -548,11 +498,57 @@ public class Board {
      */
     public Field getField(int row, int col) {
         if (isField(row, col)) {
-            return fields[row][col];
+            return view(row * DIM + col);
         }
         return null;
     }
 
+    /**
+     * Returns the Field object of a field, creating it the first time.
+     * @requires index >= 0 && index < 49
+     * @param index the index of the field
+     * @return the field that reads and writes the packed cells of this board
+     */
+    private Field view(int index) {
+        if (views == null) {
+            views = new Field[BitBoard.SIZE];
+        }
+        if (views[index] == null) {
+            views[index] = new BoardField(new BoardBall(index), index);
+        }
+        return views[index];
+    }
+
+    /**
+     * Returns the packed cells of this board, see {@link BitBoard}. The array
+     * is not copied, so the move generator can read it directly.
+     * @return the packed cells of the board
+     */
+    long[] getCells() {
+        return cells;
+    }
+
+    /**
+     * Returns the colour of the ball on a field without creating Field objects.
+     * @requires index >= 0 && index < 49
+     * @param index the index of the field
+     * @return the colour of the ball, Colour.EMPTY if there is no ball
+     */
+    public Colour getColour(int index) {
+        return BitBoard.decode(BitBoard.get(cells, index));
+    }
+
+    /**
+     * Returns the colour of the ball on a field without creating Field objects.
+     * @requires row >= 0 && row < 7 && col >= 0 && col < 7
+     * @param row the row of the field
+     * @param col the column of the field
+     * @return the colour of the ball, Colour.EMPTY if there is no ball
+     */
+    public Colour getColour(int row, int col) {
+        return getColour(row * DIM + col);
+    }
+
     /**
      * Checks if the field has a ball in it by looking at the field index.
      * @requires i >= 0 && i <49
@@ -560,7 +556,7 @@ public class Board {
      * @return true if ball == null || false if ball != null.
      */
     public boolean isEmptyField(int i) {
-        return getField(i).getBall().getColour() == Colour.EMPTY;
+        return BitBoard.get(cells, i) == BitBoard.EMPTY;
     }
 
     /**
@@ -571,7 +567,7 @@ public class Board {
      * @return true if ball == null, false if ball != null.
      */
     public boolean isEmptyField(int row, int col) {
-        return getField(row, col).getBall().getColour() == Colour.EMPTY;
+        return isEmptyField(row * DIM + col);
     }
 
     /**
@@ -582,7 +578,7 @@ public class Board {
      */
     public void setField(Colour colour, int i) {
         if (isField(i)) {
-            getField(i).getBall().setColour(colour);
+            write(i, BitBoard.encode(colour));
         }
     }
 
@@ -595,20 +591,75 @@ public class Board {
      */
     public void setField(Colour colour, int row, int col) {
         if (isField(row, col)) {
-            getField(row, col).getBall().setColour(colour);
+            write(row * DIM + col, BitBoard.encode(colour));
         }
     }
 
-    public String getField(){
-        StringBuilder fieldStr = new StringBuilder();
-        if(this.fields != null){
-            for(Field[] i : this.fields){
-                for(Field f : i){
-                	//System.out.println("ball index=" + f.getIndex() + " colour=" + f.getBall().getColourInt());
-                    fieldStr.append(f.getBall().getColourInt()).append("~");
+    /**
+     * Slides the balls of a row or column as far as possible in the direction
+     * of a command, in a single pass over the packed line.
+     * Commands 0 to 6 move a row left, 7 to 13 a row right,
+     * 14 to 20 a column up and 21 to 27 a column down.
+     * @requires command >= 0 && command <= 27
+     * @param command the command of the move
+     * @return true if any ball moved, false if the line was already packed
+     */
+    public boolean slide(int command) {
+        System.arraycopy(cells, 0, before, 0, BitBoard.WORDS);
+        if (!BitBoard.slide(cells, command)) {
+            return false;
+        }
+        int line = command % DIM;
+        boolean row = command < 2 * DIM;
+        for (int k = 0; k < DIM; k++) {
+            int index = row ? line * DIM + k : k * DIM + line;
+            int old = BitBoard.get(before, index);
+            int code = BitBoard.get(cells, index);
+            if (old != code) {
+                hash ^= Zobrist.key(index, old) ^ Zobrist.key(index, code);
+                if (journal != null) {
+                    journal.record(index, old);
                 }
             }
         }
+        return true;
+    }
+
+    /**
+     * Changes the colour code of a field, recording the old code in the journal.
+     * @requires index >= 0 && index < 49
+     * @param index the index of the field
+     * @param code the new colour code
+     */
+    private void write(int index, int code) {
+        int old = BitBoard.get(cells, index);
+        if (old != code) {
+            if (journal != null) {
+                journal.record(index, old);
+            }
+            hash ^= Zobrist.key(index, old) ^ Zobrist.key(index, code);
+            BitBoard.set(cells, index, code);
+        }
+    }
+
+    /**
+     * Puts back the colour code a field had before a recorded change.
+     * The change is not recorded again.
+     * @requires index >= 0 && index < 49
+     * @param index the index of the field
+     * @param code the old colour code
+     */
+    void restore(int index, int code) {
+        hash ^= Zobrist.key(index, BitBoard.get(cells, index)) ^ Zobrist.key(index, code);
+        BitBoard.set(cells, index, code);
+    }
+
+    public String getField(){
+        StringBuilder fieldStr = new StringBuilder(2 * BitBoard.SIZE);
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            // The colour codes are the numbers used by the protocol
+            fieldStr.append(BitBoard.get(cells, i)).append("~");
+        }
         return fieldStr.toString();
     }
 
@@ -639,30 +690,37 @@ public class Board {
     // -- Getters for the different colours -------------------------------------
 
     public int getBlueCounter() {
-        return blueCounter;
+        return colourCounters[Colour.BLUE.ordinal()];
     }
 
     public int getRedCounter() {
-        return redCounter;
+        return colourCounters[Colour.RED.ordinal()];
     }
 
     public int getOrangeCounter() {
-        return orangeCounter;
+        return colourCounters[Colour.ORANGE.ordinal()];
     }
 
     public int getGreenCounter() {
-        return greenCounter;
+        return colourCounters[Colour.GREEN.ordinal()];
     }
 
     public int getYellowCounter() {
-        return yellowCounter;
+        return colourCounters[Colour.YELLOW.ordinal()];
     }
 
     public int getPurpleCounter() {
-        return purpleCounter;
+        return colourCounters[Colour.PURPLE.ordinal()];
     }
 
+    /**
+     * Returns a read-only view of the colour counters, which always shows their current values.
+     * @return a map from the six ball colours to the number of their balls not on the board
+     */
     public Map<Colour, Integer> getColourCounter() {
+        if (colourCounter == null) {
+            colourCounter = new ColourCounts(colourCounters);
+        }
         return colourCounter;
     }
 
@@ -675,4 +733,47 @@ public class Board {
         return move.noPossibleDoubleMoves() && move.noPossibleSingleMoves();
     }
 
+    /**
+     * A field of this board. It has no ball of its own, its ball
+     * reads and writes the packed cells of the board.
+     */
+    private final class BoardField extends Field {
+
+        private BoardField(Ball ball, int index) {
+            super(ball, index);
+        }
+
+        /**
+         * Places a ball of the same colour as the given ball on this field.
+         * @param ball the ball to be used in the field.
+         */
+        @Override
+        public void setBall(Ball ball) {
+            setField(ball.getColour(), getIndex());
+        }
+    }
+
+    /**
+     * The ball on a field of this board.
+     */
+    private final class BoardBall extends Ball {
+
+        private final int index;
+
+        private BoardBall(int index) {
+            super(Colour.EMPTY);
+            this.index = index;
+        }
+
+        @Override
+        public Colour getColour() {
+            return Board.this.getColour(index);
+        }
+
+        @Override
+        public void setColour(Colour colour) {
+            setField(colour, index);
+        }
+    }
+
 }
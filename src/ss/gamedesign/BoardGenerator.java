@@ -0,0 +1,140 @@
+package ss.gamedesign;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates random starting layouts for the Collecto board.
+ * A starting layout has 8 balls of each of the six colours, an empty centre
+ * field and no two neighbouring balls of the same colour. The balls are
+ * drawn from a bag field by field and the generator backtracks when a field
+ * has no colour left that differs from its neighbours, so a layout is found
+ * in a few dozen steps instead of by refilling the whole board.
+ */
+public final class BoardGenerator {
+
+    /**
+     * The number of balls of every colour on a starting board.
+     */
+    public static final int BALLS_PER_COLOUR = 8;
+
+    /**
+     * The index of the centre field, which stays empty.
+     */
+    public static final int CENTRE = BitBoard.SIZE / 2;
+
+    /**
+     * The number of balls on a starting board.
+     */
+    private static final int BALLS = BitBoard.SIZE - 1;
+
+    /**
+     * The number of colour codes, including the empty code 0.
+     */
+    private static final int CODES = 7;
+
+    /**
+     * The number of placements and backtracks after which the generator
+     * starts again with new draws. A fill needs about 50 steps, so this
+     * only cuts off the rare searches that get stuck deep in the tree.
+     */
+    private static final int STEP_LIMIT = 2000;
+
+    private BoardGenerator() {
+    }
+
+    /**
+     * Fills the cells with a random starting layout.
+     * @requires cells.length == BitBoard.WORDS && random != null
+     * @ensures 8 balls of every colour, an empty centre and no equal neighbours
+     * @param cells the packed cells to fill, the old contents are overwritten
+     * @param random the source of randomness, the same seed gives the same layout
+     */
+    public static void generate(long[] cells, SplittableRandom random) {
+        int[] codes = new int[BitBoard.SIZE];
+        int[] remaining = new int[CODES];
+        int[] tried = new int[BALLS];
+
+        int steps = STEP_LIMIT;
+        int position = 0;
+        while (position < BALLS) {
+            if (steps++ == STEP_LIMIT) {
+                // Start (again) with a full bag and an empty board
+                steps = 0;
+                position = 0;
+                Arrays.fill(codes, BitBoard.EMPTY);
+                Arrays.fill(remaining, 1, CODES, BALLS_PER_COLOUR);
+                tried[0] = 0;
+            }
+            int index = position < CENTRE ? position : position + 1;
+            int code = draw(remaining, tried[position] | neighbourCodes(codes, index), random);
+            if (code != BitBoard.EMPTY) {
+                codes[index] = code;
+                remaining[code]--;
+                position++;
+                if (position < BALLS) {
+                    tried[position] = 0;
+                }
+            } else {
+                // No colour fits here, take back the ball of the previous field
+                position--;
+                int previous = position < CENTRE ? position : position + 1;
+                tried[position] |= 1 << codes[previous];
+                remaining[codes[previous]]++;
+                codes[previous] = BitBoard.EMPTY;
+            }
+        }
+
+        for (int index = 0; index < BitBoard.SIZE; index++) {
+            BitBoard.set(cells, index, codes[index]);
+        }
+    }
+
+    /**
+     * Returns the colours of the left and upper neighbour of a field,
+     * the only neighbours that are already filled.
+     * @param codes the colour codes placed so far
+     * @param index the index of the field
+     * @return a mask with bit c set for every neighbouring colour code c
+     */
+    private static int neighbourCodes(int[] codes, int index) {
+        int mask = 0;
+        if (index % BitBoard.DIM > 0) {
+            mask |= 1 << codes[index - 1];
+        }
+        if (index >= BitBoard.DIM) {
+            mask |= 1 << codes[index - BitBoard.DIM];
+        }
+        return mask;
+    }
+
+    /**
+     * Draws a ball from the bag, leaving out some colours.
+     * Every remaining ball of an allowed colour is equally likely.
+     * @param remaining the number of balls of every colour code left in the bag
+     * @param excluded a mask of the colour codes that may not be drawn
+     * @param random the source of randomness
+     * @return the colour code drawn, or 0 if no allowed ball is left
+     */
+    private static int draw(int[] remaining, int excluded, SplittableRandom random) {
+        int total = 0;
+        for (int code = 1; code < CODES; code++) {
+            if ((excluded >>> code & 1) == 0) {
+                total += remaining[code];
+            }
+        }
+        if (total == 0) {
+            return BitBoard.EMPTY;
+        }
+        int ball = random.nextInt(total);
+        for (int code = 1; code < CODES; code++) {
+            if ((excluded >>> code & 1) == 0) {
+                ball -= remaining[code];
+                if (ball < 0) {
+                    return code;
+                }
+            }
+        }
+        return BitBoard.EMPTY;
+    }
+}
@@ -0,0 +1,175 @@
+package ss.gamedesign;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of starting layouts, filled by a background thread.
+ * Games take a ready layout from the pool instead of generating one
+ * while the player waits. When the pool is empty the layout is generated
+ * by the taking thread, which is counted as a miss.
+ */
+public class BoardPool {
+
+    /**
+     * The layouts ready to be used, as packed cells.
+     */
+    private final BlockingQueue<long[]> layouts;
+
+    /**
+     * The source of randomness of the filling thread.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The thread filling the pool, null if the pool is not started.
+     */
+    private Thread filler;
+
+    /**
+     * True once the pool was started.
+     */
+    private boolean started;
+
+    /**
+     * The time the pool was started, in nanoseconds; only meaningful once started.
+     */
+    private long startTime;
+
+    /**
+     * The number of layouts generated by the filling thread.
+     */
+    private final AtomicLong generated = new AtomicLong();
+
+    /**
+     * The number of boards taken from the pool.
+     */
+    private final AtomicLong taken = new AtomicLong();
+
+    /**
+     * The number of boards that were generated by the taking thread because the pool was empty.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates an empty pool. Call {@link #start()} to begin filling it.
+     * @requires capacity > 0
+     * @param capacity the maximum number of layouts kept ready
+     */
+    public BoardPool(int capacity) {
+        this(capacity, new SplittableRandom());
+    }
+
+    /**
+     * Creates an empty pool whose layouts are drawn from the given source.
+     * @requires capacity > 0 && random != null
+     * @param capacity the maximum number of layouts kept ready
+     * @param random the source of randomness, only used by the filling thread
+     */
+    public BoardPool(int capacity, SplittableRandom random) {
+        this.layouts = new ArrayBlockingQueue<>(capacity);
+        this.random = random;
+    }
+
+    /**
+     * Starts the daemon thread that keeps the pool full.
+     * It blocks while the pool is full, so it only runs after boards were taken.
+     */
+    public synchronized void start() {
+        if (filler != null) {
+            return;
+        }
+        started = true;
+        startTime = System.nanoTime();
+        filler = new Thread(this::fill, "board-pool");
+        filler.setDaemon(true);
+        filler.start();
+    }
+
+    /**
+     * Stops the filling thread. The layouts in the pool can still be taken.
+     */
+    public synchronized void stop() {
+        if (filler != null) {
+            filler.interrupt();
+            filler = null;
+        }
+    }
+
+    /**
+     * Generates layouts until the thread is interrupted.
+     */
+    private void fill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long[] cells = BitBoard.newCells();
+                BoardGenerator.generate(cells, random);
+                layouts.put(cells);
+                generated.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns a board with a new starting layout.
+     * Takes a ready layout if there is one, otherwise generates it in the calling thread.
+     * @return a board ready to be played on
+     */
+    public Board takeBoard() {
+        taken.incrementAndGet();
+        long[] cells = layouts.poll();
+        if (cells == null) {
+            misses.incrementAndGet();
+            return new Board();
+        }
+        return new Board(cells);
+    }
+
+    // -- Metrics -----------------------------------------------------------
+
+    public int getSize() {
+        return layouts.size();
+    }
+
+    public int getCapacity() {
+        return layouts.size() + layouts.remainingCapacity();
+    }
+
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    public long getTaken() {
+        return taken.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the average number of layouts the filling thread added per second since it started.
+     * @return the refill rate in boards per second, 0 if the pool was never started
+     */
+    public synchronized double getRefillRate() {
+        if (!started) {
+            return 0;
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds > 0 ? generated.get() / seconds : 0;
+    }
+
+    /**
+     * Describes the state of the pool.
+     * @return a one line summary of the metrics
+     */
+    @Override
+    public String toString() {
+        return String.format("board pool %d/%d, generated %d, taken %d, misses %d, refill %.0f/s",
+                getSize(), getCapacity(), getGenerated(), getTaken(), getMisses(), getRefillRate());
+    }
+}
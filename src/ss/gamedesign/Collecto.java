@@ -7,7 +7,13 @@ public class Collecto {
     public static void main(String[] args) throws InvalidMoveException {
 
         Player player1 = new HumanPlayer("Dimitri");
+        // Run with -computer or -mcts to play against the computer
         Player player2 = new HumanPlayer("Vanio");
+        if (args.length > 0 && args[0].equals("-computer")) {
+            player2 = new ComputerPlayer("Computer");
+        } else if (args.length > 0 && args[0].equals("-mcts")) {
+            player2 = new MctsPlayer("Computer", ComputerPlayer.DEFAULT_MOVE_TIME);
+        }
         Game game = new Game(player1, player2);
 //        System.out.println(game.getBoard().getField());
         game.startGame();
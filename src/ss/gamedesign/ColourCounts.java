@@ -0,0 +1,88 @@
+package ss.gamedesign;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only map view of counters kept in an int array indexed by
+ * {@link Colour#ordinal()}. It has the six ball colours as keys, not
+ * Colour.EMPTY, and always shows the current values of the array, so the
+ * owner of the counters updates them without boxing or rehashing and only
+ * callers that want a map pay for one.
+ */
+final class ColourCounts extends AbstractMap<Colour, Integer> {
+
+    /**
+     * The colours of the balls, the keys of the view.
+     */
+    private static final Colour[] BALL_COLOURS = {Colour.BLUE, Colour.YELLOW, Colour.RED,
+        Colour.ORANGE, Colour.PURPLE, Colour.GREEN};
+
+    /**
+     * The counters, indexed by the ordinal of their colour.
+     */
+    private final int[] counts;
+
+    private Set<Entry<Colour, Integer>> entries;
+
+    /**
+     * Creates a view of counters.
+     * @requires counts.length == Colour.values().length
+     * @param counts the counters, read but never changed by the view
+     */
+    ColourCounts(int[] counts) {
+        this.counts = counts;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        return containsKey(key) ? counts[((Colour) key).ordinal()] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Colour && key != Colour.EMPTY;
+    }
+
+    @Override
+    public int size() {
+        return BALL_COLOURS.length;
+    }
+
+    @Override
+    public Set<Entry<Colour, Integer>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Entry<Colour, Integer>>() {
+                @Override
+                public Iterator<Entry<Colour, Integer>> iterator() {
+                    return new Iterator<Entry<Colour, Integer>>() {
+                        private int next = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < BALL_COLOURS.length;
+                        }
+
+                        @Override
+                        public Entry<Colour, Integer> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            Colour colour = BALL_COLOURS[next++];
+                            return new SimpleImmutableEntry<>(colour, counts[colour.ordinal()]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return BALL_COLOURS.length;
+                }
+            };
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,110 @@
+package ss.gamedesign;
+
+/**
+ * A player whose moves are chosen by an {@link AlphaBetaSearch} within a
+ * fixed time per move. The statistics of the last search, including the
+ * nodes per second and the bytes allocated per node, are kept for reporting.
+ */
+public class ComputerPlayer extends Player {
+
+    /**
+     * The time per move used when none is given, in milliseconds.
+     */
+    public static final long DEFAULT_MOVE_TIME = 1000;
+
+    /**
+     * The searcher, reused for every move of this player.
+     */
+    private final AlphaBetaSearch search = new AlphaBetaSearch();
+
+    /**
+     * The time the search of one move may take, in nanoseconds.
+     */
+    private final long moveTimeNanos;
+
+    /**
+     * The opponent, whose balls are part of the searched positions, or null.
+     */
+    private Player opponent;
+
+    /**
+     * The solver used instead of the search once few balls are left, or null.
+     */
+    private EndgameSolver endgameSolver;
+
+    /**
+     * The result of the last search, null before the first move.
+     */
+    private SearchResult lastResult;
+
+    /**
+     * Creates a computer player that searches every move for DEFAULT_MOVE_TIME milliseconds.
+     * @requires name != null
+     * @param name the name of the player
+     */
+    public ComputerPlayer(String name) {
+        this(name, DEFAULT_MOVE_TIME);
+    }
+
+    /**
+     * Creates a computer player with a hard time limit per move.
+     * @requires name != null && moveTimeMillis > 0
+     * @param name the name of the player
+     * @param moveTimeMillis the time the search of one move may take, in milliseconds
+     */
+    public ComputerPlayer(String name, long moveTimeMillis) {
+        super(name);
+        this.moveTimeNanos = moveTimeMillis * 1_000_000;
+    }
+
+    /**
+     * Sets the opponent, so that the search knows the balls they collected.
+     * Without an opponent the search assumes the opponent has no balls.
+     * @param opponent the other player of the game
+     */
+    @Override
+    public void setOpponent(Player opponent) {
+        this.opponent = opponent;
+    }
+
+    /**
+     * Makes the player solve positions with few balls exactly instead of searching them.
+     * A solver can be shared by the computer players of one thread.
+     * @param endgameSolver the solver, or null to always search
+     */
+    public void setEndgameSolver(EndgameSolver endgameSolver) {
+        this.endgameSolver = endgameSolver;
+    }
+
+    @Override
+    public int determineSingleMove(Move move) {
+        return search(move).getFirstCommand();
+    }
+
+    @Override
+    public int[] determineDoubleMove(Move move) {
+        SearchResult result = search(move);
+        return new int[]{result.getFirstCommand(), result.getSecondCommand()};
+    }
+
+    /**
+     * Searches the best move on the board of move, or solves it if it is small enough.
+     * @param move the moves of the board the game is played on
+     * @return the result of the search
+     */
+    public SearchResult search(Move move) {
+        long[] cells = move.getBoard().getCells();
+        int[] ownBalls = PackedGame.ballCounts(this);
+        int[] opponentBalls = PackedGame.ballCounts(opponent);
+        if (endgameSolver != null && endgameSolver.canSolve(cells)) {
+            lastResult = endgameSolver.solve(cells, ownBalls, opponentBalls);
+        } else {
+            lastResult = search.search(cells, ownBalls, opponentBalls, moveTimeNanos);
+        }
+        return lastResult;
+    }
+
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+}
@@ -0,0 +1,443 @@
+package ss.gamedesign;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exact solver for positions with few balls left.
+ * <p>
+ * It computes the best score difference the player to move can still make
+ * from a position, playing perfectly against a perfect opponent, together
+ * with the move that makes it. Scores are counted like {@link PackedGame#scoreDifference}:
+ * 100 for every point and 1 for every ball. The points a player still gets
+ * only depend on the balls they already have modulo 3, so a position is the
+ * packed cells together with those residues of both players, ordered from
+ * the player to move. Positions are solved by an alpha-beta search to the
+ * end of the game and memoized in a fixed size table keyed by their hash,
+ * the full position being stored to rule out collisions. A position is
+ * stored in its canonical form under the rotations and reflections of the
+ * board (see {@link Symmetry}), which keep the score, so the symmetric
+ * images of a position share one entry; the best move is stored for the
+ * canonical form and mapped back when it is used.
+ * <p>
+ * The memory used is fixed when the solver is created. A full table
+ * overwrites entries; with a spill file, overwritten entries are moved to
+ * a larger table in a memory-mapped file instead of being lost, and looked
+ * up there when they are not in memory. Solving allocates nothing per position.
+ * A solver is not thread-safe.
+ */
+public class EndgameSolver implements Closeable {
+
+    /**
+     * The number of balls below which positions are solved when no limit is given.
+     */
+    public static final int DEFAULT_MAX_BALLS = 16;
+
+    /**
+     * The number of table entries when no size is given.
+     */
+    public static final int DEFAULT_ENTRIES = 1 << 18;
+
+    /**
+     * The number of longs of a table entry: the three words of the cells and the meta word.
+     */
+    private static final int ENTRY_LONGS = BitBoard.WORDS + 1;
+
+    /**
+     * The number of bytes of a table entry in the spill file.
+     */
+    private static final int ENTRY_BYTES = ENTRY_LONGS * Long.BYTES;
+
+    /**
+     * The largest spill file, which is mapped as one buffer.
+     */
+    private static final int MAX_SPILL_ENTRIES = Integer.MAX_VALUE / ENTRY_BYTES;
+
+    /**
+     * The layout of the meta word: residues in bits 0-23, the best move in
+     * bits 24-34, the value plus VALUE_OFFSET in bits 35-50, the bound in
+     * bits 51-52 and the valid bit 63.
+     */
+    private static final int MOVE_SHIFT = 24;
+    private static final int VALUE_SHIFT = 35;
+    private static final int BOUND_SHIFT = 51;
+    private static final long VALID = 1L << 63;
+    private static final int VALUE_OFFSET = 1 << 15;
+
+    /**
+     * The kinds of stored values: exact, a lower bound or an upper bound.
+     */
+    private static final int EXACT = 0;
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+
+    /**
+     * The largest game from any position: every move removes at least two balls.
+     */
+    private static final int MAX_PLY = BitBoard.SIZE / 2 + 1;
+
+    /**
+     * A bound beyond every value. The windows of the children are shifted by
+     * the gain of a move, so it is kept far from the int range to not overflow.
+     */
+    private static final int INFINITY = VALUE_OFFSET;
+
+    private final int maxBalls;
+
+    /**
+     * The entries of the table, ENTRY_LONGS longs each.
+     */
+    private final long[] table;
+    private final int tableMask;
+
+    /**
+     * The spill table and its channel, null without a spill file.
+     */
+    private final MappedByteBuffer spill;
+    private final FileChannel spillChannel;
+    private final int spillMask;
+
+    private final long[][] cells = new long[MAX_PLY + 1][BitBoard.WORDS];
+    private final int[][] balls = new int[MAX_PLY + 1][2 * PackedGame.CODES];
+    private final int[][] moves = new int[MAX_PLY + 1][PackedGame.MAX_MOVES];
+    private final long[] scratch = BitBoard.newCells();
+    private final long[] afterFirst = BitBoard.newCells();
+
+    /**
+     * The cells of an entry that is moved to the spill table.
+     */
+    private final long[] spilled = BitBoard.newCells();
+
+    /**
+     * The canonical form of the position of every ply, the key it is stored under.
+     */
+    private final long[][] canonical = new long[MAX_PLY + 1][BitBoard.WORDS];
+    private final long[] transformed = BitBoard.newCells();
+
+    /**
+     * True if positions are stored in their canonical form.
+     */
+    private boolean symmetric = true;
+
+    private long nodes;
+    private long hits;
+    private long spills;
+
+    /**
+     * Creates a solver for positions with at most DEFAULT_MAX_BALLS balls and a table of DEFAULT_ENTRIES.
+     */
+    public EndgameSolver() {
+        this(DEFAULT_MAX_BALLS, DEFAULT_ENTRIES);
+    }
+
+    /**
+     * Creates a solver that keeps its table in memory.
+     * @requires maxBalls >= 0 && entries > 0
+     * @param maxBalls the largest number of balls of the positions it solves
+     * @param entries the number of positions kept, rounded up to a power of two
+     */
+    public EndgameSolver(int maxBalls, int entries) {
+        this.maxBalls = maxBalls;
+        int size = powerOfTwo(entries);
+        this.table = new long[size * ENTRY_LONGS];
+        this.tableMask = size - 1;
+        this.spill = null;
+        this.spillChannel = null;
+        this.spillMask = 0;
+    }
+
+    /**
+     * Creates a solver that spills overwritten positions to a file.
+     * @requires maxBalls >= 0 && entries > 0 && spillEntries > 0 && spillFile != null
+     * @param maxBalls the largest number of balls of the positions it solves
+     * @param entries the number of positions kept in memory, rounded up to a power of two
+     * @param spillFile the file of the spill table, created or overwritten
+     * @param spillEntries the number of positions kept in the file, rounded up to a
+     *                     power of two and at most about 67 million
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public EndgameSolver(int maxBalls, int entries, Path spillFile, int spillEntries) throws IOException {
+        this.maxBalls = maxBalls;
+        int size = powerOfTwo(entries);
+        this.table = new long[size * ENTRY_LONGS];
+        this.tableMask = size - 1;
+        int spillSize = powerOfTwo(Math.min(spillEntries, MAX_SPILL_ENTRIES));
+        if (spillSize > MAX_SPILL_ENTRIES) {
+            spillSize >>>= 1;
+        }
+        this.spillChannel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.spill = spillChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) spillSize * ENTRY_BYTES);
+        this.spillMask = spillSize - 1;
+    }
+
+    private static int powerOfTwo(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * Checks if a position is small enough for this solver.
+     * @param position the packed cells of the board
+     * @return true if the board has at most maxBalls balls
+     */
+    public boolean canSolve(long[] position) {
+        return BitBoard.countBalls(position) <= maxBalls;
+    }
+
+    /**
+     * Solves a position for the player to move.
+     * @requires canSolve(position) && ownBalls.length == 7 && opponentBalls.length == 7
+     * @param position the packed cells of the board, not changed
+     * @param ownBalls the balls of the player to move, by colour code
+     * @param opponentBalls the balls of the opponent, by colour code
+     * @return the best move, first command -1 if the game is over, with as score the
+     *         final score difference for the player to move when both play perfectly
+     * @throws IllegalArgumentException if the position has more than maxBalls balls
+     */
+    public SearchResult solve(long[] position, int[] ownBalls, int[] opponentBalls) {
+        if (!canSolve(position)) {
+            throw new IllegalArgumentException("The position has more than " + maxBalls + " balls");
+        }
+        long start = System.nanoTime();
+        nodes = 0;
+        System.arraycopy(position, 0, cells[0], 0, BitBoard.WORDS);
+        System.arraycopy(ownBalls, 0, balls[0], 0, PackedGame.CODES);
+        System.arraycopy(opponentBalls, 0, balls[0], PackedGame.CODES, PackedGame.CODES);
+        int current = PackedGame.scoreDifference(balls[0], 0);
+
+        int count = PackedGame.generate(cells[0], moves[0], scratch, afterFirst);
+        int best = -1;
+        int bestValue = 0;
+        for (int i = 0; i < count; i++) {
+            int value = gainAndPlay(0, moves[0][i]) - solve(1, -INFINITY, INFINITY);
+            if (best == -1 || value > bestValue) {
+                best = moves[0][i];
+                bestValue = value;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (best == -1) {
+            return new SearchResult(-1, -1, current, 0, nodes, elapsed, -1);
+        }
+        // Every move removes at least two balls, which bounds the depth of the solved tree
+        return new SearchResult(PackedGame.first(best), PackedGame.second(best), current + bestValue,
+                BitBoard.countBalls(position) / 2, nodes, elapsed, -1);
+    }
+
+    /**
+     * Computes the best score difference the player to move at a ply can still make.
+     * @param ply the ply of the position
+     * @param alpha the value the player to move is already sure of
+     * @param beta the value the opponent allows
+     * @return the value of the position, exact if it lies between alpha and beta
+     */
+    private int solve(int ply, int alpha, int beta) {
+        nodes++;
+        long[] position = cells[ply];
+        long[] key = position;
+        int transform = 0;
+        if (symmetric) {
+            key = canonical[ply];
+            transform = Symmetry.canonicalize(position, key, transformed);
+        }
+        int residues = residues(balls[ply], ply & 1);
+        long hash = hash(key, residues);
+        long meta = lookup(key, residues, hash);
+        int tableMove = -1;
+        if (meta != 0) {
+            hits++;
+            int value = (int) (meta >>> VALUE_SHIFT & 0xFFFF) - VALUE_OFFSET;
+            int bound = (int) (meta >>> BOUND_SHIFT & 3);
+            if (bound == EXACT
+                    || bound == LOWER && value >= beta
+                    || bound == UPPER && value <= alpha) {
+                return value;
+            }
+            tableMove = PackedGame.mapMove((int) (meta >>> MOVE_SHIFT & 0x7FF), Symmetry.inverse(transform));
+        }
+        int count = PackedGame.generate(position, moves[ply], scratch, afterFirst);
+        if (count == 0) {
+            store(key, residues, hash, 0, EXACT, 0);
+            return 0;
+        }
+        if (tableMove != -1) {
+            moveToFront(moves[ply], count, tableMove);
+        }
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = moves[ply][0];
+        for (int i = 0; i < count; i++) {
+            int move = moves[ply][i];
+            int gain = gainAndPlay(ply, move);
+            // value = gain - child, so alpha < value < beta when gain - beta < child < gain - alpha
+            int value = gain - solve(ply + 1, gain - beta, gain - alpha);
+            if (value > best) {
+                best = value;
+                bestMove = move;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        int bound = best <= originalAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+        store(key, residues, hash, best, bound, PackedGame.mapMove(bestMove, transform));
+        return best;
+    }
+
+    /**
+     * Plays a move on the position of a ply into the next ply.
+     * @param ply the ply of the position
+     * @param move the encoded move
+     * @return the score the player to move gains with the move
+     */
+    private int gainAndPlay(int ply, int move) {
+        int player = ply & 1;
+        int before = PackedGame.scoreDifference(balls[ply], player);
+        System.arraycopy(cells[ply], 0, cells[ply + 1], 0, BitBoard.WORDS);
+        System.arraycopy(balls[ply], 0, balls[ply + 1], 0, 2 * PackedGame.CODES);
+        PackedGame.play(cells[ply + 1], move, balls[ply + 1], player);
+        return PackedGame.scoreDifference(balls[ply + 1], player) - before;
+    }
+
+    /**
+     * Packs the balls of both players modulo 3, two bits per colour, the player to move first.
+     * @param counts the balls of both players
+     * @param player the player to move
+     * @return the residues in 24 bits
+     */
+    private static int residues(int[] counts, int player) {
+        int own = player * PackedGame.CODES;
+        int other = PackedGame.CODES - own;
+        int residues = 0;
+        for (int code = 1; code < PackedGame.CODES; code++) {
+            residues = residues << 4 | counts[own + code] % 3 << 2 | counts[other + code] % 3;
+        }
+        return residues;
+    }
+
+    /**
+     * Looks a position up in memory and then in the spill table.
+     * @return the meta word of the entry, 0 if the position is not stored
+     */
+    private long lookup(long[] position, int residues, long hash) {
+        int slot = (int) hash & tableMask;
+        int base = slot * ENTRY_LONGS;
+        long meta = table[base + BitBoard.WORDS];
+        if (matches(meta, residues) && table[base] == position[0] && table[base + 1] == position[1]
+                && table[base + 2] == position[2]) {
+            return meta;
+        }
+        if (spill != null) {
+            int offset = ((int) (hash >>> 32) & spillMask) * ENTRY_BYTES;
+            meta = spill.getLong(offset + BitBoard.WORDS * Long.BYTES);
+            if (matches(meta, residues) && spill.getLong(offset) == position[0]
+                    && spill.getLong(offset + Long.BYTES) == position[1]
+                    && spill.getLong(offset + 2 * Long.BYTES) == position[2]) {
+                return meta;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Hashes a position: the Zobrist hash of the cells mixed with the residues.
+     * @param position the packed cells
+     * @param residues the residues of the balls of the players
+     * @return the 64-bit hash
+     */
+    private static long hash(long[] position, int residues) {
+        return Zobrist.hash(position) ^ residues * 0x9E3779B97F4A7C15L;
+    }
+
+    private static boolean matches(long meta, int residues) {
+        return (meta & VALID) != 0 && (int) (meta & 0xFFFFFF) == residues;
+    }
+
+    /**
+     * Stores a position in memory, moving the entry it replaces to the spill table.
+     */
+    private void store(long[] position, int residues, long hash, int value, int bound, int move) {
+        int base = ((int) hash & tableMask) * ENTRY_LONGS;
+        long old = table[base + BitBoard.WORDS];
+        if (spill != null && (old & VALID) != 0 && !(table[base] == position[0]
+                && table[base + 1] == position[1] && table[base + 2] == position[2])) {
+            spillEntry(base);
+        }
+        table[base] = position[0];
+        table[base + 1] = position[1];
+        table[base + 2] = position[2];
+        table[base + BitBoard.WORDS] = VALID | (long) bound << BOUND_SHIFT
+                | (long) (value + VALUE_OFFSET) << VALUE_SHIFT | (long) move << MOVE_SHIFT | residues;
+    }
+
+    /**
+     * Copies an entry of the memory table to the spill table.
+     * @param base the index of the first long of the entry
+     */
+    private void spillEntry(int base) {
+        System.arraycopy(table, base, spilled, 0, BitBoard.WORDS);
+        long hash = hash(spilled, (int) (table[base + BitBoard.WORDS] & 0xFFFFFF));
+        int offset = ((int) (hash >>> 32) & spillMask) * ENTRY_BYTES;
+        for (int i = 0; i < ENTRY_LONGS; i++) {
+            spill.putLong(offset + i * Long.BYTES, table[base + i]);
+        }
+        spills++;
+    }
+
+    private static void moveToFront(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move) {
+                list[i] = list[0];
+                list[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Chooses whether positions are stored in their canonical form, so that
+     * symmetric positions share an entry. It is on by default.
+     * @param symmetric true to store canonical forms, false to store the positions as they are
+     */
+    public void setSymmetric(boolean symmetric) {
+        this.symmetric = symmetric;
+    }
+
+    public int getMaxBalls() {
+        return maxBalls;
+    }
+
+    /**
+     * Returns the number of positions solved or looked up by the last solve.
+     * @return the number of visited positions
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getSpills() {
+        return spills;
+    }
+
+    /**
+     * Closes the channel of the spill file.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (spillChannel != null) {
+            spillChannel.close();
+        }
+    }
+}
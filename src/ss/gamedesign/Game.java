@@ -3,8 +3,6 @@ package ss.gamedesign;
 import ss.exceptions.InvalidMoveException;
 import ss.utils.TextIO;
 
-import java.util.Scanner;
-
 public class Game {
 
     /**
@@ -34,6 +32,8 @@ public class Game {
 
     public Game(Player player1, Player player2) {
         players = new Player[]{player1, player2};
+        player1.setOpponent(player2);
+        player2.setOpponent(player1);
         current = (int) (Math.random() * 2);
         board = new Board();
         move = new Move(board);
@@ -57,21 +57,16 @@ public class Game {
     }
 
     private void playGame() {
-        Scanner sc = new Scanner(System.in);
-
-
         while (!board.gameOver(move)) {
 
             if (!move.noPossibleSingleMoves()) {
                 System.out.println("Single move required: ");
-                int playerMove = sc.nextInt();
+                int playerMove = players[current].determineSingleMove(move);
                 move.singleMove(players[current], playerMove);
             } else if (!move.noPossibleDoubleMoves()) {
                 System.out.println("Double move required: ");
-                int playerMove1 = sc.nextInt();
-                sc.nextLine();
-                int playerMove2 = sc.nextInt();
-                move.doubleMove(players[current], playerMove1, playerMove2);
+                int[] playerMoves = players[current].determineDoubleMove(move);
+                move.doubleMove(players[current], playerMoves[0], playerMoves[1]);
             }
 
             if (current == 0) {
@@ -0,0 +1,143 @@
+package ss.gamedesign;
+
+/**
+ * The result of one headless game between two strategies, see {@link SelfPlay}.
+ * The strategies are called A and B; which of them moved first is part of the record.
+ */
+public class GameRecord {
+
+    /**
+     * The header of the lines written by {@link #toCsv()}.
+     */
+    public static final String CSV_HEADER =
+            "seed,starter,winner,pointsA,pointsB,ballsA,ballsB,moves,nanosA,nanosB,turnNanos";
+
+    /**
+     * The seed the board and the random choices of the game were taken from.
+     */
+    private final long seed;
+
+    /**
+     * The strategy that moved first, 0 for A and 1 for B.
+     */
+    private final int starter;
+
+    /**
+     * The points and the balls of A at index 0 and of B at index 1.
+     */
+    private final int[] points;
+    private final int[] balls;
+
+    /**
+     * The time every turn took, choosing and playing the move, in nanoseconds.
+     */
+    private final long[] turnNanos;
+
+    /**
+     * Creates the record of a game.
+     * @requires points.length == 2 && balls.length == 2
+     * @param seed the seed of the game
+     * @param starter the strategy that moved first, 0 for A and 1 for B
+     * @param points the points of A and B
+     * @param balls the balls of A and B
+     * @param turnNanos the duration of every turn, its length the number of moves
+     */
+    public GameRecord(long seed, int starter, int[] points, int[] balls, long[] turnNanos) {
+        this.seed = seed;
+        this.starter = starter;
+        this.points = points;
+        this.balls = balls;
+        this.turnNanos = turnNanos;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getStarter() {
+        return starter;
+    }
+
+    /**
+     * Returns the winner like {@link NetworkGame#getWinner()}: the strategy
+     * with more points, or with more balls if the points are equal.
+     * @return 0 if A won, 1 if B won, -1 for a draw
+     */
+    public int getWinner() {
+        if (points[0] != points[1]) {
+            return points[0] > points[1] ? 0 : 1;
+        }
+        if (balls[0] != balls[1]) {
+            return balls[0] > balls[1] ? 0 : 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @param strategy 0 for A, 1 for B
+     * @return the points the strategy made
+     */
+    public int getPoints(int strategy) {
+        return points[strategy];
+    }
+
+    /**
+     * @param strategy 0 for A, 1 for B
+     * @return the balls the strategy collected
+     */
+    public int getBalls(int strategy) {
+        return balls[strategy];
+    }
+
+    public int getMoves() {
+        return turnNanos.length;
+    }
+
+    /**
+     * @param turn a turn, 0 for the first move of the game
+     * @return the time the turn took, in nanoseconds
+     */
+    public long getTurnNanos(int turn) {
+        return turnNanos[turn];
+    }
+
+    /**
+     * Adds up the time a strategy spent on its turns.
+     * @param strategy 0 for A, 1 for B
+     * @return the time of all turns of the strategy, in nanoseconds
+     */
+    public long getNanos(int strategy) {
+        long total = 0;
+        // The starter plays the even turns
+        for (int turn = strategy == starter ? 0 : 1; turn < turnNanos.length; turn += 2) {
+            total += turnNanos[turn];
+        }
+        return total;
+    }
+
+    /**
+     * Writes the record as a line of comma separated values, without a line end.
+     * The turn times are the last column, separated by spaces.
+     * @return the record in the columns of CSV_HEADER
+     */
+    public String toCsv() {
+        StringBuilder line = new StringBuilder(64 + 8 * turnNanos.length);
+        line.append(seed).append(',').append(starter).append(',').append(getWinner())
+                .append(',').append(points[0]).append(',').append(points[1])
+                .append(',').append(balls[0]).append(',').append(balls[1])
+                .append(',').append(turnNanos.length)
+                .append(',').append(getNanos(0)).append(',').append(getNanos(1)).append(',');
+        for (int turn = 0; turn < turnNanos.length; turn++) {
+            if (turn > 0) {
+                line.append(' ');
+            }
+            line.append(turnNanos[turn]);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toCsv();
+    }
+}
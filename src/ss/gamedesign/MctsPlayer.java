@@ -0,0 +1,96 @@
+package ss.gamedesign;
+
+/**
+ * A player whose moves are chosen by a {@link MctsSearch} within a fixed
+ * time per move, growing one tree on each of a number of threads.
+ * The statistics of the last search, including the number of playouts,
+ * are kept for reporting.
+ */
+public class MctsPlayer extends Player {
+
+    /**
+     * The searcher, reused for every move of this player.
+     */
+    private final MctsSearch search;
+
+    /**
+     * The time the search of one move may take, in nanoseconds.
+     */
+    private final long moveTimeNanos;
+
+    /**
+     * The opponent, whose balls are part of the searched positions, or null.
+     */
+    private Player opponent;
+
+    /**
+     * The result of the last search, null before the first move.
+     */
+    private SearchResult lastResult;
+
+    /**
+     * Creates a player that searches on every available processor.
+     * @requires name != null && moveTimeMillis > 0
+     * @param name the name of the player
+     * @param moveTimeMillis the time the search of one move may take, in milliseconds
+     */
+    public MctsPlayer(String name, long moveTimeMillis) {
+        this(name, moveTimeMillis, new MctsSearch());
+    }
+
+    /**
+     * Creates a player that uses the given searcher.
+     * @requires name != null && moveTimeMillis > 0 && search != null
+     * @param name the name of the player
+     * @param moveTimeMillis the time the search of one move may take, in milliseconds
+     * @param search the searcher, which decides the number of threads
+     */
+    public MctsPlayer(String name, long moveTimeMillis, MctsSearch search) {
+        super(name);
+        this.moveTimeNanos = moveTimeMillis * 1_000_000;
+        this.search = search;
+    }
+
+    /**
+     * Sets the opponent, so that the search knows the balls they collected.
+     * Without an opponent the search assumes the opponent has no balls.
+     * @param opponent the other player of the game
+     */
+    @Override
+    public void setOpponent(Player opponent) {
+        this.opponent = opponent;
+    }
+
+    @Override
+    public int determineSingleMove(Move move) {
+        return search(move).getFirstCommand();
+    }
+
+    @Override
+    public int[] determineDoubleMove(Move move) {
+        SearchResult result = search(move);
+        return new int[]{result.getFirstCommand(), result.getSecondCommand()};
+    }
+
+    /**
+     * Searches the best move on the board of move.
+     * @param move the moves of the board the game is played on
+     * @return the result of the search
+     */
+    public SearchResult search(Move move) {
+        lastResult = search.search(move.getBoard().getCells(), PackedGame.ballCounts(this),
+                PackedGame.ballCounts(opponent), moveTimeNanos);
+        return lastResult;
+    }
+
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Stops the threads of the searcher.
+     */
+    public void shutdown() {
+        search.shutdown();
+    }
+}
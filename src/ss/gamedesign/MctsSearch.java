@@ -0,0 +1,343 @@
+package ss.gamedesign;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Monte Carlo Tree Search over the Collecto game tree with root parallelism.
+ * <p>
+ * Every thread grows its own tree from the same root: it walks down the
+ * tree choosing children by their upper confidence bound, adds one new
+ * position, and finishes the game from there with random moves. The result
+ * of that playout, a win, a draw or a loss, is counted in every position on
+ * the way back to the root. When the time is up the visits of the root
+ * moves of all trees are added up and the most visited move is chosen.
+ * The trees share nothing, so the threads never wait for each other.
+ * <p>
+ * Playouts use the packed rules of {@link PackedGame}, the same moves as
+ * {@link Move#singleMove} and {@link Move#doubleMove} without the views
+ * and the bookkeeping of a Board. A searcher owns a pool of daemon
+ * threads; call {@link #shutdown()} when it is no longer needed.
+ */
+public class MctsSearch {
+
+    /**
+     * The exploration constant of the upper confidence bound.
+     */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /**
+     * The number of trees grown in parallel.
+     */
+    private final int threads;
+
+    /**
+     * The threads growing the trees.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The source of the seeds of the trees, split for every tree.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Creates a searcher that grows one tree on every available processor.
+     */
+    public MctsSearch() {
+        this(Runtime.getRuntime().availableProcessors(), new SplittableRandom());
+    }
+
+    /**
+     * Creates a searcher.
+     * @requires threads > 0 && random != null
+     * @param threads the number of trees grown in parallel
+     * @param random the source of the playouts, so that a seed gives the same trees
+     */
+    public MctsSearch(int threads, SplittableRandom random) {
+        this.threads = threads;
+        this.random = random;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "mcts");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Searches the best move for the player to move.
+     * @requires position.length == BitBoard.WORDS && ownBalls.length == 7
+     *           && opponentBalls.length == 7 && budgetNanos > 0
+     * @param position the packed cells of the board, not changed
+     * @param ownBalls the balls of the player to move, by colour code
+     * @param opponentBalls the balls of the opponent, by colour code
+     * @param budgetNanos the time the search may take, in nanoseconds
+     * @return the chosen move, with the number of playouts as nodes and the
+     *         share of won playouts of the move, in thousandths, as score;
+     *         first command -1 if the game is over
+     */
+    public SearchResult search(long[] position, int[] ownBalls, int[] opponentBalls, long budgetNanos) {
+        long start = System.nanoTime();
+        long deadline = start + budgetNanos;
+        int[] balls = new int[2 * PackedGame.CODES];
+        System.arraycopy(ownBalls, 0, balls, 0, PackedGame.CODES);
+        System.arraycopy(opponentBalls, 0, balls, PackedGame.CODES, PackedGame.CODES);
+
+        List<Future<Tree>> futures = new ArrayList<>();
+        synchronized (random) {
+            for (int i = 0; i < threads; i++) {
+                Tree tree = new Tree(position, balls, random.split());
+                futures.add(pool.submit(() -> tree.grow(deadline)));
+            }
+        }
+        List<Tree> trees = new ArrayList<>();
+        try {
+            for (Future<Tree> future : futures) {
+                trees.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Search interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Search failed", e.getCause());
+        }
+        return merge(trees, System.nanoTime() - start);
+    }
+
+    /**
+     * Adds up the statistics of the root moves of all trees and picks the most visited move.
+     * @param trees the grown trees, all with the same root
+     * @param elapsed the duration of the search in nanoseconds
+     * @return the result of the search
+     */
+    private static SearchResult merge(List<Tree> trees, long elapsed) {
+        // Every tree has the same root moves, only their order differs
+        Node root = trees.get(0).root;
+        int moves = root.moves.length;
+        int[] allMoves = root.moves;
+        long[] visits = new long[moves];
+        double[] rewards = new double[moves];
+        long playouts = 0;
+        int depth = 0;
+        for (Tree tree : trees) {
+            playouts += tree.playouts;
+            depth = Math.max(depth, tree.maxDepth);
+            for (int c = 0; c < tree.root.childCount; c++) {
+                Node child = tree.root.children[c];
+                int index = indexOf(allMoves, moves, child.move);
+                visits[index] += child.visits;
+                rewards[index] += child.reward;
+            }
+        }
+        if (moves == 0) {
+            return new SearchResult(-1, -1, 0, 0, playouts, elapsed, -1);
+        }
+        int best = 0;
+        for (int i = 1; i < moves; i++) {
+            if (visits[i] > visits[best]) {
+                best = i;
+            }
+        }
+        int score = visits[best] == 0 ? 0 : (int) Math.round(1000 * rewards[best] / visits[best]);
+        int move = allMoves[best];
+        return new SearchResult(PackedGame.first(move), PackedGame.second(move), score, depth,
+                playouts, elapsed, -1);
+    }
+
+    private static int indexOf(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Unknown root move " + move);
+    }
+
+    /**
+     * Stops the threads of this searcher.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * A position in a tree.
+     */
+    private static final class Node {
+
+        /**
+         * The encoded move that led to this position, -1 for the root.
+         */
+        private final int move;
+
+        /**
+         * The player who made the move, 0 or 1.
+         */
+        private final int player;
+
+        /**
+         * The moves of the position; the first untriedCount have no child yet.
+         */
+        private final int[] moves;
+        private int untriedCount;
+
+        private Node[] children;
+        private int childCount;
+
+        private int visits;
+
+        /**
+         * The sum of the results of the playouts through this position for
+         * the player who made the move: 1 for a win, 0.5 for a draw.
+         */
+        private double reward;
+
+        private Node(int move, int player, int[] moves) {
+            this.move = move;
+            this.player = player;
+            this.moves = moves;
+            this.untriedCount = moves.length;
+            this.children = new Node[moves.length];
+        }
+    }
+
+    /**
+     * One tree with the buffers to grow it, used by one thread.
+     */
+    private static final class Tree {
+
+        private final long[] rootCells;
+        private final int[] rootBalls;
+        private final SplittableRandom random;
+        private final Node root;
+
+        private final long[] cells = BitBoard.newCells();
+        private final int[] balls = new int[2 * PackedGame.CODES];
+        private final int[] list = new int[PackedGame.MAX_MOVES];
+        private final long[] scratch = BitBoard.newCells();
+        private final long[] afterFirst = BitBoard.newCells();
+
+        /**
+         * The nodes of the current walk from the root. Every move removes at
+         * least two balls, so a game never has more moves than fields.
+         */
+        private final Node[] path = new Node[BitBoard.SIZE];
+
+        private long playouts;
+        private int maxDepth;
+
+        private Tree(long[] position, int[] balls, SplittableRandom random) {
+            this.rootCells = position.clone();
+            this.rootBalls = balls.clone();
+            this.random = random;
+            int count = PackedGame.generate(rootCells, list, scratch, afterFirst);
+            this.root = new Node(-1, 1, Arrays.copyOf(list, count));
+        }
+
+        /**
+         * Runs playouts until the deadline.
+         * @param deadline the time to stop, as a System.nanoTime() value
+         * @return this tree
+         */
+        private Tree grow(long deadline) {
+            if (root.moves.length == 0) {
+                return this;
+            }
+            do {
+                for (int i = 0; i < 16; i++) {
+                    iterate();
+                }
+            } while (System.nanoTime() < deadline);
+            return this;
+        }
+
+        /**
+         * Selects a path, expands one position, plays it out and counts the result.
+         */
+        private void iterate() {
+            System.arraycopy(rootCells, 0, cells, 0, BitBoard.WORDS);
+            System.arraycopy(rootBalls, 0, balls, 0, rootBalls.length);
+            Node node = root;
+            int depth = 0;
+            path[depth] = node;
+            while (node.untriedCount == 0 && node.childCount > 0) {
+                node = select(node);
+                PackedGame.play(cells, node.move, balls, node.player);
+                path[++depth] = node;
+            }
+            if (node.untriedCount > 0) {
+                node = expand(node);
+                path[++depth] = node;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+            int toMove = 1 - node.player;
+            int count;
+            while ((count = PackedGame.generate(cells, list, scratch, afterFirst)) > 0) {
+                PackedGame.play(cells, list[random.nextInt(count)], balls, toMove);
+                toMove = 1 - toMove;
+            }
+            playouts++;
+            int difference = PackedGame.scoreDifference(balls, 0);
+            for (int i = depth; i >= 0; i--) {
+                Node visited = path[i];
+                visited.visits++;
+                if (difference == 0) {
+                    visited.reward += 0.5;
+                } else if ((difference > 0) == (visited.player == 0)) {
+                    visited.reward += 1;
+                }
+            }
+        }
+
+        /**
+         * Chooses the child with the highest upper confidence bound.
+         * @param node a fully expanded node
+         * @return the chosen child
+         */
+        private Node select(Node node) {
+            double logVisits = Math.log(node.visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < node.childCount; i++) {
+                Node child = node.children[i];
+                double value = child.reward / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Adds the position after a random untried move of a node to the tree
+         * and plays that move on the buffers.
+         * @param node a node with untried moves
+         * @return the new child
+         */
+        private Node expand(Node node) {
+            int index = random.nextInt(node.untriedCount);
+            int move = node.moves[index];
+            // Keep the untried moves at the front
+            node.untriedCount--;
+            node.moves[index] = node.moves[node.untriedCount];
+            node.moves[node.untriedCount] = move;
+            int player = 1 - node.player;
+            PackedGame.play(cells, move, balls, player);
+            int count = PackedGame.generate(cells, list, scratch, afterFirst);
+            Node child = new Node(move, player, Arrays.copyOf(list, count));
+            node.children[node.childCount++] = child;
+            return child;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package ss.gamedesign;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class Move {
 
@@ -16,11 +18,16 @@ public class Move {
 	}
 
 	/**
-     * A copy of the board used to play the game. It is used
-     * to reverse any changes to the board that result from illegal moves.
+     * A copy of the board after the last move, see updateCopy and reverseMove.
      */
     private Board copy;
 
+    /**
+     * The fields changed by the last move. It is used
+     * to reverse any changes to the board that result from illegal moves.
+     */
+    private final UndoJournal journal = new UndoJournal();
+
     /**
      * The dimensions of the board.
      */
@@ -37,6 +44,32 @@ public class Move {
      */
     private Map<Integer, Boolean> singleMoves;
 
+    /**
+     * The possible single moves, bit i is set if command i is possible.
+     */
+    private int singleMovesMask;
+
+    /**
+     * The scratch cells used by the move generator.
+     */
+    private final long[] scratch = BitBoard.newCells();
+
+    /**
+     * The cells of the board the single moves were last generated for.
+     */
+    private final long[] singleMovesCells = BitBoard.newCells();
+
+    /**
+     * True if the board had neighbours of the same colour when the single
+     * moves were last generated, in which case every command depends on them.
+     */
+    private boolean singleMovesPairs;
+
+    /**
+     * The cache of legal moves shared with other games, or null.
+     */
+    private MoveCache cache;
+
     /**
      * Initializes the Move class with the board from class Board.
      * @param board the board value assigned to the instance variable
@@ -83,20 +116,12 @@ public class Move {
     }
 
     /**
-     * Moves all the non-empty fields to the right.
+     * Moves all the non-empty fields to the right, in a single pass over the row.
      * @param row the row of the board
+     * @return true if any ball moved
      */
-    public void moveRowOnRight(int row) {
-        if (rowCanBeMoved(row)) {
-            while (hasEmptyRightNeighbour(row)) {
-                for (int j = 0; j < DIM - 1; j++) {
-                    if (board.getField(row, j + 1).getBall().getColour() == Colour.EMPTY) {
-                        board.setField(board.getField(row, j).getBall().getColour(), row, j + 1);
-                        board.setField(Colour.EMPTY, row, j);
-                    }
-                }
-            }
-        }
+    public boolean moveRowOnRight(int row) {
+        return board.slide(DIM + row);
     }
 
     // -- LEFT ROW CONTROL
@@ -118,21 +143,13 @@ public class Move {
     }
 
     /**
-     * Moves all the non-empty fields to the left.
+     * Moves all the non-empty fields to the left, in a single pass over the row.
      * @requires row >= 0 && row < 7
      * @param row the row of the board
+     * @return true if any ball moved
      */
-    public void moveRowOnLeft(int row) {
-        if (rowCanBeMoved(row)) {
-            while (hasEmptyLeftNeighbour(row)) {
-                for (int j = 1; j < DIM; j++) {
-                    if (board.getField(row, j - 1).getBall().getColour() == Colour.EMPTY) {
-                        board.setField(board.getField(row, j).getBall().getColour(), row, j - 1);
-                        board.setField(Colour.EMPTY, row, j);
-                    }
-                }
-            }
-        }
+    public boolean moveRowOnLeft(int row) {
+        return board.slide(row);
     }
 
     // -- COLUMN CONTROL ----------------------------------------------------------------------
@@ -172,21 +189,13 @@ public class Move {
     }
 
     /**
-     * Moves all the non-empty fields down.
+     * Moves all the non-empty fields down, in a single pass over the column.
      * @requires column >= 0 && column < 7
      * @param column the column of the board
+     * @return true if any ball moved
      */
-    public void moveColumnDown(int column) {
-        if (columnCanBeMoved(column)) {
-            while (hasEmptyLowerNeighbour(column)) {
-                for (int i = 0; i < DIM - 1; i++) {
-                    if (board.getField(i + 1, column).getBall().getColour() == Colour.EMPTY) {
-                        board.setField(board.getField(i, column).getBall().getColour(), i + 1, column);
-                        board.setField(Colour.EMPTY, i, column);
-                    }
-                }
-            }
-        }
+    public boolean moveColumnDown(int column) {
+        return board.slide(3 * DIM + column);
     }
 
     // -- LOWER COLUMN CONTROL
@@ -208,21 +217,13 @@ public class Move {
     }
 
     /**
-     * Moves all the non-empty fields up.
+     * Moves all the non-empty fields up, in a single pass over the column.
      * @requires column >= 0 && column < 7
      * @param column the column of the board
+     * @return true if any ball moved
      */
-    public void moveColumnUp(int column) {
-        if (columnCanBeMoved(column)) {
-            while (hasEmptyUpperNeighbour(column)) {
-                for (int i = 1; i < DIM; i++) {
-                    if (board.getField(i - 1, column).getBall().getColour() == Colour.EMPTY) {
-                        board.setField(board.getField(i, column).getBall().getColour(), i - 1, column);
-                        board.setField(Colour.EMPTY, i, column);
-                    }
-                }
-            }
-        }
+    public boolean moveColumnUp(int column) {
+        return board.slide(2 * DIM + column);
     }
 
     // -- WHOLE BOARD CONTROL -----------------------------------------------------------------
@@ -235,17 +236,27 @@ public class Move {
      * @param col the column of the field
      */
     public void fillArrayList(int row, int col) {
+        int index = row * DIM + col;
         if (board.hasSameNeighbours(row, col) && !board.isEmptyField(row, col)) {
-            for (int i = 0; i < board.getNeighboursIndex(row, col).length; i++) {
-                if (board.getNeighboursIndex(row, col)[i] != -1 && board.ballHasSameColour(board.getField(row, col), board.getField(board.getNeighboursIndex(row, col)[i]))) {
-                    if (!sameNeighboursArrayList.contains(board.getField(board.getNeighboursIndex(row, col)[i]).getIndex())) {
-                        sameNeighboursArrayList.add(board.getField(board.getNeighboursIndex(row, col)[i]).getIndex());
-                    }
+            Colour colour = board.getColour(index);
+            for (int direction = 0; direction < Board.NEIGHBOURS; direction++) {
+                int neighbour = Board.getNeighbour(index, direction);
+                if (neighbour != -1 && board.getColour(neighbour) == colour) {
+                    addSameNeighbour(neighbour);
                 }
             }
-            if (!sameNeighboursArrayList.contains(board.getField(row, col).getIndex())) {
-                sameNeighboursArrayList.add(board.getField(row, col).getIndex());
-            }
+            addSameNeighbour(index);
+        }
+    }
+
+    /**
+     * Adds the index of a field to the array list if it is not in it yet.
+     * The indexes of the board are cached Integer values, so this does not allocate.
+     * @param index the index of the field
+     */
+    private void addSameNeighbour(int index) {
+        if (!sameNeighboursArrayList.contains(index)) {
+            sameNeighboursArrayList.add(index);
         }
     }
 
@@ -287,11 +298,7 @@ public class Move {
      * @ensures copy.fields[i][j] = board.fields[i][j]
      */
     public void updateCopy() {
-        for (int i = 0; i < DIM; i++) {
-            for (int j = 0; j < DIM; j++) {
-                copy.setField(board.getField(i, j).getBall().getColour(), i, j);
-            }
-        }
+        copy.copyFieldsFrom(board);
     }
 
     /**
@@ -300,165 +307,72 @@ public class Move {
      * @ensures board.fields[i][j] = copy.fields[i][j]
      */
     public void reverseMove() {
-        for (int i = 0; i < DIM; i++) {
-            for (int j = 0; j < DIM; j++) {
-                board.setField(copy.getField(i, j).getBall().getColour(), i, j);
-            }
-        }
+        board.copyFieldsFrom(copy);
     }
 
     /**
      * Set up for the commands used to move rows and columns in a specific direction.
-     * Every commands is equivalent to a moveRow or moveCol method in a specific direction.
+     * Every commands is equivalent to a moveRow or moveCol method in a specific direction:
+     * 0 to 6 move a row left, 7 to 13 a row right, 14 to 20 a column up and 21 to 27 a column down.
      * @param command the command used in the game to move rows or columns
      * @requires command >= 0 && command <= 27
+     * @return true if any ball moved
      */
-    private void commands(int command) {
-        switch (command) {
-            case 0:
-                moveRowOnLeft(0);
-                break;
-
-            case 1:
-                moveRowOnLeft(1);
-                break;
-
-            case 2:
-                moveRowOnLeft(2);
-                break;
-
-            case 3:
-                moveRowOnLeft(3);
-                break;
-
-            case 4:
-                moveRowOnLeft(4);
-                break;
-
-            case 5:
-                moveRowOnLeft(5);
-                break;
-
-            case 6:
-                moveRowOnLeft(6);
-                break;
-            case 7:
-                moveRowOnRight(0);
-                break;
-
-            case 8:
-                moveRowOnRight(1);
-                break;
-
-            case 9:
-                moveRowOnRight(2);
-                break;
-
-            case 10:
-                moveRowOnRight(3);
-                break;
-
-            case 11:
-                moveRowOnRight(4);
-                break;
-
-            case 12:
-                moveRowOnRight(5);
-                break;
-
-            case 13:
-                moveRowOnRight(6);
-                break;
-
-            case 14:
-                moveColumnUp(0);
-                break;
-
-            case 15:
-                moveColumnUp(1);
-                break;
-
-            case 16:
-                moveColumnUp(2);
-                break;
-
-            case 17:
-                moveColumnUp(3);
-                break;
-
-            case 18:
-                moveColumnUp(4);
-                break;
-
-            case 19:
-                moveColumnUp(5);
-                break;
-
-            case 20:
-                moveColumnUp(6);
-                break;
-
-            case 21:
-                moveColumnDown(0);
-                break;
-
-            case 22:
-                moveColumnDown(1);
-                break;
-
-            case 23:
-                moveColumnDown(2);
-                break;
-
-            case 24:
-                moveColumnDown(3);
-                break;
-
-            case 25:
-                moveColumnDown(4);
-                break;
-
-            case 26:
-                moveColumnDown(5);
-                break;
-
-            case 27:
-                moveColumnDown(6);
-                break;
-        }
+    private boolean commands(int command) {
+        return board.slide(command);
     }
 
     /**
      * Fill the map with all the possible single moves as keys
      * and set their value to true of false depending on whether
      * the move is possible or not.
+     * The moves are found by the move generator on a scratch copy
+     * of the board, so the board itself is not changed.
      */
     public void fillSingleMovesMap() {
-        for (int i = 0; i < 28; i++) {
-            commands(i);
-            fillArrayList();
-            if (isMoveValid()) {
-                singleMoves.put(i, true);
-            } else {
-                singleMoves.put(i, false);
+        long[] cells = board.getCells();
+        singleMovesMask = cache != null ? cache.singleMoves(board) : MoveGenerator.legalSingleMoves(cells, scratch);
+        singleMovesPairs = BitBoard.hasPairs(cells);
+        System.arraycopy(cells, 0, singleMovesCells, 0, BitBoard.WORDS);
+        for (int i = 0; i < MoveGenerator.COMMANDS; i++) {
+            singleMoves.put(i, MoveGenerator.contains(singleMovesMask, i));
+        }
+    }
+
+    /**
+     * Brings the single moves up to date with the board.
+     * Only the commands whose row or column, or a line next to it, changed
+     * since the moves were last generated are checked again. The other
+     * commands keep their cached result.
+     */
+    private void updateSingleMoves() {
+        long[] cells = board.getCells();
+        if (Arrays.equals(cells, singleMovesCells)) {
+            return;
+        }
+        if (cache != null || singleMovesPairs || BitBoard.hasPairs(cells)) {
+            // A cached position is looked up whole, and equal neighbours
+            // anywhere on the board make every command depend on them
+            fillSingleMovesMap();
+            return;
+        }
+        int stale = MoveGenerator.affectedCommands(singleMovesCells, cells);
+        singleMovesMask = singleMovesMask & ~stale | MoveGenerator.legalSingleMoves(cells, scratch, stale);
+        System.arraycopy(cells, 0, singleMovesCells, 0, BitBoard.WORDS);
+        for (int i = 0; i < MoveGenerator.COMMANDS; i++) {
+            if (MoveGenerator.contains(stale, i)) {
+                singleMoves.put(i, MoveGenerator.contains(singleMovesMask, i));
             }
-            sameNeighboursArrayList.clear();
-            reverseMove();
         }
     }
 
     /**
-     * Goes through the singleMoves map and checks if there is a
-     * single move left for the players to use.
+     * Checks if there is a single move left for the players to use.
      * @return true if there are no possible single moves for the board
      */
     public boolean noPossibleSingleMoves() {
-        for (boolean command : singleMoves.values()) {
-            if (command) {
-                return false;
-            }
-        }
-        return true;
+        updateSingleMoves();
+        return singleMovesMask == 0;
     }
 
     /**
@@ -466,20 +380,24 @@ public class Move {
      * The method first checks if a single move can be performed. If it can
      * it makes the move, sets the balls to be removed to the player performing
      * the move and then removes the balls from the board. Then it updates the
-     * board copy and fills the map with the new possible single moves.
+     * board copy and the possible single moves of the lines that changed.
      * @requires command >= 0 && command <= 27
      * @ensures no invalid moves change the board
      * @param command the command used to move rows or columns that should
      *                gather balls from the same colour
      */
     public void singleMove(Player player, int command) {
-        if (singleMoves.get(command)) {
+        updateSingleMoves();
+        if (MoveGenerator.contains(singleMovesMask, command)) {
+            journal.clear();
+            board.setJournal(journal);
             commands(command);
             fillArrayList();
             takeBalls(player);
             removeSameBalls();
+            board.setJournal(null);
             updateCopy();
-            fillSingleMovesMap();
+            updateSingleMoves();
         }
     }
 
@@ -488,73 +406,122 @@ public class Move {
      * Make two movements on the board, then check if the move was valid.
      * If the move was valid set the balls to be removed to the player
      * performing the move and then remove those balls from the board.
-     * Update the copy and the single moves map.
+     * Update the copy and the single moves of the lines that changed.
      * @requires command1 >= 0 && command1 <= 27
      * @requires command2 >= 0 && command2 <= 27
      * @param command1 the first move used to move a row or a column
      * @param command2 the second move that should gather balls from the same colour
      */
     public void doubleMove(Player player, int command1, int command2) {
+        journal.clear();
+        board.setJournal(journal);
         commands(command1);
         commands(command2);
         fillArrayList();
         if (isMoveValid()) {
             takeBalls(player);
             removeSameBalls();
+            board.setJournal(null);
             updateCopy();
         } else {
-            reverseMove();
+            board.setJournal(null);
+            journal.undo(board);
             fillArrayList();
         }
-        fillSingleMovesMap();
+        updateSingleMoves();
     }
 
     /**
      * Checks if any double moves can be performed if single moves cannot
-     * be performed.
+     * be performed. The double moves are searched by the move generator
+     * on scratch copies of the board, so the board is not changed.
+     * With a cache set, the answer is looked up there first.
      * @ensures when can double moves be performed
-     * @return true if no single moves can be performed and there exists a valid double move
+     * @return false if no single moves can be performed and there exists a valid double move
      */
     public boolean noPossibleDoubleMoves() {
         if (noPossibleSingleMoves()) {
-            for (int i = 0; i < 28; i++) {
-                for (int j = 0; j < 28; j++) {
-                    commands(i);
-                    commands(j);
-                    fillArrayList();
-                    if (isMoveValid()) {
-                        reverseMove();
-                        fillArrayList();
-                        return false;
-                    }
-                    reverseMove();
-                    fillArrayList();
-                }
+            if (cache != null) {
+                return !cache.hasDoubleMove(board);
             }
+            return !MoveGenerator.hasDoubleMove(board.getCells());
+        }
+        return true;
+    }
+
+    /**
+     * Checks if any double moves can be performed if single moves cannot
+     * be performed, searching the first slides in parallel on the given pool.
+     * @requires pool != null
+     * @param pool the pool used for the search
+     * @return false if no single moves can be performed and there exists a valid double move
+     */
+    public boolean noPossibleDoubleMoves(ForkJoinPool pool) {
+        if (noPossibleSingleMoves()) {
+            return !MoveGenerator.hasDoubleMove(board.getCells(), pool);
         }
         return true;
     }
 
+    /**
+     * Makes the legal moves be looked up in a cache shared with other games.
+     * The moves of a position that is not in the cache are generated as usual
+     * and added to it.
+     * @param cache the cache to use, or null to always generate the moves
+     */
+    public void setCache(MoveCache cache) {
+        this.cache = cache;
+        fillSingleMovesMap();
+    }
+
     public Board getBoard() {
         return board;
     }
 
+    /**
+     * Returns the journal of the last move, which holds the fields changed
+     * by its slides and by the removal of the gathered balls.
+     * @return the journal of the last valid move, empty after an invalid double move
+     */
+    public UndoJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the second moves that make a valid double move after a first move.
+     * @requires first >= 0 && first <= 27
+     * @param first the command of the first move
+     * @return a mask with bit i set if doubleMove(player, first, i) is valid
+     */
+    public int getSecondMovesMask(int first) {
+        return MoveGenerator.legalSecondMoves(board.getCells(), first);
+    }
+
     public ArrayList<Integer> getSameNeighboursArrayList() {
         return sameNeighboursArrayList;
     }
 
     public Map<Integer, Boolean> getSingleMoves() {
+        updateSingleMoves();
         return singleMoves;
     }
 
     /**
-     * Fills the player's map with the balls he has removed from the board.
+     * Returns the possible single moves as a mask.
+     * @return a mask with bit i set if command i is a possible single move
+     */
+    public int getSingleMovesMask() {
+        updateSingleMoves();
+        return singleMovesMask;
+    }
+
+    /**
+     * Counts the balls that are removed from the board for the player.
      * @param player the player that is at turn
      */
     public void takeBalls(Player player) {
         for (Integer integer : sameNeighboursArrayList) {
-            player.increasePlayerBalls(board.getField(integer).getBall().getColour());
-            player.fillPlayerBalls();
+            player.increasePlayerBalls(board.getColour(integer));
         }
     }
 
@@ -0,0 +1,349 @@
+package ss.gamedesign;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the legal moves of positions, shared by all games.
+ * It maps a position to its mask of legal single moves and, once it was
+ * asked for, whether the position has a valid double move.
+ * <p>
+ * The table is set-associative: the Zobrist hash of a position selects a
+ * bucket of {@link #WAYS} slots and the position is stored in one of them.
+ * The full packed cells are stored as the key, so a hash collision is never
+ * mistaken for a hit. A full bucket evicts with the clock algorithm: a hit
+ * marks its slot as referenced, and the hand of the bucket skips, and
+ * unmarks, referenced slots until it finds one that was not used since it
+ * last passed. The buckets are guarded by a fixed number of striped locks,
+ * so games on different positions rarely wait for each other.
+ * <p>
+ * A symmetric cache stores every position in its canonical form under the
+ * rotations and reflections of the board and the permutations of the
+ * colours (see {@link Symmetry}), none of which change which moves are
+ * legal, so all images of a position share one slot. The single moves are
+ * stored for the canonical form and mapped back on every lookup. This
+ * trades the cost of canonicalizing every lookup for a higher hit rate.
+ */
+public class MoveCache {
+
+    /**
+     * The number of slots in a bucket.
+     */
+    public static final int WAYS = 4;
+
+    /**
+     * The number of locks guarding the buckets.
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * Set in the value of every used slot, so an empty slot has the value 0.
+     */
+    private static final int PRESENT = 1 << 30;
+
+    /**
+     * Set if the double move flag of the slot is known.
+     */
+    private static final int DOUBLE_KNOWN = 1 << 28;
+
+    /**
+     * Set if the position has a valid double move.
+     */
+    private static final int HAS_DOUBLE = 1 << 29;
+
+    /**
+     * The canonical form and scratch cells of the symmetric lookups of every thread.
+     */
+    private static final ThreadLocal<long[][]> CANONICAL = ThreadLocal.withInitial(
+            () -> new long[][] {BitBoard.newCells(), BitBoard.newCells()});
+
+    /**
+     * The packed cells of the position in every slot, {@link BitBoard#WORDS} longs per slot.
+     */
+    private final long[] keys;
+
+    /**
+     * The single moves and flags of every slot, 0 for an empty slot.
+     */
+    private final int[] values;
+
+    /**
+     * The reference bit of every slot, set by a hit and cleared by the clock hand.
+     */
+    private final boolean[] referenced;
+
+    /**
+     * The clock hand of every bucket, the slot looked at first when evicting.
+     */
+    private final byte[] hands;
+
+    /**
+     * The mask selecting a bucket from a hash.
+     */
+    private final int bucketMask;
+
+    /**
+     * True if positions are stored in their canonical form.
+     */
+    private final boolean symmetric;
+
+    /**
+     * The locks guarding the buckets, bucket b is guarded by locks[b % STRIPES].
+     */
+    private final Object[] locks = new Object[STRIPES];
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Creates an empty cache.
+     * @requires capacity > 0
+     * @param capacity the minimum number of positions kept, rounded up to a power of two buckets
+     */
+    public MoveCache(int capacity) {
+        this(capacity, false);
+    }
+
+    /**
+     * Creates an empty cache that optionally stores positions in their canonical form.
+     * @requires capacity > 0
+     * @param capacity the minimum number of positions kept, rounded up to a power of two buckets
+     * @param symmetric true to share the slots of symmetric positions
+     */
+    public MoveCache(int capacity, boolean symmetric) {
+        this.symmetric = symmetric;
+        int needed = (capacity + WAYS - 1) / WAYS;
+        int buckets = needed <= 1 ? 1 : Integer.highestOneBit((needed - 1) << 1);
+        bucketMask = buckets - 1;
+        keys = new long[buckets * WAYS * BitBoard.WORDS];
+        values = new int[buckets * WAYS];
+        referenced = new boolean[buckets * WAYS];
+        hands = new byte[buckets];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the legal single moves of the position on a board.
+     * @requires board != null
+     * @param board the board, not changed
+     * @return a mask with bit i set if command i is a valid single move
+     */
+    public int singleMoves(Board board) {
+        if (!symmetric) {
+            return singleMoves(board.getCells(), board.getHash());
+        }
+        long[][] canonical = CANONICAL.get();
+        long[] key = canonical[0];
+        int transform = Symmetry.canonicalize(board.getCells(), key, canonical[1], true);
+        return Symmetry.mapCommands(Symmetry.inverse(transform), singleMoves(key, Zobrist.hash(key)));
+    }
+
+    /**
+     * Checks if the position on a board has a valid double move.
+     * @requires board != null
+     * @param board the board, not changed
+     * @return true if a pair of commands gathers at least two balls of the same colour
+     */
+    public boolean hasDoubleMove(Board board) {
+        if (!symmetric) {
+            return hasDoubleMove(board.getCells(), board.getHash());
+        }
+        long[][] canonical = CANONICAL.get();
+        long[] key = canonical[0];
+        Symmetry.canonicalize(board.getCells(), key, canonical[1], true);
+        return hasDoubleMove(key, Zobrist.hash(key));
+    }
+
+    /**
+     * Returns the legal single moves of a position, looking it up first.
+     * @param cells the packed cells of the position, the key it is stored under
+     * @param hash the Zobrist hash of cells
+     * @return a mask with bit i set if command i is a valid single move
+     */
+    private int singleMoves(long[] cells, long hash) {
+        int value = lookup(cells, hash);
+        if (value != 0) {
+            hits.incrementAndGet();
+            return value & MoveGenerator.ALL_COMMANDS;
+        }
+        misses.incrementAndGet();
+        int singles = MoveGenerator.legalSingleMoves(cells);
+        store(cells, hash, PRESENT | singles);
+        return singles;
+    }
+
+    /**
+     * Checks if a position has a valid double move, looking it up first.
+     * @param cells the packed cells of the position, the key it is stored under
+     * @param hash the Zobrist hash of cells
+     * @return true if a pair of commands gathers at least two balls of the same colour
+     */
+    private boolean hasDoubleMove(long[] cells, long hash) {
+        int value = lookup(cells, hash);
+        if ((value & DOUBLE_KNOWN) != 0) {
+            hits.incrementAndGet();
+            return (value & HAS_DOUBLE) != 0;
+        }
+        misses.incrementAndGet();
+        int singles = value != 0 ? value & MoveGenerator.ALL_COMMANDS : MoveGenerator.legalSingleMoves(cells);
+        boolean doubles = MoveGenerator.hasDoubleMove(cells);
+        store(cells, hash, PRESENT | DOUBLE_KNOWN | (doubles ? HAS_DOUBLE : 0) | singles);
+        return doubles;
+    }
+
+    /**
+     * Looks up the value stored for a position.
+     * @param cells the packed cells of the position
+     * @param hash the Zobrist hash of cells
+     * @return the value of the slot holding the position, 0 if it is not cached
+     */
+    private int lookup(long[] cells, long hash) {
+        int bucket = bucket(hash);
+        synchronized (locks[bucket & STRIPES - 1]) {
+            int slot = find(bucket, cells);
+            if (slot == -1) {
+                return 0;
+            }
+            referenced[slot] = true;
+            return values[slot];
+        }
+    }
+
+    /**
+     * Stores the value of a position, adding it to the flags
+     * already known or taking the slot chosen by the clock hand.
+     * @param cells the packed cells of the position
+     * @param hash the Zobrist hash of cells
+     * @param value the single moves and flags of the position
+     */
+    private void store(long[] cells, long hash, int value) {
+        int bucket = bucket(hash);
+        synchronized (locks[bucket & STRIPES - 1]) {
+            int slot = find(bucket, cells);
+            if (slot != -1) {
+                values[slot] |= value;
+                return;
+            }
+            slot = victim(bucket);
+            if (values[slot] == 0) {
+                size.incrementAndGet();
+            } else {
+                evictions.incrementAndGet();
+            }
+            System.arraycopy(cells, 0, keys, slot * BitBoard.WORDS, BitBoard.WORDS);
+            values[slot] = value;
+            referenced[slot] = false;
+        }
+    }
+
+    /**
+     * Finds the slot of a bucket that holds a position.
+     * @param bucket the bucket of the position
+     * @param cells the packed cells of the position
+     * @return the slot, or -1 if the position is not in the bucket
+     */
+    private int find(int bucket, long[] cells) {
+        for (int slot = bucket * WAYS; slot < (bucket + 1) * WAYS; slot++) {
+            int key = slot * BitBoard.WORDS;
+            if (values[slot] != 0 && keys[key] == cells[0] && keys[key + 1] == cells[1]
+                    && keys[key + 2] == cells[2]) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Chooses the slot of a bucket a new position is stored in: an empty slot
+     * if there is one, otherwise the first slot the clock hand finds unreferenced.
+     * @param bucket a bucket
+     * @return the slot to overwrite
+     */
+    private int victim(int bucket) {
+        int first = bucket * WAYS;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (values[slot] == 0) {
+                return slot;
+            }
+        }
+        int hand = hands[bucket];
+        while (referenced[first + hand]) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) % WAYS;
+        }
+        hands[bucket] = (byte) ((hand + 1) % WAYS);
+        return first + hand;
+    }
+
+    /**
+     * Selects the bucket of a hash.
+     * @param hash the Zobrist hash of a position
+     * @return the index of the bucket
+     */
+    private int bucket(long hash) {
+        return (int) (hash ^ hash >>> 32) & bucketMask;
+    }
+
+    /**
+     * Removes all positions and resets the metrics.
+     */
+    public void clear() {
+        for (int bucket = 0; bucket <= bucketMask; bucket++) {
+            synchronized (locks[bucket & STRIPES - 1]) {
+                Arrays.fill(values, bucket * WAYS, (bucket + 1) * WAYS, 0);
+            }
+        }
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        size.set(0);
+    }
+
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the share of the lookups that were answered from the cache.
+     * @return the hit rate between 0 and 1, 0 if nothing was looked up
+     */
+    public double getHitRate() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * Describes the state of the cache.
+     * @return a one line summary of the metrics
+     */
+    @Override
+    public String toString() {
+        return String.format("move cache %d/%d, hits %d, misses %d, evictions %d, hit rate %.1f%%",
+                getSize(), getCapacity(), getHits(), getMisses(), getEvictions(), 100 * getHitRate());
+    }
+}
@@ -0,0 +1,246 @@
+package ss.gamedesign;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Finds the legal moves of a position without changing the board.
+ * Every slide is applied to a scratch copy of the packed cells (see {@link BitBoard})
+ * and the copy is checked for neighbouring balls of the same colour.
+ */
+public final class MoveGenerator {
+
+    /**
+     * The number of single move commands.
+     */
+    public static final int COMMANDS = 28;
+
+    /**
+     * The mask with all commands.
+     */
+    public static final int ALL_COMMANDS = (1 << COMMANDS) - 1;
+
+    /**
+     * For every field, the commands whose validity can change when the field changes:
+     * the moves of its own row and column and of the lines next to them.
+     */
+    private static final int[] DEPENDENT_COMMANDS = new int[BitBoard.SIZE];
+
+    static {
+        int dim = BitBoard.DIM;
+        for (int index = 0; index < BitBoard.SIZE; index++) {
+            int row = index / dim;
+            int col = index % dim;
+            int commands = 0;
+            for (int line = Math.max(0, row - 1); line <= Math.min(dim - 1, row + 1); line++) {
+                commands |= 1 << line | 1 << dim + line;
+            }
+            for (int line = Math.max(0, col - 1); line <= Math.min(dim - 1, col + 1); line++) {
+                commands |= 1 << 2 * dim + line | 1 << 3 * dim + line;
+            }
+            DEPENDENT_COMMANDS[index] = commands;
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Finds all single moves that gather at least two balls of the same colour.
+     * @requires cells.length == BitBoard.WORDS
+     * @param cells the packed cells of the board, not changed
+     * @return a mask with bit i set if command i is a valid single move
+     */
+    public static int legalSingleMoves(long[] cells) {
+        return legalSingleMoves(cells, BitBoard.newCells());
+    }
+
+    /**
+     * Finds all single moves that gather at least two balls of the same colour,
+     * using the given array for the slides so that nothing is allocated.
+     * @requires cells.length == BitBoard.WORDS && scratch.length == BitBoard.WORDS
+     * @param cells the packed cells of the board, not changed
+     * @param scratch an array the slides are applied to
+     * @return a mask with bit i set if command i is a valid single move
+     */
+    public static int legalSingleMoves(long[] cells, long[] scratch) {
+        return legalSingleMoves(cells, scratch, ALL_COMMANDS);
+    }
+
+    /**
+     * Checks which of the given commands are valid single moves.
+     * @requires cells.length == BitBoard.WORDS && scratch.length == BitBoard.WORDS
+     * @param cells the packed cells of the board, not changed
+     * @param scratch an array the slides are applied to
+     * @param commands a mask of the commands to check
+     * @return the commands of the mask that are valid single moves
+     */
+    public static int legalSingleMoves(long[] cells, long[] scratch, int commands) {
+        boolean pairsOnBoard = BitBoard.hasPairs(cells);
+        int legal = 0;
+        for (int command = 0; command < COMMANDS; command++) {
+            if ((commands >>> command & 1) == 0) {
+                continue;
+            }
+            System.arraycopy(cells, 0, scratch, 0, BitBoard.WORDS);
+            boolean valid = BitBoard.slide(scratch, command) ? BitBoard.hasPairs(scratch) : pairsOnBoard;
+            if (valid) {
+                legal |= 1 << command;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Finds the commands whose validity may differ between two boards.
+     * A slide only changes its own line, so on boards without equal neighbours
+     * its validity depends on that line and the two lines next to it.
+     * @requires before.length == BitBoard.WORDS && after.length == BitBoard.WORDS
+     * @param before the packed cells the moves were generated for
+     * @param after the packed cells of the board now
+     * @return a mask of the commands whose row or column, or a line next to it, changed
+     */
+    public static int affectedCommands(long[] before, long[] after) {
+        int affected = 0;
+        for (int word = 0; word < BitBoard.WORDS; word++) {
+            long diff = before[word] ^ after[word];
+            while (diff != 0) {
+                int field = Long.numberOfTrailingZeros(diff) / BitBoard.BITS;
+                affected |= DEPENDENT_COMMANDS[word * BitBoard.FIELDS_PER_WORD + field];
+                diff &= ~(BitBoard.CODE_MASK << field * BitBoard.BITS);
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Checks if there is a pair of commands that gathers at least two balls of the same colour.
+     * The result of every first slide is computed once and reused for all 28 second slides,
+     * and first slides that do not move anything are answered by the single moves.
+     * @requires cells.length == BitBoard.WORDS
+     * @param cells the packed cells of the board, not changed
+     * @return true if a valid double move exists
+     */
+    public static boolean hasDoubleMove(long[] cells) {
+        return hasDoubleMove(cells, 0, COMMANDS, null, BitBoard.newCells(), BitBoard.newCells());
+    }
+
+    /**
+     * Checks if there is a valid double move, using the caller's scratch cells
+     * so that repeated checks do not allocate.
+     * @requires cells.length == BitBoard.WORDS and both scratch arrays have BitBoard.WORDS longs
+     * @param cells the packed cells of the board, not changed
+     * @param afterFirst scratch cells for the board after the first slide
+     * @param afterSecond scratch cells for the board after the second slide
+     * @return true if a valid double move exists
+     */
+    public static boolean hasDoubleMove(long[] cells, long[] afterFirst, long[] afterSecond) {
+        return hasDoubleMove(cells, 0, COMMANDS, null, afterFirst, afterSecond);
+    }
+
+    /**
+     * Checks if there is a valid double move, splitting the first slides over a pool.
+     * @requires cells.length == BitBoard.WORDS && pool != null
+     * @param cells the packed cells of the board, not changed
+     * @param pool the pool that searches the first slides in parallel
+     * @return true if a valid double move exists
+     */
+    public static boolean hasDoubleMove(long[] cells, ForkJoinPool pool) {
+        return pool.invoke(new DoubleMoveSearch(cells.clone(), 0, COMMANDS, new AtomicBoolean()));
+    }
+
+    /**
+     * Looks for a valid double move among the first slides from first up to last.
+     * @param cells the packed cells of the board, not changed
+     * @param first the first command tried as first slide
+     * @param last the first command after the searched range
+     * @param found set by another search when it found a move, or null
+     * @param afterFirst scratch cells for the board after the first slide
+     * @param afterSecond scratch cells for the board after the second slide
+     * @return true if a valid double move was found
+     */
+    private static boolean hasDoubleMove(long[] cells, int first, int last, AtomicBoolean found,
+                                         long[] afterFirst, long[] afterSecond) {
+        int singleMoves = -1;
+        for (int i = first; i < last; i++) {
+            if (found != null && found.get()) {
+                return false;
+            }
+            System.arraycopy(cells, 0, afterFirst, 0, BitBoard.WORDS);
+            if (!BitBoard.slide(afterFirst, i)) {
+                // Nothing moved, so every double move starting with i is a single move
+                if (singleMoves == -1) {
+                    singleMoves = legalSingleMoves(cells, afterSecond);
+                }
+                if (singleMoves != 0) {
+                    return true;
+                }
+                continue;
+            }
+            if (legalSingleMoves(afterFirst, afterSecond) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches a range of first slides, splitting it in halves over the pool.
+     */
+    private static final class DoubleMoveSearch extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] cells;
+        private final int first;
+        private final int last;
+        private final AtomicBoolean found;
+
+        private DoubleMoveSearch(long[] cells, int first, int last, AtomicBoolean found) {
+            this.cells = cells;
+            this.first = first;
+            this.last = last;
+            this.found = found;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (last - first <= 2) {
+                boolean result = hasDoubleMove(cells, first, last, found, BitBoard.newCells(), BitBoard.newCells());
+                if (result) {
+                    found.set(true);
+                }
+                return result;
+            }
+            int middle = (first + last) >>> 1;
+            DoubleMoveSearch upper = new DoubleMoveSearch(cells, middle, last, found);
+            upper.fork();
+            boolean lower = new DoubleMoveSearch(cells, first, middle, found).compute();
+            return upper.join() || lower;
+        }
+    }
+
+    /**
+     * Finds the second slides that make a valid double move after a given first slide.
+     * @requires cells.length == BitBoard.WORDS && first >= 0 && first < 28
+     * @param cells the packed cells of the board, not changed
+     * @param first the command of the first slide
+     * @return a mask with bit i set if the double move first, i is valid
+     */
+    public static int legalSecondMoves(long[] cells, int first) {
+        long[] afterFirst = cells.clone();
+        BitBoard.slide(afterFirst, first);
+        return legalSingleMoves(afterFirst, BitBoard.newCells());
+    }
+
+    /**
+     * Checks if a command is in a mask of moves.
+     * @param moves a mask of commands
+     * @param command the command to look up
+     * @return true if command is between 0 and 27 and its bit is set
+     */
+    public static boolean contains(int moves, int command) {
+        return command >= 0 && command < COMMANDS && (moves >>> command & 1) != 0;
+    }
+}
@@ -6,6 +6,7 @@ import ss.server.CollectoClientHandler;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Class for maintaining the Collecto game.
@@ -74,14 +75,43 @@ public class NetworkGame {
      */
     private HashMap<String, CollectoClientHandler> playerHandlers;
 
+    /**
+     * Serializes everything that happens in this game: joining, getting ready,
+     * the moves and quitting. A lock rather than synchronized, which pins a
+     * virtual thread to its carrier while it holds the monitor.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
     /**
      * Construct a NetworkGame.
      * @param gameName name of the game
      * @param capacity the capacity of the game
      */
     public NetworkGame(String gameName, int capacity) {
-        board = new Board();
+        this(gameName, capacity, null);
+    }
+
+    /**
+     * Construct a NetworkGame whose board is taken from a pool of starting layouts.
+     * @param gameName name of the game
+     * @param capacity the capacity of the game
+     * @param pool the pool the board is taken from, or null to generate a new board
+     */
+    public NetworkGame(String gameName, int capacity, BoardPool pool) {
+        this(gameName, capacity, pool, null);
+    }
+
+    /**
+     * Construct a NetworkGame that looks up the legal moves in a cache shared by the games of a server.
+     * @param gameName name of the game
+     * @param capacity the capacity of the game
+     * @param pool the pool the board is taken from, or null to generate a new board
+     * @param cache the cache of legal moves, or null to generate the moves of every position
+     */
+    public NetworkGame(String gameName, int capacity, BoardPool pool, MoveCache cache) {
+        board = pool == null ? new Board() : pool.takeBoard();
         move = new Move(board);
+        move.setCache(cache);
         players = new Player[capacity];
         numberOfPlayers = 2;
         //numberOfPlayers = 1;
@@ -98,32 +128,39 @@ public class NetworkGame {
      * @param handler handler for the player
      * @throws JoinGameException thrown when the game is full
      */
-    public synchronized void join(String playerName, CollectoClientHandler handler)  throws JoinGameException {
-
-        if (joinedPlayers == numberOfPlayers) {
-            throw new JoinGameException("The game is full. Please join another game.");
-        }
-
-        for (int i = 0; i < players.length; i++) {
-            if (players[i] == null) {
-                players[i] = new HumanPlayer(playerName);
-                playerHandlers.put(playerName, handler);
-                handler.joinActiveGame(this);
-                joinedPlayers++;
-                // Exit if the player was joined
-                break;
+    public void join(String playerName, CollectoClientHandler handler)  throws JoinGameException {
+        lock.lock();
+        try {
+            if (joinedPlayers == numberOfPlayers) {
+                throw new JoinGameException("The game is full. Please join another game.");
             }
-        }
 
-        if (joinedPlayers == numberOfPlayers) {
-            if (numberOfPlayers == 2) {
-                board.initialiseBoard();
+            for (int i = 0; i < players.length; i++) {
+                if (players[i] == null) {
+                    players[i] = new HumanPlayer(playerName);
+                    playerHandlers.put(playerName, handler);
+                    handler.joinActiveGame(this);
+                    joinedPlayers++;
+                    // Exit if the player was joined
+                    break;
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     // -- Commands --------------------------------------------------------------
 
+    /**
+     * Returns the lock of this game. The server holds it while it handles a
+     * command of the game, so the games do not wait for each other.
+     * @return the lock of this game
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
     public int getNumberOfPlayers() {
         return numberOfPlayers;
     }
@@ -182,9 +219,14 @@ public class NetworkGame {
      * Called when a player signifies they are ready to start the game. Increments the number of ready players.
      * @param username the username of the player
      */
-    public synchronized void ready(String username) {
-        if (readyPlayers < numberOfPlayers) {
-            readyPlayers++;
+    public void ready(String username) {
+        lock.lock();
+        try {
+            if (readyPlayers < numberOfPlayers) {
+                readyPlayers++;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -0,0 +1,182 @@
+package ss.gamedesign;
+
+/**
+ * The rules of Collecto on packed cells, for the searches that play many
+ * moves: generating the moves of a position, playing a move and scoring.
+ * <p>
+ * A move is encoded in an int: a single move is its command, a double move
+ * has the {@link #DOUBLE} bit set and holds first << 5 | second.
+ * The balls of both players are kept in one array, the balls of colour
+ * code c of player p at p * CODES + c.
+ */
+public final class PackedGame {
+
+    /**
+     * The number of colour codes, the counters of a player are indexed by code.
+     */
+    public static final int CODES = 7;
+
+    /**
+     * Set in the encoding of a double move.
+     */
+    public static final int DOUBLE = 1 << 10;
+
+    /**
+     * The largest number of moves of a position: every pair of commands.
+     */
+    public static final int MAX_MOVES = MoveGenerator.COMMANDS * MoveGenerator.COMMANDS;
+
+    /**
+     * The score of one point; a ball scores 1, and there are fewer than 100 balls.
+     */
+    public static final int POINT = 100;
+
+    private PackedGame() {
+    }
+
+    /**
+     * Generates the moves of a position: the single moves if there are any,
+     * the double moves otherwise.
+     * @requires cells, scratch and afterFirst have BitBoard.WORDS longs and list.length >= MAX_MOVES
+     * @param cells the packed cells of the position, not changed
+     * @param list the array the encoded moves are stored in
+     * @param scratch scratch cells
+     * @param afterFirst scratch cells
+     * @return the number of moves stored in list, 0 if the game is over
+     */
+    public static int generate(long[] cells, int[] list, long[] scratch, long[] afterFirst) {
+        int count = 0;
+        int singles = MoveGenerator.legalSingleMoves(cells, scratch);
+        if (singles != 0) {
+            for (int left = singles; left != 0; left &= left - 1) {
+                list[count++] = Integer.numberOfTrailingZeros(left);
+            }
+            return count;
+        }
+        for (int first = 0; first < MoveGenerator.COMMANDS; first++) {
+            System.arraycopy(cells, 0, afterFirst, 0, BitBoard.WORDS);
+            if (!BitBoard.slide(afterFirst, first)) {
+                // Without single moves, a first slide that moves nothing cannot start a double move
+                continue;
+            }
+            int seconds = MoveGenerator.legalSingleMoves(afterFirst, scratch);
+            for (int left = seconds; left != 0; left &= left - 1) {
+                list[count++] = DOUBLE | first << 5 | Integer.numberOfTrailingZeros(left);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Plays a move and gives the gathered balls to the player who made it.
+     * @requires move is a valid move of the position
+     * @param cells the packed cells of the position, changed in place
+     * @param move the encoded move
+     * @param balls the balls of both players
+     * @param player the player making the move, 0 or 1
+     * @return the number of gathered balls
+     */
+    public static int play(long[] cells, int move, int[] balls, int player) {
+        if (isDouble(move)) {
+            BitBoard.slide(cells, first(move));
+            BitBoard.slide(cells, second(move));
+        } else {
+            BitBoard.slide(cells, move);
+        }
+        return BitBoard.removePairs(cells, balls, player * CODES);
+    }
+
+    /**
+     * Checks if a position has no single and no double moves left.
+     * @param cells the packed cells of the position
+     * @param scratch scratch cells
+     * @param afterFirst scratch cells
+     * @param afterSecond scratch cells
+     * @return true if the game is over
+     */
+    public static boolean isOver(long[] cells, long[] scratch, long[] afterFirst, long[] afterSecond) {
+        return MoveGenerator.legalSingleMoves(cells, scratch) == 0
+                && !MoveGenerator.hasDoubleMove(cells, afterFirst, afterSecond);
+    }
+
+    /**
+     * Compares the scores of the players like {@link Player#setPoints()}:
+     * a point for every three balls of a colour, the number of balls breaking ties.
+     * @param balls the balls of both players
+     * @param player the player whose view is taken, 0 or 1
+     * @return POINT for every point and 1 for every ball the player has more than the other
+     */
+    public static int scoreDifference(int[] balls, int player) {
+        int own = player * CODES;
+        int other = CODES - own;
+        int difference = 0;
+        for (int code = 1; code < CODES; code++) {
+            difference += POINT * (balls[own + code] / 3 - balls[other + code] / 3)
+                    + balls[own + code] - balls[other + code];
+        }
+        return difference;
+    }
+
+    /**
+     * Encodes a double move.
+     * @requires first and second are commands between 0 and 27
+     * @param first the first command
+     * @param second the second command
+     * @return the encoded move
+     */
+    public static int doubleMove(int first, int second) {
+        return DOUBLE | first << 5 | second;
+    }
+
+    public static boolean isDouble(int move) {
+        return (move & DOUBLE) != 0;
+    }
+
+    /**
+     * Returns the command of a single move or the first command of a double move.
+     * @param move the encoded move
+     * @return the first command
+     */
+    public static int first(int move) {
+        return isDouble(move) ? move >>> 5 & 31 : move;
+    }
+
+    /**
+     * Returns the second command of a double move.
+     * @param move the encoded move
+     * @return the second command, -1 for a single move
+     */
+    public static int second(int move) {
+        return isDouble(move) ? move & 31 : -1;
+    }
+
+    /**
+     * Maps a move to the move that does the same on a transformed board.
+     * @requires transform >= 0 && transform < Symmetry.TRANSFORMS
+     * @param move the encoded move
+     * @param transform the transform of the board
+     * @return the encoded image of the move
+     */
+    public static int mapMove(int move, int transform) {
+        if (!isDouble(move)) {
+            return Symmetry.mapCommand(transform, move);
+        }
+        return doubleMove(Symmetry.mapCommand(transform, first(move)),
+                Symmetry.mapCommand(transform, second(move)));
+    }
+
+    /**
+     * Returns the balls a player collected indexed by colour code.
+     * @param player the player, or null for a player without balls
+     * @return an array of CODES counters, the first one for the empty code
+     */
+    public static int[] ballCounts(Player player) {
+        int[] counts = new int[CODES];
+        if (player != null) {
+            for (Colour colour : Colour.values()) {
+                counts[BitBoard.encode(colour)] = player.getBallCount(colour);
+            }
+        }
+        return counts;
+    }
+}
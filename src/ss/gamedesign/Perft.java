@@ -0,0 +1,372 @@
+package ss.gamedesign;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the legal move sequences of a given length from a position, like
+ * perft in chess engines. A move is a single move while the position has
+ * one and a double move otherwise, as {@link NetworkGame#move} and
+ * {@link PackedGame#generate} allow; a sequence ending in a finished game
+ * before the given length is not counted.
+ * <p>
+ * The counts serve two purposes: a throughput number of the move
+ * generation, and an oracle for any other implementation of the rules.
+ * {@link #countWithMove} counts on a {@link Board} with {@link Move}, the
+ * object model the server plays on, and must give the same numbers as the
+ * packed rules.
+ * <p>
+ * The top of the tree is split into subtrees that run on a fork/join pool;
+ * the last SEQUENTIAL_DEPTH moves of every sequence are counted by one
+ * thread. Optionally, the counts of subtrees are kept in a table shared by
+ * all threads, so a position reached by different sequences is counted
+ * once. The table stores the full position and the depth, so a lookup
+ * never takes the count of a different subtree.
+ */
+public class Perft {
+
+    /**
+     * The depth below which a subtree is counted by a single thread.
+     */
+    private static final int SEQUENTIAL_DEPTH = 3;
+
+    /**
+     * The number of longs of a table entry: the three words of the cells, the depth and the count.
+     */
+    private static final int ENTRY_LONGS = BitBoard.WORDS + 2;
+
+    /**
+     * The number of locks guarding the table.
+     */
+    private static final int STRIPES = 64;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * The table of subtree counts, null without a table.
+     */
+    private final long[] table;
+    private final int tableMask;
+    private final Object[] locks = new Object[STRIPES];
+
+    private final AtomicLong tableHits = new AtomicLong();
+
+    /**
+     * The buffers of the sequential counts of every thread of the pool.
+     */
+    private final ThreadLocal<Counter> counters = ThreadLocal.withInitial(Counter::new);
+
+    /**
+     * Creates a counter on every available processor, without a table.
+     */
+    public Perft() {
+        this(Runtime.getRuntime().availableProcessors(), 0);
+    }
+
+    /**
+     * Creates a counter.
+     * @requires threads > 0 && tableEntries >= 0
+     * @param threads the number of threads counting subtrees
+     * @param tableEntries the number of subtree counts kept, rounded up to a power
+     *                     of two, or 0 to count every subtree
+     */
+    public Perft(int threads, int tableEntries) {
+        pool = new ForkJoinPool(threads);
+        if (tableEntries > 0) {
+            int size = tableEntries <= 1 ? 1 : Integer.highestOneBit(tableEntries - 1) << 1;
+            table = new long[size * ENTRY_LONGS];
+            tableMask = size - 1;
+        } else {
+            table = null;
+            tableMask = 0;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Counts the move sequences of a length.
+     * @requires cells.length == BitBoard.WORDS && depth >= 0
+     * @param cells the packed cells of the position, not changed
+     * @param depth the number of moves of the sequences
+     * @return the number of different legal sequences of depth moves
+     */
+    public long count(long[] cells, int depth) {
+        return pool.invoke(new Subtree(cells.clone(), depth));
+    }
+
+    /**
+     * Counts the move sequences of a length for every first move, to find
+     * where two implementations start to disagree.
+     * @requires cells.length == BitBoard.WORDS && depth >= 1
+     * @param cells the packed cells of the position, not changed
+     * @param depth the number of moves of the sequences
+     * @return for every move of the position, in the order of
+     *         PackedGame.generate, the encoded move shifted left by 48
+     *         plus the number of sequences starting with it
+     */
+    public long[] divide(long[] cells, int depth) {
+        int[] moves = new int[PackedGame.MAX_MOVES];
+        int count = PackedGame.generate(cells, moves, BitBoard.newCells(), BitBoard.newCells());
+        int[] balls = new int[2 * PackedGame.CODES];
+        long[] counts = new long[count];
+        for (int i = 0; i < count; i++) {
+            long[] next = cells.clone();
+            PackedGame.play(next, moves[i], balls, 0);
+            counts[i] = (long) moves[i] << 48 | count(next, depth - 1);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the move sequences of a length on the object model: a Board
+     * changed by the single and double moves of a Move. Single moves are
+     * those Move offers; double moves are found by trying every pair of
+     * commands with {@link Move#doubleMove}, which undoes invalid ones.
+     * The board is restored before returning.
+     * @requires board != null && depth >= 0
+     * @param board the board, not changed
+     * @param depth the number of moves of the sequences
+     * @return the number of different legal sequences of depth moves
+     */
+    public static long countWithMove(Board board, int depth) {
+        // saved[d] holds the position while the sequences of d moves from it are counted
+        Board[] saved = new Board[depth + 1];
+        for (int ply = 0; ply <= depth; ply++) {
+            saved[ply] = board.deepCopy();
+        }
+        Move move = new Move(board);
+        return countWithMove(move, board, new HumanPlayer("perft"), saved, depth);
+    }
+
+    private static long countWithMove(Move move, Board board, Player player, Board[] saved, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        Board before = saved[depth];
+        before.copyFieldsFrom(board);
+        move.fillSingleMovesMap();
+        long count = 0;
+        int singles = move.getSingleMovesMask();
+        if (singles != 0) {
+            for (int left = singles; left != 0; left &= left - 1) {
+                move.singleMove(player, Integer.numberOfTrailingZeros(left));
+                count += countWithMove(move, board, player, saved, depth - 1);
+                board.copyFieldsFrom(before);
+                move.fillSingleMovesMap();
+            }
+            return count;
+        }
+        long hash = board.getHash();
+        for (int first = 0; first < MoveGenerator.COMMANDS; first++) {
+            for (int second = 0; second < MoveGenerator.COMMANDS; second++) {
+                move.doubleMove(player, first, second);
+                if (board.getHash() != hash) {
+                    // A valid double move always removes balls, an invalid one is undone
+                    count += countWithMove(move, board, player, saved, depth - 1);
+                    board.copyFieldsFrom(before);
+                    move.fillSingleMovesMap();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts a subtree, splitting it into tasks for its moves while it is
+     * deeper than SEQUENTIAL_DEPTH.
+     */
+    private final class Subtree extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] cells;
+        private final int depth;
+
+        private Subtree(long[] cells, int depth) {
+            this.cells = cells;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth <= SEQUENTIAL_DEPTH) {
+                return counters.get().count(cells, depth);
+            }
+            long stored = lookup(cells, depth);
+            if (stored >= 0) {
+                return stored;
+            }
+            int[] moves = new int[PackedGame.MAX_MOVES];
+            int count = PackedGame.generate(cells, moves, BitBoard.newCells(), BitBoard.newCells());
+            int[] balls = new int[2 * PackedGame.CODES];
+            List<Subtree> children = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long[] next = cells.clone();
+                PackedGame.play(next, moves[i], balls, 0);
+                children.add(new Subtree(next, depth - 1));
+            }
+            long total = 0;
+            for (Subtree child : invokeAll(children)) {
+                total += child.join();
+            }
+            store(cells, depth, total);
+            return total;
+        }
+    }
+
+    /**
+     * Counts subtrees of at most SEQUENTIAL_DEPTH on one thread, on buffers allocated once per ply.
+     */
+    private final class Counter {
+
+        private final long[][] cells = new long[SEQUENTIAL_DEPTH + 1][BitBoard.WORDS];
+        private final int[][] moves = new int[SEQUENTIAL_DEPTH + 1][PackedGame.MAX_MOVES];
+        private final int[] balls = new int[2 * PackedGame.CODES];
+        private final long[] scratch = BitBoard.newCells();
+        private final long[] afterFirst = BitBoard.newCells();
+
+        private long count(long[] position, int depth) {
+            System.arraycopy(position, 0, cells[depth], 0, BitBoard.WORDS);
+            return count(depth);
+        }
+
+        /**
+         * Counts the sequences from the position in cells[depth].
+         */
+        private long count(int depth) {
+            if (depth == 0) {
+                return 1;
+            }
+            long[] position = cells[depth];
+            int count = PackedGame.generate(position, moves[depth], scratch, afterFirst);
+            if (depth == 1) {
+                return count;
+            }
+            long stored = lookup(position, depth);
+            if (stored >= 0) {
+                return stored;
+            }
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                System.arraycopy(position, 0, cells[depth - 1], 0, BitBoard.WORDS);
+                PackedGame.play(cells[depth - 1], moves[depth][i], balls, 0);
+                total += count(depth - 1);
+            }
+            store(position, depth, total);
+            return total;
+        }
+    }
+
+    /**
+     * Looks up the count of a subtree.
+     * @return the count, -1 if there is no table or the subtree is not in it
+     */
+    private long lookup(long[] cells, int depth) {
+        if (table == null) {
+            return -1;
+        }
+        int slot = slot(cells, depth);
+        int base = slot * ENTRY_LONGS;
+        synchronized (locks[slot & STRIPES - 1]) {
+            if (table[base + BitBoard.WORDS] == depth && table[base] == cells[0]
+                    && table[base + 1] == cells[1] && table[base + 2] == cells[2]) {
+                tableHits.incrementAndGet();
+                return table[base + BitBoard.WORDS + 1];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the count of a subtree, replacing the entry in its slot.
+     */
+    private void store(long[] cells, int depth, long count) {
+        if (table == null) {
+            return;
+        }
+        int slot = slot(cells, depth);
+        int base = slot * ENTRY_LONGS;
+        synchronized (locks[slot & STRIPES - 1]) {
+            table[base] = cells[0];
+            table[base + 1] = cells[1];
+            table[base + 2] = cells[2];
+            table[base + BitBoard.WORDS] = depth;
+            table[base + BitBoard.WORDS + 1] = count;
+        }
+    }
+
+    private int slot(long[] cells, int depth) {
+        long hash = Zobrist.hash(cells) + depth * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & tableMask;
+    }
+
+    public long getTableHits() {
+        return tableHits.get();
+    }
+
+    /**
+     * Stops the threads of the counter.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Counts the sequences up to a depth from a random or fixed board and prints
+     * the counts and the speed. Arguments, all optional: -depth n, -seed n,
+     * -threads n, -table entries and -check, which also counts with Move.
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        int depth = 4;
+        long seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int entries = 0;
+        boolean check = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-table":
+                    entries = Integer.parseInt(args[++i]);
+                    break;
+                case "-check":
+                    check = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        Board board = new Board(new SplittableRandom(seed));
+        System.out.println(board);
+        Perft perft = new Perft(threads, entries);
+        for (int d = 1; d <= depth; d++) {
+            long start = System.nanoTime();
+            long count = perft.count(board.getCells(), d);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("depth %d: %d sequences in %.3f s, %.0f per second%n",
+                    d, count, seconds, count / seconds);
+            if (check) {
+                long withMove = countWithMove(board, d);
+                System.out.printf("  Move counts %d%s%n", withMove, withMove == count ? "" : ", MISMATCH");
+            }
+        }
+        if (entries > 0) {
+            System.out.println("table hits: " + perft.getTableHits());
+        }
+        perft.shutdown();
+    }
+}
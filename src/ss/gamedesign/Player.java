@@ -1,6 +1,6 @@
 package ss.gamedesign;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 
 public abstract class Player {
@@ -11,7 +11,8 @@ public abstract class Player {
     private String name;
 
     /**
-     * The players points.
+     * The players points: a point for every three balls of a colour,
+     * kept up to date with every collected ball.
      */
     private int points;
 
@@ -21,18 +22,15 @@ public abstract class Player {
     private int numberOfBalls;
 
     /**
-     * A map containing the types of balls as keys and the
-     * number of balls of every colour the player removed
-     * from the board stored as values to their respective colour.
+     * The number of balls of every colour the player removed from the
+     * board, indexed by the ordinal of the colour.
      */
-    private Map<Colour, Integer> playerBalls;
+    private final int[] ballCounts = new int[Colour.values().length];
 
-    private int blueCount = 0;
-    private int redCount = 0;
-    private int greenCount = 0;
-    private int yellowCount = 0;
-    private int purpleCount = 0;
-    private int orangeCount = 0;
+    /**
+     * A map view of ballCounts, created when it is first asked for.
+     */
+    private Map<Colour, Integer> playerBalls;
 
 
     /**
@@ -44,37 +42,54 @@ public abstract class Player {
         this.name = name;
         points = 0;
         numberOfBalls = 0;
-        playerBalls = new HashMap<>();
-        fillPlayerBalls();
     }
 
+    /**
+     * Adds a ball the player removed from the board, updating the points and the number of balls.
+     * @param colour the colour of the ball, Colour.EMPTY is ignored
+     */
     public void increasePlayerBalls(Colour colour) {
-        switch (colour) {
-            case BLUE:
-                blueCount++;
-                break;
-
-            case RED:
-                redCount++;
-                break;
-
-            case GREEN:
-                greenCount++;
-                break;
+        if (colour == Colour.EMPTY) {
+            return;
+        }
+        numberOfBalls++;
+        if (++ballCounts[colour.ordinal()] % 3 == 0) {
+            points++;
+        }
+    }
 
-            case YELLOW:
-                yellowCount++;
-                break;
+    /**
+     * Returns the number of balls of a colour the player removed from the board.
+     * @requires colour != null
+     * @param colour the colour of the balls
+     * @return the number of balls of that colour, 0 for Colour.EMPTY
+     */
+    public int getBallCount(Colour colour) {
+        return ballCounts[colour.ordinal()];
+    }
 
-            case ORANGE:
-                orangeCount++;
-                break;
+    /**
+     * Chooses the single move the player makes.
+     * @requires move != null and the board of move has a single move
+     * @param move the moves of the board the game is played on
+     * @return the command of the single move
+     */
+    public abstract int determineSingleMove(Move move);
 
-            case PURPLE:
-                purpleCount++;
-                break;
+    /**
+     * Chooses the double move the player makes.
+     * @requires move != null and the board of move has no single move
+     * @param move the moves of the board the game is played on
+     * @return an array with the first and the second command of the double move
+     */
+    public abstract int[] determineDoubleMove(Move move);
 
-        }
+    /**
+     * Tells the player who they play against, before the first move.
+     * Players that look at the balls of the opponent keep it, others ignore it.
+     * @param opponent the other player of the game
+     */
+    public void setOpponent(Player opponent) {
     }
 
     public String getName() {
@@ -89,9 +104,14 @@ public abstract class Player {
         return points;
     }
 
+    /**
+     * Brings the points up to date with the collected balls. The points are
+     * counted with every ball, so this only recounts them.
+     */
     public void setPoints() {
-        for (Colour colour : playerBalls.keySet()) {
-            points = points + playerBalls.get(colour) / 3;
+        points = 0;
+        for (int count : ballCounts) {
+            points += count / 3;
         }
     }
 
@@ -99,26 +119,49 @@ public abstract class Player {
         return numberOfBalls;
     }
 
+    /**
+     * Brings the number of balls up to date with the collected balls. The balls
+     * are counted as they are collected, so this only recounts them.
+     */
     public void setNumberOfBalls() {
-        for (Colour colour : playerBalls.keySet()) {
-            numberOfBalls = numberOfBalls + playerBalls.get(colour);
+        numberOfBalls = 0;
+        for (int count : ballCounts) {
+            numberOfBalls += count;
         }
     }
 
+    /**
+     * Returns a read-only view of the balls of every colour the player
+     * removed from the board, which always shows the current counts.
+     * @return a map from the six ball colours to their counts
+     */
     public Map<Colour, Integer> getPlayerBalls() {
+        if (playerBalls == null) {
+            playerBalls = new ColourCounts(ballCounts);
+        }
         return playerBalls;
     }
 
+    /**
+     * Replaces the balls of the player.
+     * @requires playerBalls != null
+     * @param playerBalls the number of balls of every colour, missing colours count as 0
+     */
     public void setPlayerBalls(Map<Colour, Integer> playerBalls) {
-        this.playerBalls = playerBalls;
+        Arrays.fill(ballCounts, 0);
+        for (Map.Entry<Colour, Integer> entry : playerBalls.entrySet()) {
+            if (entry.getKey() != Colour.EMPTY) {
+                ballCounts[entry.getKey().ordinal()] = entry.getValue();
+            }
+        }
+        setPoints();
+        setNumberOfBalls();
     }
 
+    /**
+     * Kept for the callers that filled the map after collecting balls;
+     * the map returned by getPlayerBalls is a view that is always up to date.
+     */
     public void fillPlayerBalls() {
-        playerBalls.put(Colour.BLUE, blueCount);
-        playerBalls.put(Colour.RED, redCount);
-        playerBalls.put(Colour.GREEN, greenCount);
-        playerBalls.put(Colour.ORANGE, orangeCount);
-        playerBalls.put(Colour.YELLOW, yellowCount);
-        playerBalls.put(Colour.PURPLE, purpleCount);
     }
 }
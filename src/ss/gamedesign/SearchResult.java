@@ -0,0 +1,128 @@
+package ss.gamedesign;
+
+/**
+ * The move chosen by a search together with the statistics of the search.
+ */
+public class SearchResult {
+
+    /**
+     * The first command of the move.
+     */
+    private final int firstCommand;
+
+    /**
+     * The second command of a double move, -1 for a single move.
+     */
+    private final int secondCommand;
+
+    /**
+     * The score of the move for the player to move. For AlphaBetaSearch, 100 for
+     * every point and 1 for every ball more than the opponent, moved by
+     * AlphaBetaSearch.WIN if the game is decided; for MctsSearch, the share of
+     * won playouts in thousandths.
+     */
+    private final int score;
+
+    /**
+     * The deepest search that was completed, or the deepest tree, in moves.
+     */
+    private final int depth;
+
+    /**
+     * The number of positions visited, or of playouts for MctsSearch.
+     */
+    private final long nodes;
+
+    /**
+     * The time the search took, in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * The number of bytes the searching thread allocated, -1 if the JVM cannot tell.
+     */
+    private final long allocatedBytes;
+
+    /**
+     * Creates the result of a search.
+     * @param firstCommand the first command of the chosen move
+     * @param secondCommand the second command of a double move, -1 for a single move
+     * @param score the score of the move for the player to move
+     * @param depth the deepest completed search
+     * @param nodes the number of positions visited
+     * @param elapsedNanos the duration of the search in nanoseconds
+     * @param allocatedBytes the bytes allocated by the search, -1 if unknown
+     */
+    public SearchResult(int firstCommand, int secondCommand, int score, int depth, long nodes,
+                        long elapsedNanos, long allocatedBytes) {
+        this.firstCommand = firstCommand;
+        this.secondCommand = secondCommand;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public int getFirstCommand() {
+        return firstCommand;
+    }
+
+    public int getSecondCommand() {
+        return secondCommand;
+    }
+
+    public boolean isDoubleMove() {
+        return secondCommand != -1;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * Returns the search speed.
+     * @return the number of positions visited per second
+     */
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the memory allocated for every visited position.
+     * @return the allocated bytes per node, -1 if the allocation is unknown
+     */
+    public double getBytesPerNode() {
+        if (allocatedBytes < 0) {
+            return -1;
+        }
+        return nodes == 0 ? 0 : (double) allocatedBytes / nodes;
+    }
+
+    /**
+     * Describes the move and the search.
+     * @return a one line summary
+     */
+    @Override
+    public String toString() {
+        String move = isDoubleMove() ? firstCommand + "~" + secondCommand : String.valueOf(firstCommand);
+        return String.format("move %s, score %d, depth %d, %d nodes in %.1f ms, %.0f nodes/s, %.1f bytes/node",
+                move, score, depth, nodes, elapsedNanos / 1e6, getNodesPerSecond(), getBytesPerNode());
+    }
+}
@@ -0,0 +1,243 @@
+package ss.gamedesign;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Plays complete games between two strategies without a user interface,
+ * for capacity planning and for tuning the computer players.
+ * <p>
+ * Game i is played with the seed baseSeed + i, which chooses the starting
+ * board, the strategy that moves first and every random choice, so a game
+ * can be replayed from its seed alone. The games are played on the packed
+ * rules of {@link PackedGame} by a fixed number of threads, each with its
+ * own strategies and buffers, which take the next game from a shared counter.
+ */
+public class SelfPlay {
+
+    /**
+     * The strategies of A and B, called once by every thread.
+     */
+    private final Supplier<Strategy> strategyA;
+    private final Supplier<Strategy> strategyB;
+
+    /**
+     * The number of threads playing games.
+     */
+    private final int threads;
+
+    /**
+     * Creates a simulator that plays on every available processor.
+     * @requires strategyA != null && strategyB != null
+     * @param strategyA the supplier of the strategies of A
+     * @param strategyB the supplier of the strategies of B
+     */
+    public SelfPlay(Supplier<Strategy> strategyA, Supplier<Strategy> strategyB) {
+        this(strategyA, strategyB, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a simulator.
+     * @requires strategyA != null && strategyB != null && threads > 0
+     * @param strategyA the supplier of the strategies of A
+     * @param strategyB the supplier of the strategies of B
+     * @param threads the number of threads playing games
+     */
+    public SelfPlay(Supplier<Strategy> strategyA, Supplier<Strategy> strategyB, int threads) {
+        this.strategyA = strategyA;
+        this.strategyB = strategyB;
+        this.threads = threads;
+    }
+
+    /**
+     * Plays a number of games and hands every record to a sink. The sink is
+     * called by one thread at a time, in the order the games finish.
+     * @requires games >= 0 && sink != null
+     * @param games the number of games
+     * @param baseSeed the seed of the first game
+     * @param sink the receiver of the records
+     * @throws InterruptedException if the thread is interrupted while waiting for the games
+     */
+    public void run(long games, long baseSeed, Consumer<GameRecord> sink) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "self-play");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                workers.add(pool.submit(() -> {
+                    Worker worker = new Worker(strategyA.get(), strategyB.get());
+                    for (long game = next.getAndIncrement(); game < games; game = next.getAndIncrement()) {
+                        GameRecord record = worker.play(baseSeed + game);
+                        synchronized (sink) {
+                            sink.accept(record);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : workers) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays one game between two strategies.
+     * @requires a != null && b != null
+     * @param seed the seed of the game
+     * @param a the strategy of A
+     * @param b the strategy of B
+     * @return the record of the game
+     */
+    public static GameRecord play(long seed, Strategy a, Strategy b) {
+        return new Worker(a, b).play(seed);
+    }
+
+    /**
+     * The strategies and buffers of one thread.
+     */
+    private static final class Worker {
+
+        private final Strategy[] strategies;
+        private final long[] cells = BitBoard.newCells();
+        private final int[] balls = new int[2 * PackedGame.CODES];
+        private final int[] moves = new int[PackedGame.MAX_MOVES];
+        private final long[] scratch = BitBoard.newCells();
+        private final long[] afterFirst = BitBoard.newCells();
+        private long[] turnNanos = new long[64];
+
+        private Worker(Strategy a, Strategy b) {
+            strategies = new Strategy[] {a, b};
+        }
+
+        private GameRecord play(long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            System.arraycopy(new Board(random).getCells(), 0, cells, 0, BitBoard.WORDS);
+            Arrays.fill(balls, 0);
+            int starter = random.nextInt(2);
+            int turn = 0;
+            while (true) {
+                long start = System.nanoTime();
+                int count = PackedGame.generate(cells, moves, scratch, afterFirst);
+                if (count == 0) {
+                    break;
+                }
+                // Player 0 of the packed game is the starter
+                int player = turn & 1;
+                int move = strategies[starter ^ player].chooseMove(cells, balls, player, moves, count, random);
+                PackedGame.play(cells, move, balls, player);
+                if (turn == turnNanos.length) {
+                    turnNanos = Arrays.copyOf(turnNanos, 2 * turn);
+                }
+                turnNanos[turn++] = System.nanoTime() - start;
+            }
+            int[] points = new int[2];
+            int[] collected = new int[2];
+            for (int player = 0; player < 2; player++) {
+                for (int code = 1; code < PackedGame.CODES; code++) {
+                    points[starter ^ player] += balls[player * PackedGame.CODES + code] / 3;
+                    collected[starter ^ player] += balls[player * PackedGame.CODES + code];
+                }
+            }
+            return new GameRecord(seed, starter, points, collected, Arrays.copyOf(turnNanos, turn));
+        }
+    }
+
+    /**
+     * Plays games and writes their records as CSV.
+     * Arguments, all optional: -games n, -threads n, -seed n, -a strategy,
+     * -b strategy and -out file, where a strategy is random, greedy or
+     * search:millis. The records go to standard output without -out, the
+     * summary always goes to standard error.
+     * @param args the arguments
+     * @throws IOException if the output cannot be written
+     * @throws InterruptedException if the games are interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        long games = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        String a = "greedy";
+        String b = "random";
+        String out = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-games":
+                    games = Long.parseLong(args[i + 1]);
+                    break;
+                case "-threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "-a":
+                    a = args[i + 1];
+                    break;
+                case "-b":
+                    b = args[i + 1];
+                    break;
+                case "-out":
+                    out = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        long[] wins = new long[3];
+        long[] moves = new long[1];
+        SelfPlay selfPlay = new SelfPlay(Strategy.forName(a), Strategy.forName(b), threads);
+        try (Writer writer = out == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8)) {
+            writer.write(GameRecord.CSV_HEADER);
+            writer.write('\n');
+            long start = System.nanoTime();
+            selfPlay.run(games, seed, record -> {
+                // Index 2 counts the draws
+                wins[record.getWinner() == -1 ? 2 : record.getWinner()]++;
+                moves[0] += record.getMoves();
+                try {
+                    writer.write(record.toCsv());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.err.printf("%d games of %s (A) against %s (B) on %d threads from seed %d%n",
+                    games, a, b, threads, seed);
+            System.err.printf("A won %d, B won %d, %d draws, %.1f moves per game%n",
+                    wins[0], wins[1], wins[2], games == 0 ? 0 : (double) moves[0] / games);
+            System.err.printf("%.1f s, %.0f games/s, %.2f million games/hour%n",
+                    seconds, games / seconds, games / seconds * 3600 / 1e6);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ss.gamedesign;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+/**
+ * A way of choosing moves in headless games, see {@link SelfPlay}.
+ * <p>
+ * Positions and moves are those of {@link PackedGame}. A strategy may keep
+ * buffers between moves, so it is not thread-safe: every thread playing
+ * games creates its own strategies from a supplier.
+ */
+public interface Strategy {
+
+    /**
+     * Chooses one of the moves of a position.
+     * @requires count > 0 and moves holds the moves PackedGame.generate gives for cells
+     * @param cells the packed cells of the position, not to be changed
+     * @param balls the balls of both players
+     * @param player the player to move, 0 or 1
+     * @param moves the encoded moves of the position
+     * @param count the number of moves
+     * @param random the source of the randomness of the game
+     * @return one of the first count moves
+     */
+    int chooseMove(long[] cells, int[] balls, int player, int[] moves, int count, SplittableRandom random);
+
+    /**
+     * Plays a uniformly random move.
+     * @return a supplier of random strategies
+     */
+    static Supplier<Strategy> random() {
+        return () -> (cells, balls, player, moves, count, random) -> moves[random.nextInt(count)];
+    }
+
+    /**
+     * Plays the move that gains the most score right away, as scored by
+     * {@link PackedGame#scoreDifference}, choosing randomly between equal moves.
+     * @return a supplier of greedy strategies
+     */
+    static Supplier<Strategy> greedy() {
+        return () -> {
+            long[] next = BitBoard.newCells();
+            int[] nextBalls = new int[2 * PackedGame.CODES];
+            return (cells, balls, player, moves, count, random) -> {
+                int best = moves[0];
+                int bestScore = Integer.MIN_VALUE;
+                int ties = 0;
+                for (int i = 0; i < count; i++) {
+                    System.arraycopy(cells, 0, next, 0, BitBoard.WORDS);
+                    System.arraycopy(balls, 0, nextBalls, 0, nextBalls.length);
+                    PackedGame.play(next, moves[i], nextBalls, player);
+                    int score = PackedGame.scoreDifference(nextBalls, player);
+                    if (score > bestScore) {
+                        best = moves[i];
+                        bestScore = score;
+                        ties = 1;
+                    } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                        best = moves[i];
+                    }
+                }
+                return best;
+            };
+        };
+    }
+
+    /**
+     * Plays the move found by an {@link AlphaBetaSearch} in a fixed time.
+     * As the search stops at a deadline, its games do not repeat exactly for a seed.
+     * @requires budgetNanos > 0
+     * @param budgetNanos the time the search of one move may take, in nanoseconds
+     * @return a supplier of search strategies
+     */
+    static Supplier<Strategy> search(long budgetNanos) {
+        return () -> {
+            AlphaBetaSearch search = new AlphaBetaSearch();
+            int[] ownBalls = new int[PackedGame.CODES];
+            int[] opponentBalls = new int[PackedGame.CODES];
+            return (cells, balls, player, moves, count, random) -> {
+                System.arraycopy(balls, player * PackedGame.CODES, ownBalls, 0, PackedGame.CODES);
+                System.arraycopy(balls, (1 - player) * PackedGame.CODES, opponentBalls, 0, PackedGame.CODES);
+                SearchResult result = search.search(cells, ownBalls, opponentBalls, budgetNanos);
+                return result.isDoubleMove()
+                        ? PackedGame.doubleMove(result.getFirstCommand(), result.getSecondCommand())
+                        : result.getFirstCommand();
+            };
+        };
+    }
+
+    /**
+     * Parses the name of a strategy: random, greedy, or search:millis for a
+     * search of millis milliseconds per move.
+     * @param name the name of the strategy
+     * @return a supplier of the strategy
+     * @throws IllegalArgumentException if the name is not known
+     */
+    static Supplier<Strategy> forName(String name) {
+        if (name.equals("random")) {
+            return random();
+        } else if (name.equals("greedy")) {
+            return greedy();
+        } else if (name.startsWith("search:")) {
+            try {
+                return search(Long.parseLong(name.substring("search:".length())) * 1_000_000L);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid search time in " + name, e);
+            }
+        }
+        throw new IllegalArgumentException("Unknown strategy " + name);
+    }
+}
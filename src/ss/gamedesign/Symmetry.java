@@ -0,0 +1,264 @@
+package ss.gamedesign;
+
+/**
+ * The symmetries of the Collecto board: the 8 rotations and reflections of
+ * the square, and the permutations of the ball colours.
+ * <p>
+ * A transform maps every field to a field and every command to a command,
+ * such that sliding a transformed board with the transformed command gives
+ * the transformed result of the original slide. Legal moves therefore map
+ * onto legal moves. Permuting the colours keeps the legal moves as well,
+ * but not the score, which counts the balls by colour.
+ * <p>
+ * A canonical form picks one board out of all its symmetric images, so
+ * caches keyed by the canonical form are shared by all of them. Transform
+ * 0 is the identity; transforms 1 to 3 rotate by a quarter turn clockwise
+ * that many times and 4 to 7 first mirror the columns and then rotate.
+ */
+public final class Symmetry {
+
+    /**
+     * The number of transforms of the square.
+     */
+    public static final int TRANSFORMS = 8;
+
+    private static final int DIM = BitBoard.DIM;
+
+    /**
+     * The image of every field under every transform.
+     */
+    private static final int[][] FIELDS = new int[TRANSFORMS][BitBoard.SIZE];
+
+    /**
+     * The field every field of an image is taken from under every transform,
+     * as the word of the field shifted left by 6 plus the shift of the field in its word.
+     */
+    private static final int[][] SOURCES = new int[TRANSFORMS][BitBoard.SIZE];
+
+    /**
+     * The image of every command under every transform.
+     */
+    private static final int[][] COMMANDS = new int[TRANSFORMS][MoveGenerator.COMMANDS];
+
+    /**
+     * The transform that undoes every transform.
+     */
+    private static final int[] INVERSE = new int[TRANSFORMS];
+
+    static {
+        for (int t = 0; t < TRANSFORMS; t++) {
+            for (int index = 0; index < BitBoard.SIZE; index++) {
+                int row = index / DIM;
+                int col = index % DIM;
+                if (t >= 4) {
+                    col = DIM - 1 - col;
+                }
+                for (int turn = 0; turn < (t & 3); turn++) {
+                    int turned = col;
+                    col = DIM - 1 - row;
+                    row = turned;
+                }
+                FIELDS[t][index] = row * DIM + col;
+                SOURCES[t][row * DIM + col] = index / BitBoard.FIELDS_PER_WORD << 6 | BitBoard.shift(index);
+            }
+        }
+        for (int t = 0; t < TRANSFORMS; t++) {
+            for (int command = 0; command < MoveGenerator.COMMANDS; command++) {
+                int target = FIELDS[t][target(command)];
+                int far = FIELDS[t][far(command)];
+                for (int image = 0; image < MoveGenerator.COMMANDS; image++) {
+                    if (target(image) == target && far(image) == far) {
+                        COMMANDS[t][command] = image;
+                    }
+                }
+            }
+            for (int u = 0; u < TRANSFORMS; u++) {
+                if (FIELDS[u][FIELDS[t][1]] == 1 && FIELDS[u][FIELDS[t][DIM]] == DIM) {
+                    INVERSE[t] = u;
+                }
+            }
+        }
+    }
+
+    private Symmetry() {
+    }
+
+    /**
+     * Returns the field the balls of a command move towards.
+     * @param command a command between 0 and 27
+     * @return the index of the field at that end of the line
+     */
+    private static int target(int command) {
+        int line = command % DIM;
+        switch (command / DIM) {
+            case 0:
+                return line * DIM;
+            case 1:
+                return line * DIM + DIM - 1;
+            case 2:
+                return line;
+            default:
+                return (DIM - 1) * DIM + line;
+        }
+    }
+
+    /**
+     * Returns the field at the other end of the line of a command.
+     * @param command a command between 0 and 27
+     * @return the index of the field the balls move away from
+     */
+    private static int far(int command) {
+        int line = command % DIM;
+        switch (command / DIM) {
+            case 0:
+                return line * DIM + DIM - 1;
+            case 1:
+                return line * DIM;
+            case 2:
+                return (DIM - 1) * DIM + line;
+            default:
+                return line;
+        }
+    }
+
+    /**
+     * Returns the image of a field.
+     * @requires transform >= 0 && transform < 8 && index >= 0 && index < 49
+     * @param transform the transform
+     * @param index the index of the field
+     * @return the index of the image of the field
+     */
+    public static int mapField(int transform, int index) {
+        return FIELDS[transform][index];
+    }
+
+    /**
+     * Returns the image of a command.
+     * @requires transform >= 0 && transform < 8 && command >= 0 && command < 28
+     * @param transform the transform
+     * @param command the command
+     * @return the command that does on the transformed board what command does on the original
+     */
+    public static int mapCommand(int transform, int command) {
+        return COMMANDS[transform][command];
+    }
+
+    /**
+     * Returns the images of a mask of commands.
+     * @requires transform >= 0 && transform < 8
+     * @param transform the transform
+     * @param commands a mask of commands
+     * @return the mask of the images of the commands
+     */
+    public static int mapCommands(int transform, int commands) {
+        int images = 0;
+        for (int left = commands; left != 0; left &= left - 1) {
+            images |= 1 << COMMANDS[transform][Integer.numberOfTrailingZeros(left)];
+        }
+        return images;
+    }
+
+    /**
+     * Returns the transform that undoes a transform, to map moves of a canonical board back.
+     * @requires transform >= 0 && transform < 8
+     * @param transform the transform
+     * @return the inverse transform
+     */
+    public static int inverse(int transform) {
+        return INVERSE[transform];
+    }
+
+    /**
+     * Transforms a board.
+     * @requires transform >= 0 && transform < 8 and cells, out are different arrays of BitBoard.WORDS longs
+     * @param transform the transform
+     * @param cells the packed cells of the board, not changed
+     * @param out the packed cells of the image, overwritten
+     */
+    public static void transform(int transform, long[] cells, long[] out) {
+        build(cells, SOURCES[transform], false, out, null);
+    }
+
+    /**
+     * Computes the canonical form of a board under the rotations and reflections:
+     * the image with the smallest packed cells, compared from the first field on.
+     * @requires cells, out and scratch are different arrays of BitBoard.WORDS longs
+     * @param cells the packed cells of the board, not changed
+     * @param out the canonical form, overwritten
+     * @param scratch scratch cells
+     * @return the transform that maps the board onto its canonical form
+     */
+    public static int canonicalize(long[] cells, long[] out, long[] scratch) {
+        return canonicalize(cells, out, scratch, false);
+    }
+
+    /**
+     * Computes the canonical form of a board under the rotations and reflections
+     * and, optionally, the permutations of the colours. With colours, every image
+     * is relabelled so that the colours are numbered in the order they first
+     * appear on it; such a form only keeps the legal moves, not the score.
+     * @requires cells, out and scratch are different arrays of BitBoard.WORDS longs
+     * @param cells the packed cells of the board, not changed
+     * @param out the canonical form, overwritten
+     * @param scratch scratch cells
+     * @param permuteColours true to also relabel the colours
+     * @return the transform that maps the board onto its canonical form
+     */
+    public static int canonicalize(long[] cells, long[] out, long[] scratch, boolean permuteColours) {
+        build(cells, SOURCES[0], permuteColours, out, null);
+        int best = 0;
+        for (int t = 1; t < TRANSFORMS; t++) {
+            if (build(cells, SOURCES[t], permuteColours, scratch, out) < 0) {
+                System.arraycopy(scratch, 0, out, 0, BitBoard.WORDS);
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Builds an image of a board word by word, the first field first, and
+     * compares it to another image while it is built. The building stops as
+     * soon as the image is known to be larger, so most images that are not
+     * the smallest cost a single word.
+     * @param cells the packed cells of the board
+     * @param sources the packed position of the field every field of the image is taken from
+     * @param permuteColours true to number the colours in the order they first appear
+     * @param out the image, overwritten, only partly if it turns out larger than smallest
+     * @param smallest the image to compare to, or null to build the whole image
+     * @return a negative number if the image is smaller than smallest, zero if it
+     *         is equal or smallest is null, a positive number if it is larger
+     */
+    private static int build(long[] cells, int[] sources, boolean permuteColours, long[] out, long[] smallest) {
+        // Code c is renamed to (names >>> 3 * c & 7), 0 if it has no name yet
+        int names = 0;
+        int next = 1;
+        int order = 0;
+        for (int word = 0; word < BitBoard.WORDS; word++) {
+            int first = word * BitBoard.FIELDS_PER_WORD;
+            int last = Math.min(first + BitBoard.FIELDS_PER_WORD, BitBoard.SIZE);
+            long w = 0;
+            for (int index = first; index < last; index++) {
+                int source = sources[index];
+                int code = (int) (cells[source >>> 6] >>> (source & 63) & BitBoard.CODE_MASK);
+                if (permuteColours && code != BitBoard.EMPTY) {
+                    int name = names >>> BitBoard.BITS * code & 7;
+                    if (name == 0) {
+                        name = next++;
+                        names |= name << BitBoard.BITS * code;
+                    }
+                    code = name;
+                }
+                w |= (long) code << BitBoard.BITS * (index - first);
+            }
+            out[word] = w;
+            if (smallest != null && order == 0) {
+                order = Long.compareUnsigned(w, smallest[word]);
+                if (order > 0) {
+                    return order;
+                }
+            }
+        }
+        return order;
+    }
+}
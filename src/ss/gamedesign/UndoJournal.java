@@ -0,0 +1,82 @@
+package ss.gamedesign;
+
+import java.util.Arrays;
+
+/**
+ * Records the old colours of the fields changed on a board, so that the
+ * changes can be undone. Only changed fields are recorded, so undoing a
+ * slide and the removal of the gathered balls costs one write per field
+ * that actually changed.
+ */
+public class UndoJournal {
+
+    /**
+     * The recorded changes, every entry holds the field index and its old colour code.
+     */
+    private int[] entries = new int[2 * BitBoard.SIZE];
+
+    /**
+     * The number of recorded changes.
+     */
+    private int size;
+
+    /**
+     * Records the colour a field had before it was changed.
+     * @requires index >= 0 && index < 49 && oldCode >= 0 && oldCode <= 6
+     * @param index the index of the changed field
+     * @param oldCode the colour code of the field before the change
+     */
+    void record(int index, int oldCode) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * size);
+        }
+        entries[size++] = index << BitBoard.BITS | oldCode;
+    }
+
+    /**
+     * Returns the number of recorded changes, which can be passed to {@link #undo(Board, int)}.
+     * @return the number of changes recorded so far
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets all recorded changes.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Restores all recorded changes on the board, newest first, and clears the journal.
+     * @requires the changes were recorded on board
+     * @param board the board to restore
+     */
+    public void undo(Board board) {
+        undo(board, 0);
+    }
+
+    /**
+     * Restores the changes recorded after the given point, newest first.
+     * @requires mark >= 0 && mark <= size() and the changes were recorded on board
+     * @param board the board to restore
+     * @param mark the value of {@link #size()} to go back to
+     */
+    public void undo(Board board, int mark) {
+        while (size > mark) {
+            int entry = entries[--size];
+            board.restore(entry >>> BitBoard.BITS, entry & (int) BitBoard.CODE_MASK);
+        }
+    }
+
+    /**
+     * Returns the index of the field changed by a recorded change.
+     * @requires i >= 0 && i < size()
+     * @param i the number of the change, 0 is the oldest
+     * @return the index of the changed field
+     */
+    public int getIndex(int i) {
+        return entries[i] >>> BitBoard.BITS;
+    }
+}
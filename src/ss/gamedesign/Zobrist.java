@@ -0,0 +1,65 @@
+package ss.gamedesign;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys of the board positions. Every field and colour code has a
+ * random 64-bit key and the hash of a position is the xor of the keys of
+ * its balls, so changing one field changes the hash by two xors.
+ * Empty fields have the key 0, the empty board hashes to 0.
+ * The keys come from a fixed seed and are the same in every run.
+ */
+public final class Zobrist {
+
+    /**
+     * The seed of the keys.
+     */
+    private static final long SEED = 0x436f6c6c6563746fL;
+
+    /**
+     * The number of colour codes, including the empty code.
+     */
+    private static final int CODES = 7;
+
+    /**
+     * The key of every field and colour code, stored at index * CODES + code.
+     */
+    private static final long[] KEYS = new long[BitBoard.SIZE * CODES];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int index = 0; index < BitBoard.SIZE; index++) {
+            for (int code = 1; code < CODES; code++) {
+                KEYS[index * CODES + code] = random.nextLong();
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of a ball on a field.
+     * @requires index >= 0 && index < 49 && code >= 0 && code <= 6
+     * @param index the index of the field
+     * @param code the colour code of the ball
+     * @return the key, 0 for an empty field
+     */
+    public static long key(int index, int code) {
+        return KEYS[index * CODES + code];
+    }
+
+    /**
+     * Computes the hash of a position from scratch.
+     * @requires cells.length == BitBoard.WORDS
+     * @param cells the packed cells of the board
+     * @return the xor of the keys of all fields
+     */
+    public static long hash(long[] cells) {
+        long hash = 0;
+        for (int index = 0; index < BitBoard.SIZE; index++) {
+            hash ^= key(index, BitBoard.get(cells, index));
+        }
+        return hash;
+    }
+}
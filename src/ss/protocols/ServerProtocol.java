@@ -28,5 +28,7 @@ public interface ServerProtocol {
 
     void doQUEUE(String gameName, CollectoClientHandler handler);
 
+    void doQUEUE(CollectoClientHandler handler);
+
     public String doHello();
 }
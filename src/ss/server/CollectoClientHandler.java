@@ -7,6 +7,7 @@ import ss.server.CollectoServer;
 import java.io.*;
 import java.net.Socket;
 import java.util.Arrays;
+import java.util.function.BooleanSupplier;
 
 /**
  * CollectoClientHandler for the Collecto Server application.
@@ -28,12 +29,18 @@ public class CollectoClientHandler implements Runnable {
     private String name;
 
     /** Name of the connected user (if connected with an username). */
-    private String username;
+    private volatile String username;
 
-    /** True if joined to a game. */
-    private boolean bjoinedtoagame;
+    /** True if joined to a game. The game state is set under the lock of the game and read by other threads. */
+    private volatile boolean bjoinedtoagame;
 
-    private NetworkGame activeGame;
+    private volatile NetworkGame activeGame;
+
+    /** True once the connection was shut down. */
+    private boolean closed;
+
+    /** The messages waiting to be sent to the client. */
+    private Outbox outbox;
 
     public NetworkGame getActiveGame() {
 		return activeGame;
@@ -54,6 +61,7 @@ public class CollectoClientHandler implements Runnable {
         try {
             in = new BufferedReader(new InputStreamReader(sock.getInputStream()));
             out = new BufferedWriter(new OutputStreamWriter(sock.getOutputStream()));
+            outbox = srv.newOutbox(out, () -> true, this);
             this.sock = sock;
             this.srv = srv;
             this.name = name;
@@ -65,9 +73,30 @@ public class CollectoClientHandler implements Runnable {
         }
     }
 
+    /**
+     * Constructs a CollectoClientHandler for a connection that is not read by
+     * the handler itself, such as a connection of a {@link NioCollectoServer}.
+     * The lines of the client are passed to {@link #handleLine(String)}.
+     * The writer buffers the messages itself, so only a small buffer is
+     * kept here; with many idle clients the default one would add up.
+     *
+     * @param out      The writer of the messages to the client, closed on shutdown
+     * @param writable Tells whether the writer can take the next messages without waiting
+     * @param srv      The connected server
+     * @param name     The name of this ClientHandler
+     */
+    CollectoClientHandler(Writer out, BooleanSupplier writable, CollectoServer srv, String name) {
+        this.out = new BufferedWriter(out, 64);
+        this.outbox = srv.newOutbox(this.out, writable, this);
+        this.srv = srv;
+        this.name = name;
+        this.bjoinedtoagame = false;
+        this.activeGame = null;
+    }
+
     /**
      * Continuously listens to client input and forwards the input to the
-     * {@link #handleCommand(String)} method.
+     * {@link #handleLine(String)} method.
      */
     @Override
     public void run() {
@@ -75,13 +104,8 @@ public class CollectoClientHandler implements Runnable {
         try {
             msg = in.readLine();
             while (msg != null) {
-                System.out.println("> [" + name + "] Incoming: " + msg);
-                handleCommand(msg);
-                out.newLine();
-                out.flush();
-
+                handleLine(msg);
                 msg = in.readLine();
-
             }
             shutdown();
         } catch (IOException e) {
@@ -90,35 +114,76 @@ public class CollectoClientHandler implements Runnable {
     }
 
     /**
-     * Sends a message to the client.
+     * Handles one line received from the client with {@link #handleCommand(String)}
+     * and ends the response with a line, empty for most commands.
+     *
+     * @param msg the line, without its line end
+     * @throws IOException if an IO errors occur
+     */
+    void handleLine(String msg) throws IOException {
+        System.out.println("> [" + name + "] Incoming: " + msg);
+        sendMessageToClient(handleCommand(msg));
+    }
+
+    /**
+     * Sends a message to the client. The message is queued in the outbox of
+     * the client, so this does not wait for the client to read it.
      * @param message The message to be sent
      * @throws IOException thrown when there is an IO error
      */
     public void sendMessageToClient(String message) throws IOException {
-        out.write(message);
-        out.newLine();
-        out.flush();
+        outbox.send(message);
+    }
+
+    /**
+     * Returns the messages waiting to be sent to the client, for their metrics.
+     * @return the outbox of this client
+     */
+    public Outbox getOutbox() {
+        return outbox;
     }
 
     /**
      * Shut down the connection to this client by closing the socket and
-     * the Input and Output Streams.
+     * the Input and Output Streams. Only the first call has an effect.
      */
-    private void shutdown() {
+    void shutdown() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
         System.out.println("> [" + name + "] Shutting down.");
+        if (outbox != null) {
+            outbox.close();
+        }
         if (isJoinedToGame()) {
             srv.doQuit(this, this.activeGame);
         }
         try {
-            in.close();
+            // The socket first: it ends a read of the handler thread, which holds the lock of the reader
+            if (sock != null) {
+                sock.close();
+            }
+            if (in != null) {
+                in.close();
+            }
             out.close();
-            sock.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
         srv.removeClient(this);
     }
 
+    /**
+     * Checks if the connection to this client was shut down.
+     * @return true once {@link #shutdown()} was called
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
     public void setUser(String user) {
         this.username = user;
     }
@@ -154,9 +219,10 @@ public class CollectoClientHandler implements Runnable {
      * message to the server.
      *
      * @param msg command from client
+     * @return the text of the line that ends the response
      * @throws IOException if an IO errors occur.
      */
-    private void handleCommand(String msg) throws IOException {
+    private String handleCommand(String msg) throws IOException {
         String[] array = msg.split(ProtocolMessages.DELIMITER);
         String responseMessage = "";
 
@@ -169,8 +235,7 @@ public class CollectoClientHandler implements Runnable {
         switch (command) {
 
             case ProtocolMessages.HELLO:
-                out.write(srv.doHello());
-                break;
+                return srv.doHello();
 
             case ProtocolMessages.LOGIN:
                 if (array.length < 2) {
@@ -189,49 +254,26 @@ public class CollectoClientHandler implements Runnable {
                 if (activeGame != null) {
                     srv.doQUEUE(activeGame.getName(), this);
                 } else {
-          //srv.doNewGame(username, "test", 2, this);
-          srv.doQUEUE("test", this);
-                    responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Please create or join a game before sending ready command!";
+                    srv.doQUEUE(this);
                 }
                 break;
 
             case ProtocolMessages.MOVE:
+                NetworkGame game = activeGame;
                 boolean binvalidinput = false;
 
-                if (array.length < 2) {
+                if (game == null) {
+                    binvalidinput = true;
+                    responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "You are not in a game, send QUEUE to join one";
+                } else if (array.length < 2) {
                     binvalidinput = true;
                     responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Valid move should contain one or two columns/rows selected and a direction - MOVE~<m1>:<m2>";
-                } else {
-                    if (array.length > 4) {
-                        binvalidinput = true;
-                        responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Valid move should contain at least one ball selected and a direction - MOVE~<m1>:<m2>>";
-                    } else {
-                        assert activeGame != null;
-                        if (!activeGame.getMove().noPossibleSingleMoves()) {
-                            if (array.length != 2) {
-                                try {
-                                    Integer.parseInt(array[1]);
-                                } catch (NumberFormatException e) {
-                                    responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Invalid number in the command" + array[1];
-                                    binvalidinput = true;
-                                }
-                            }
-                        } else {
-                            if (array.length != 3) {
-                                try {
-                                    Integer.parseInt(array[1]);
-                                    Integer.parseInt(array[2]);
-                                } catch (NumberFormatException e) {
-                                    responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Invalid number in the command" + array[1] + ProtocolMessages.DELIMITER + array[2];
-                                    binvalidinput = true;
-                                }
-                            }
-                        }
-                    }
+                } else if (array.length > 4) {
+                    binvalidinput = true;
+                    responseMessage = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Valid move should contain at least one ball selected and a direction - MOVE~<m1>:<m2>>";
                 }
 
-
-                // If the input is valid, then call doMove
+                // If the input is valid, then call doMove, which checks the move against the board under the lock of the game
                 if (binvalidinput) {
                     sendMessageToClient(responseMessage);
                 } else {
@@ -239,10 +281,11 @@ public class CollectoClientHandler implements Runnable {
                     String[] tempMove = msg.split(ProtocolMessages.DELIMITER);
                     String[] move = Arrays.copyOfRange(tempMove, 1, tempMove.length);
 
-                    srv.doMove(activeGame.getName(), move, this);
+                    srv.doMove(game.getName(), move, this);
                 }
             break;
         }
+        return "";
     }
 
 }
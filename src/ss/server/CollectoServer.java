@@ -4,13 +4,25 @@ import ss.exceptions.ExitProgram;
 import ss.exceptions.InvalidMoveException;
 import ss.exceptions.JoinGameException;
 import ss.gamedesign.Board;
+import ss.gamedesign.BoardPool;
+import ss.gamedesign.MoveCache;
 import ss.gamedesign.NetworkGame;
 import ss.protocols.ProtocolMessages;
 import ss.protocols.ServerProtocol;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.net.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * Server TUI for Networked Collecto Application.
@@ -26,14 +38,52 @@ public class CollectoServer implements Runnable, ServerProtocol {
   private ServerSocket ssock;
 
   /**
-   * List of CollectoClientHandlers, one for each connected client.
+   * The channel of the ServerSocket, used by the non-blocking mode.
    */
-  private List<CollectoClientHandler> clients;
+  private ServerSocketChannel serverChannel;
+
+  /**
+   * The number of event-loop threads of the non-blocking mode,
+   * 0 to serve every client with its own thread.
+   */
+  private final int eventLoops;
+
+  /**
+   * Runs the writes and disconnects of the outboxes, the commands of the
+   * clients in the non-blocking mode and, with virtual threads, the handlers.
+   */
+  private final ExecutorService handlerThreads;
+
+  /**
+   * True if every handler runs on a virtual thread of handlerThreads;
+   * otherwise every client gets a new platform thread of its own.
+   */
+  private final boolean virtualHandlers;
+
+  /**
+   * The number of characters that may wait to be sent to a client.
+   */
+  private volatile int outboxCapacity = Outbox.DEFAULT_CAPACITY;
+
+  /**
+   * What is done with a message to a client whose outbox is full.
+   */
+  private volatile SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+
+  /**
+   * The transport of the non-blocking mode while it serves, otherwise null.
+   */
+  private volatile NioCollectoServer nio;
+
+  /**
+   * Set of CollectoClientHandlers, one for each connected client.
+   */
+  private final Set<CollectoClientHandler> clients;
 
   /**
    * Next client number, increasing for every new connection.
    */
-  private int nextClientNo;
+  private final AtomicInteger nextClientNo;
 
   /**
    * The view of this CollectoServer.
@@ -46,37 +96,156 @@ public class CollectoServer implements Runnable, ServerProtocol {
   private static final String SERVERNAME = "YS_SURVER";
 
   /**
-   * The games on the server.
+   * The games on the server. Every game is guarded by its own lock, see
+   * {@link NetworkGame#getLock()}, so independent games do not wait for each other.
    */
-  private HashMap<String, NetworkGame> games;
+  private final ConcurrentHashMap<String, NetworkGame> games;
 
-  private HashSet<String> connectedUsers;
+  /**
+   * The names of the logged in users.
+   */
+  private final Set<String> connectedUsers;
+
+  /**
+   * The number of starting boards kept ready for new games.
+   */
+  private static final int BOARD_POOL_SIZE = 64;
+
+  /**
+   * The starting boards for new games, filled in the background.
+   */
+  private final BoardPool boardPool;
+
+  /**
+   * The number of positions kept in the cache of legal moves.
+   */
+  private static final int MOVE_CACHE_SIZE = 1 << 16;
+
+  /**
+   * The legal moves of the positions seen in the games, shared by all games.
+   * Symmetric positions share their entry, the few hundred nanoseconds of
+   * canonicalizing a position are nothing next to a network round trip.
+   */
+  private final MoveCache moveCache;
+
+  /**
+   * The players waiting for a game, paired into new games by a background thread.
+   */
+  private final Matchmaker<CollectoClientHandler> matchmaker;
+
+  /**
+   * The rating players queue with. Players have no rating yet, so the
+   * matchmaker pairs them in the order they queue.
+   */
+  private static final int QUEUE_RATING = 0;
+
+  /**
+   * Next number of a game made by the matchmaker.
+   */
+  private final AtomicInteger nextMatchNo = new AtomicInteger(1);
 
   /**
    * Constructs a new CollectoServer. Initializes the clients list,
-   * the view and the nextClientNo.
+   * the view and the nextClientNo, and starts filling the board pool.
+   * Every client is served by its own thread.
    */
   public CollectoServer() {
-    clients = new ArrayList<>();
-    games = new HashMap<>();
-    connectedUsers = new HashSet<>();
+    this(0);
+  }
+
+  /**
+   * Constructs a new CollectoServer that serves its clients with a few
+   * event-loop threads, see {@link NioCollectoServer}.
+   *
+   * @param eventLoops the number of event-loop threads, 0 to serve every
+   *                   client with its own thread
+   * @requires eventLoops >= 0
+   */
+  public CollectoServer(int eventLoops) {
+    this(eventLoops, false);
+  }
+
+  /**
+   * Constructs a new CollectoServer that serves every client with its own
+   * thread, or with the given number of event loops.
+   *
+   * @param eventLoops     the number of event-loop threads, 0 to serve every
+   *                       client with its own thread
+   * @param virtualThreads true to run the handlers, or the commands of the event loops,
+   *                       on virtual threads, where the Java runtime has them
+   * @requires eventLoops >= 0
+   */
+  public CollectoServer(int eventLoops, boolean virtualThreads) {
+    this.eventLoops = eventLoops;
     view = new CollectoServerTUI();
-    nextClientNo = 1;
+    ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+    if (virtualThreads && virtual == null) {
+      view.showMessage("Virtual threads are not available on Java "
+              + Runtime.version().feature() + ", using platform threads.");
+    }
+    virtualHandlers = virtual != null;
+    handlerThreads = virtualHandlers ? virtual : Executors.newCachedThreadPool();
+    clients = ConcurrentHashMap.newKeySet();
+    games = new ConcurrentHashMap<>();
+    connectedUsers = ConcurrentHashMap.newKeySet();
+    nextClientNo = new AtomicInteger(1);
+    boardPool = new BoardPool(BOARD_POOL_SIZE);
+    boardPool.start();
+    moveCache = new MoveCache(MOVE_CACHE_SIZE, true);
+    matchmaker = new Matchmaker<>(this::onMatch);
+    matchmaker.start();
   }
 
   // ------------------ Main --------------------------
 
   /**
-   * Start a new CollectoServer.
+   * Start a new CollectoServer. With the argument -nio, optionally followed
+   * by the number of event loops, the clients are served without a thread each.
+   * With -virtual every client gets a virtual thread. With -slow drop,
+   * disconnect or degrade, optionally followed by the capacity of an outbox
+   * in characters, the policy for slow clients is chosen.
    */
   public static void main(String[] args) {
-    CollectoServer server = new CollectoServer();
+    int eventLoops = 0;
+    boolean virtualThreads = false;
+    SlowConsumerPolicy policy = SlowConsumerPolicy.DISCONNECT;
+    int capacity = Outbox.DEFAULT_CAPACITY;
+    for (int i = 0; i < args.length; i++) {
+      boolean number = i + 1 < args.length && args[i + 1].matches("\\d+");
+      if (args[i].equals("-nio")) {
+        eventLoops = number ? Integer.parseInt(args[++i]) : NioCollectoServer.DEFAULT_EVENT_LOOPS;
+      } else if (args[i].equals("-virtual")) {
+        virtualThreads = true;
+      } else if (args[i].equals("-slow") && i + 1 < args.length) {
+        policy = SlowConsumerPolicy.valueOf(args[++i].toUpperCase());
+        if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+          capacity = Integer.parseInt(args[++i]);
+        }
+      }
+    }
+    CollectoServer server = new CollectoServer(eventLoops, virtualThreads);
+    server.setSlowConsumerPolicy(policy, capacity);
     System.out.println("Welcome to the Abalone Server! Starting...");
     new Thread(server).start();
   }
 
   // --------------------------------------------------
 
+  /**
+   * Returns an executor that runs every task on a new virtual thread, if the
+   * Java runtime has them (Java 21 and later). Virtual threads are looked up
+   * by reflection, so the server still builds and runs on older runtimes.
+   *
+   * @return the executor, or null if the runtime has no virtual threads
+   */
+  public static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      return null;
+    }
+  }
+
   /**
    * Returns the name of the Collecto server.
    *
@@ -87,6 +256,24 @@ public class CollectoServer implements Runnable, ServerProtocol {
     return SERVERNAME;
   }
 
+  /**
+   * Returns the pool of starting boards, for its metrics.
+   *
+   * @return the board pool of this server
+   */
+  public BoardPool getBoardPool() {
+    return boardPool;
+  }
+
+  /**
+   * Returns the cache of legal moves shared by the games, for its metrics.
+   *
+   * @return the move cache of this server
+   */
+  public MoveCache getMoveCache() {
+    return moveCache;
+  }
+
   /**
    * Opens a new socket by calling {@link #setup()} and starts a new
    * AbaloneClientHandler for every connecting client.
@@ -101,15 +288,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
       try {
         // Sets up the Collecto application
         setup();
-
-        while (true) {
-          Socket sock = ssock.accept();
-          String name = "Client " + String.format("%02d", nextClientNo++);
-          view.showMessage("New client [" + name + "] connected!");
-          CollectoClientHandler handler = new CollectoClientHandler(sock, this, name);
-          new Thread(handler).start();
-          clients.add(handler);
-        }
+        serve(serverChannel);
 
       } catch (ExitProgram e1) {
         // If setup() throws an ExitProgram exception,
@@ -126,6 +305,100 @@ public class CollectoServer implements Runnable, ServerProtocol {
     view.showMessage("See you later!");
   }
 
+  /**
+   * Sets how many characters may wait to be sent to a client, and what is
+   * done with a message that does not fit. Applies to clients that connect later.
+   *
+   * @param policy   what is done with a message to a client whose outbox is full
+   * @param capacity the number of characters that may wait for a client
+   * @requires policy != null && capacity > 0
+   */
+  public void setSlowConsumerPolicy(SlowConsumerPolicy policy, int capacity) {
+    this.slowConsumerPolicy = policy;
+    this.outboxCapacity = capacity;
+  }
+
+  /**
+   * Creates the outbox of a client. In the thread-per-client modes the
+   * messages are written by a task of the handler executor, so a client that
+   * does not read only holds up that task; the non-blocking connections are
+   * written by the sending thread. A full outbox under the DISCONNECT policy,
+   * or a failed write, always shuts the handler down on the handler executor,
+   * as that quits the game of the client.
+   *
+   * @param out      the writer of the connection
+   * @param writable tells whether the writer can take the next messages
+   * @param handler  the handler of the client, shut down by the DISCONNECT policy
+   * @return the outbox
+   */
+  Outbox newOutbox(Writer out, BooleanSupplier writable, CollectoClientHandler handler) {
+    Executor writers = eventLoops > 0 ? Runnable::run : handlerThreads;
+    return new Outbox(out, writers, handlerThreads, writable, outboxCapacity, slowConsumerPolicy, handler::shutdown);
+  }
+
+  /**
+   * Returns the queue of players waiting for a game, for its metrics.
+   *
+   * @return the matchmaker of this server
+   */
+  public Matchmaker<CollectoClientHandler> getMatchmaker() {
+    return matchmaker;
+  }
+
+  /**
+   * Serves the clients connecting on a channel until it is closed, for
+   * example by {@link #shutdown()}.
+   *
+   * @param channel the bound channel to accept the clients on, in blocking mode
+   * @throws IOException if accepting a client fails
+   * @requires channel != null && channel is bound
+   */
+  public void serve(ServerSocketChannel channel) throws IOException {
+    serverChannel = channel;
+    ssock = channel.socket();
+    if (eventLoops > 0) {
+      view.showMessage("Serving clients with " + eventLoops + " event loops.");
+      nio = new NioCollectoServer(this, channel, eventLoops, handlerThreads);
+      nio.run();
+      return;
+    }
+    while (true) {
+      Socket sock = ssock.accept();
+      CollectoClientHandler handler = new CollectoClientHandler(sock, this, nextClientName());
+      if (virtualHandlers) {
+        handlerThreads.execute(handler);
+      } else {
+        new Thread(handler).start();
+      }
+      addClient(handler);
+    }
+  }
+
+  /**
+   * Stops accepting clients, disconnects the connected ones and stops the board pool.
+   */
+  public void shutdown() {
+    closeServerChannel();
+    if (nio != null) {
+      nio.shutdown();
+    }
+    for (CollectoClientHandler client : clients) {
+      client.shutdown();
+    }
+    handlerThreads.shutdown();
+    matchmaker.stop();
+    boardPool.stop();
+  }
+
+  /**
+   * Returns the number of connected clients.
+   *
+   * @return the size of the client list
+   */
+  public int getClientCount() {
+    return clients.size();
+  }
+
   /**
    * Sets up a new Collecto using and opens a new
    * ServerSocket at localhost on a user-defined port.
@@ -153,10 +426,13 @@ public class CollectoServer implements Runnable, ServerProtocol {
 ////                    addr = socket.getLocalAddress().getHostAddress();
 //                }
         view.showMessage("Attempting to open a socket on port " + port + "...");
-        ssock = new ServerSocket(port, 0, InetAddress.getByName("127.0.0.1"));
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port));
+        ssock = serverChannel.socket();
         view.showMessage("Server started at port " + port);
       } catch (IOException e) {
         view.showMessage("ERROR: could not create a socket on port " + port + ".");
+        closeServerChannel();
 
         if (!view.getBoolean("Do you want to try again?")) {
           throw new ExitProgram("User indicated to exit the "
@@ -166,6 +442,37 @@ public class CollectoServer implements Runnable, ServerProtocol {
     }
   }
 
+  private void closeServerChannel() {
+    try {
+      if (serverChannel != null) {
+        serverChannel.close();
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    ssock = null;
+  }
+
+  /**
+   * Returns the name of the next connecting client.
+   *
+   * @return the name, numbered in the order the clients connect
+   */
+  String nextClientName() {
+    String name = "Client " + String.format("%02d", nextClientNo.getAndIncrement());
+    view.showMessage("New client [" + name + "] connected!");
+    return name;
+  }
+
+  /**
+   * Adds a clientHandler to the client list.
+   *
+   * @requires client != null
+   */
+  void addClient(CollectoClientHandler client) {
+    this.clients.add(client);
+  }
+
   /**
    * Removes a clientHandler from the client list.
    *
@@ -173,6 +480,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
    */
   public void removeClient(CollectoClientHandler client) {
     this.clients.remove(client);
+    matchmaker.cancel(client);
   }
 
   /**
@@ -181,7 +489,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
    * @param collectoClientHandler the handler to disconnect
    */
   @Override
-  public synchronized void doDisconnect(CollectoClientHandler collectoClientHandler) {
+  public void doDisconnect(CollectoClientHandler collectoClientHandler) {
     collectoClientHandler.clearUser();
   }
 
@@ -189,7 +497,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
    * Processes connection request from a client app.
    */
   @Override
-  public synchronized String doHello() {
+  public String doHello() {
     return ProtocolMessages.HELLO + ProtocolMessages.DELIMITER + "username";
   }
 
@@ -229,11 +537,10 @@ public class CollectoServer implements Runnable, ServerProtocol {
   public void doLogin(String username, CollectoClientHandler handler) {
     String retStr = "";
 
-    if (connectedUsers.contains(username)) {
+    if (!connectedUsers.add(username)) {
       retStr = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + username + ProtocolMessages.DELIMITER + ProtocolMessages.ALREADYLOGGEDIN;
       view.showMessage("duplicate user [" + username + "] trying to connect");
     } else {
-      connectedUsers.add(username);
       handler.setUser(username);
       view.showMessage("user [" + username + "] connected!");
     }
@@ -255,20 +562,43 @@ public class CollectoServer implements Runnable, ServerProtocol {
    */
   @Override
   public void doMove(String gameName, String[] move, CollectoClientHandler handler) throws IOException {
-    String retStr = ProtocolMessages.MOVE;
-
     NetworkGame game = games.get(gameName);
 
     if (game == null) {
-      retStr = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER
+      String retStr = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER
               + "Fatal server error. Could not get the game for the move!";
       try {
         handler.sendMessageToClient(retStr);
       } catch (IOException e) {
         e.printStackTrace();
       }
+      return;
     }
-    assert game != null;
+    game.getLock().lock();
+    try {
+      move(game, move, handler);
+    } finally {
+      game.getLock().unlock();
+    }
+  }
+
+  /**
+   * Makes a move in a game and propagates it to the players.
+   *
+   * @requires the current thread holds the lock of the game
+   */
+  private void move(NetworkGame game, String[] move, CollectoClientHandler handler) {
+    String gameName = game.getName();
+    String retStr = checkMove(game, move);
+    if (retStr != null) {
+      try {
+        handler.sendMessageToClient(ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + retStr);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      return;
+    }
+    retStr = ProtocolMessages.MOVE;
     //view.showMessage(game.getBoard().toString());
 
     String[] corrMove = new String[move.length];
@@ -310,6 +640,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
     }
 
     if (game.isOver()) {
+      view.showMessage("Game [" + gameName + "] is over! (" + moveCache + ")");
       if (game.isDraw()) {
         for (CollectoClientHandler clientHandler : handlers) {
           retStr = ProtocolMessages.GAMEOVER + ProtocolMessages.DELIMITER + "draw";
@@ -341,8 +672,42 @@ public class CollectoServer implements Runnable, ServerProtocol {
 
   }
 
+  /**
+   * Checks the numbers of a move: a single move while the board has one,
+   * a double move otherwise. Looking for single moves updates the cached
+   * moves of the game, so this runs under its lock like the move itself.
+   *
+   * @param game the game the move is made in
+   * @param move the commands of the move
+   * @return the reason the move is invalid, or null if its numbers are valid
+   * @requires the current thread holds the lock of the game
+   */
+  private String checkMove(NetworkGame game, String[] move) {
+    int commands = game.getMove().noPossibleSingleMoves() ? 2 : 1;
+    if (move.length != commands) {
+      try {
+        for (int i = 0; i < commands && i < move.length; i++) {
+          Integer.parseInt(move[i]);
+        }
+      } catch (NumberFormatException e) {
+        return "Invalid number in the command" + String.join(ProtocolMessages.DELIMITER,
+                Arrays.copyOf(move, Math.min(commands, move.length)));
+      }
+    }
+    return null;
+  }
+
   @Override
   public void doQuit(CollectoClientHandler handler, NetworkGame game) {
+    game.getLock().lock();
+    try {
+      quit(handler, game);
+    } finally {
+      game.getLock().unlock();
+    }
+  }
+
+  private void quit(CollectoClientHandler handler, NetworkGame game) {
     if (handler.isJoinedToGame()) {
       handler.quitActiveGame();
       for (CollectoClientHandler a : game.getClientHandlers()) {
@@ -355,7 +720,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
           }
         }
       }
-      games.remove(game.getName());
+      games.remove(game.getName(), game);
     }
   }
 
@@ -390,14 +755,12 @@ public class CollectoServer implements Runnable, ServerProtocol {
   public void doNewGame(String userName, String gameName, int capacity, CollectoClientHandler handler) {
     String retStr = ProtocolMessages.NEWGAME;
 
-    if (games.containsKey(gameName)) {
+    NetworkGame game = games.containsKey(gameName) ? null : new NetworkGame(gameName, capacity, boardPool, moveCache);
+    if (game == null || games.putIfAbsent(gameName, game) != null) {
       retStr = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + " duplicate game name - " + gameName;
       view.showMessage("Duplicate game [" + gameName + "] found when trying to create new game!");
     } else {
-      NetworkGame game = new NetworkGame(gameName, capacity);
-      game.getBoard().initialiseBoard();
-      games.put(gameName, game);
-      view.showMessage("Game [" + gameName + "] created!");
+      view.showMessage("Game [" + gameName + "] created! (" + boardPool + ")");
 
       // Join to the game after the creation
       try {
@@ -426,27 +789,58 @@ public class CollectoServer implements Runnable, ServerProtocol {
    * @param handler  the handler for the user
    */
   @Override
-  public synchronized void doQUEUE(String gameName, CollectoClientHandler handler) {
+  public void doQUEUE(String gameName, CollectoClientHandler handler) {
+    while (true) {
+      NetworkGame game = games.get(gameName);
+      if (game == null) {
+        // Made outside the map: taking a board and logging should not hold up the other games
+        NetworkGame created = new NetworkGame(gameName, 2, boardPool, moveCache);
+        game = games.putIfAbsent(gameName, created);
+        if (game == null) {
+          game = created;
+          view.showMessage("Game [" + gameName + "] created! (" + boardPool + ")");
+        }
+      }
+      game.getLock().lock();
+      try {
+        // A game that was quit meanwhile is no longer on the server; join its successor instead
+        if (games.get(gameName) == game) {
+          queue(game, handler);
+          return;
+        }
+      } finally {
+        game.getLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Joins a user to a game and marks them ready, and starts the game once all players are ready.
+   *
+   * @return false if the user could not join the game
+   * @requires the current thread holds the lock of the game
+   */
+  private boolean queue(NetworkGame game, CollectoClientHandler handler) {
 	String retStr = "";
-    NetworkGame game = games.get(gameName);
-    
-    if(game == null) {
-    	doNewGame(handler.getUsername(), gameName, 2, handler);
-    	game = games.get(gameName);
-    }else {
+    String gameName = game.getName();
+
+    try {
+        game.join(handler.getUsername(), handler);
+        view.showMessage(handler.getUsername() + " joined the game  [" + gameName + "]!");
+    } catch (JoinGameException e) {
+        retStr = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Unable to jon the game after creating it " + e.getMessage();
         try {
-            game.join(handler.getUsername(), handler);
-            view.showMessage(handler.getUsername() + " joined the game  [" + gameName + "]!");
-          } catch (JoinGameException e) {
-            retStr = ProtocolMessages.ERROR + ProtocolMessages.DELIMITER + "Unable to jon the game after creating it " + e.getMessage();
-          }
-    }    
+          handler.sendMessageToClient(retStr);
+        } catch (IOException e1) {
+          e1.printStackTrace();
+        }
+        return false;
+    }
     game.ready(handler.getUsername());
 
     retStr = ProtocolMessages.QUEUE;
 
     //try {
-    view.showMessage("Ready message received from user [" + handler.getUsername() + "]!");
     //handler.sendMessageToClient(retStr);
     // } catch (IOException e) {
     //   e.printStackTrace();
@@ -460,6 +854,82 @@ public class CollectoServer implements Runnable, ServerProtocol {
 
       //doTurn(game.getNextTurnClientHandler().getUsername(), game.getNextTurnClientHandler());
     }
+    return true;
+  }
+
+  /**
+   * Puts a user in the queue of players waiting for a game, or takes them
+   * out if they were already waiting. The matchmaker pairs the waiting
+   * players into new games, see {@link #startMatch}.
+   *
+   * @param handler the handler for the user
+   */
+  @Override
+  public void doQUEUE(CollectoClientHandler handler) {
+    if (matchmaker.enqueue(handler, QUEUE_RATING)) {
+      view.showMessage("User [" + handler.getUsername() + "] is waiting for a game.");
+    } else if (matchmaker.cancel(handler)) {
+      view.showMessage("User [" + handler.getUsername() + "] left the queue.");
+    }
+  }
+
+  /**
+   * Hands a pair made by the matchmaker to the handler executor, which
+   * starts their game, so the pairing thread goes on with the next pair.
+   *
+   * @param first  the handler of the player who queued first
+   * @param second the handler of the other player
+   */
+  private void onMatch(CollectoClientHandler first, CollectoClientHandler second) {
+    try {
+      handlerThreads.execute(() -> startMatch(first, second));
+    } catch (RejectedExecutionException e) {
+      // The server is shutting down
+    }
+  }
+
+  /**
+   * Starts a new game for two players paired by the matchmaker.
+   * A player who disconnected after being paired can no longer leave the
+   * queue, so the game is not started and the other player is put back
+   * in front of the queue to wait for a new opponent.
+   *
+   * @param first  the handler of the player who queued first
+   * @param second the handler of the other player
+   */
+  private void startMatch(CollectoClientHandler first, CollectoClientHandler second) {
+    if (first.isClosed() || second.isClosed()) {
+      requeue(first);
+      requeue(second);
+      return;
+    }
+    String gameName = "match " + nextMatchNo.getAndIncrement();
+    NetworkGame game = new NetworkGame(gameName, 2, boardPool, moveCache);
+    games.put(gameName, game);
+    game.getLock().lock();
+    try {
+      queue(game, first);
+      queue(game, second);
+      // A player who disconnected while joining may have missed the game when quitting
+      for (CollectoClientHandler handler : new CollectoClientHandler[] {first, second}) {
+        if (handler.isClosed()) {
+          quit(handler, game);
+        }
+      }
+    } finally {
+      game.getLock().unlock();
+    }
+  }
+
+  /**
+   * Puts a paired player back in the queue, unless they disconnected.
+   *
+   * @param handler the handler of the player
+   */
+  private void requeue(CollectoClientHandler handler) {
+    if (!handler.isClosed() && matchmaker.requeue(handler, QUEUE_RATING)) {
+      view.showMessage("User [" + handler.getUsername() + "] is waiting for a new opponent.");
+    }
   }
 
   /**
@@ -467,21 +937,30 @@ public class CollectoServer implements Runnable, ServerProtocol {
    *
    * @param handler the handler for the user
    */
-  public synchronized void doStart(CollectoClientHandler handler) {
+  public void doStart(CollectoClientHandler handler) {
+    NetworkGame game = handler.getActiveGame();
+    if (game == null) {
+      return;
+    }
+    game.getLock().lock();
+    try {
+      start(handler, game);
+    } finally {
+      game.getLock().unlock();
+    }
+  }
+
+  private void start(CollectoClientHandler handler, NetworkGame game) {
     String retStr = ProtocolMessages.NEWGAME;
     //Board board = new Board();
-    NetworkGame game = handler.getActiveGame();
-    
+
     String boardString = game.getBoard().getField();
     //String boardString = board.getField();
     try {
-      view.showMessage("Sending start to  user [" + handler.getUsername() + "]!");
 //      handler.sendMessageToClient(retStr + boardString + handler.getUsername());
       handler.sendMessageToClient(retStr + "~" + boardString + "bob~" + "Alice");
 //      handler.sendMessageToClient(boardString);
       view.showMessage("Start sent to user [" + handler.getUsername() + "]!");
-      System.out.println(retStr + "~" + boardString + "bob~" + "Alice");
-      System.out.println(game.getBoard().toString());
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -493,7 +972,7 @@ public class CollectoServer implements Runnable, ServerProtocol {
    * @param userName name of the user to give the turn to
    * @param handler  the handler for the user
    */
-  public synchronized void doTurn(String userName, CollectoClientHandler handler) {
+  public void doTurn(String userName, CollectoClientHandler handler) {
     String retStr = ProtocolMessages.MOVE + ProtocolMessages.DELIMITER;
     retStr += userName;
 
@@ -0,0 +1,402 @@
+package ss.server;
+
+import ss.gamedesign.BitBoard;
+import ss.gamedesign.PackedGame;
+import ss.protocols.ProtocolMessages;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Load test of the server modes: starts a {@link CollectoServer} in this
+ * process, connects many clients to it and lets every client send a command
+ * and wait for the answer a number of times, all clients at once.
+ * <p>
+ * The clients are driven by one thread with a Selector, so the thread and
+ * memory costs that are reported come from the server mode. They are
+ * measured after all clients are connected and idle, against the process
+ * before the server started; the client sockets are part of the memory
+ * in every mode. The results are printed to the error stream, apart from
+ * the log of the server. Example, with the same arguments for each -mode:
+ * <pre>
+ * java -cp target/classes ss.server.LoadTest -mode virtual -clients 10000 -rounds 20 > /dev/null
+ * </pre>
+ * With -login every client logs in first, and -reply makes a command wait
+ * for the first line starting with the given text. So the time to match of
+ * a burst of players is measured by:
+ * <pre>
+ * java -cp target/classes ss.server.LoadTest -clients 10000 -login -command QUEUE -reply NEWGAME -rounds 1 > /dev/null
+ * </pre>
+ * With -play the clients log in, queue and then play their matched games
+ * to the end with random legal moves, and the latency of a move is
+ * measured: from sending it to the MOVE the server sends back to both
+ * players. The server does not keep turns, so one player of every game
+ * makes all its moves and the other only receives them:
+ * <pre>
+ * java -cp target/classes ss.server.LoadTest -mode nio -clients 5000 -play > /dev/null
+ * </pre>
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    /**
+     * Runs the load test. Arguments: -mode platform|virtual|nio, -loops n for
+     * the nio mode, -clients n, -rounds n, -command line, HELLO by default,
+     * -reply text, any line by default, -login, and -play, which replaces
+     * the rounds of commands by games.
+     * @param args the arguments
+     * @throws IOException if the server cannot be started or a client fails
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String mode = "platform";
+        int loops = NioCollectoServer.DEFAULT_EVENT_LOOPS;
+        int clients = 10000;
+        int rounds = 10;
+        String command = "HELLO";
+        String reply = "";
+        boolean login = false;
+        boolean play = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-mode":
+                    mode = args[++i];
+                    break;
+                case "-loops":
+                    loops = Integer.parseInt(args[++i]);
+                    break;
+                case "-clients":
+                    clients = Integer.parseInt(args[++i]);
+                    break;
+                case "-rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "-command":
+                    command = args[++i];
+                    break;
+                case "-reply":
+                    reply = args[++i];
+                    break;
+                case "-login":
+                    login = true;
+                    break;
+                case "-play":
+                    play = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!mode.equals("platform") && !mode.equals("virtual") && !mode.equals("nio")) {
+            throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+
+        long heapBefore = usedHeap();
+        long rssBefore = residentSetSize();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        CollectoServer server = new CollectoServer(mode.equals("nio") ? loops : 0, mode.equals("virtual"));
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), clients);
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.serve(channel);
+            } catch (IOException e) {
+                // The channel was closed at the end of the test
+            }
+        }, "collecto-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        long start = System.nanoTime();
+        SocketChannel[] sockets = new SocketChannel[clients];
+        for (int i = 0; i < clients; i++) {
+            sockets[i] = SocketChannel.open(channel.getLocalAddress());
+            sockets[i].configureBlocking(false);
+        }
+        while (server.getClientCount() < clients) {
+            Thread.sleep(10);
+        }
+        System.err.printf("%s: %d clients connected in %d ms%n", mode, clients,
+                (System.nanoTime() - start) / 1_000_000);
+        System.err.printf("threads %d, heap %.1f MB, resident %.1f MB%n",
+                ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore,
+                (usedHeap() - heapBefore) / 1e6, (residentSetSize() - rssBefore) / 1e6);
+
+        byte[][] commands = new byte[clients][];
+        if (login || play) {
+            // The HELLO answer tells that the login was handled
+            for (int i = 0; i < clients; i++) {
+                commands[i] = ("LOGIN~load" + i + "\nHELLO\n").getBytes(StandardCharsets.UTF_8);
+            }
+            exchange(sockets, commands, 1, "HELLO", null);
+        }
+        if (play) {
+            String[] newGames = new String[clients];
+            Arrays.fill(commands, (ProtocolMessages.QUEUE + "\n").getBytes(StandardCharsets.UTF_8));
+            start = System.nanoTime();
+            report("matches", exchange(sockets, commands, 1, ProtocolMessages.NEWGAME, newGames), start);
+            start = System.nanoTime();
+            report("moves", play(sockets, newGames), start);
+        } else {
+            Arrays.fill(commands, (command + "\n").getBytes(StandardCharsets.UTF_8));
+            start = System.nanoTime();
+            report("commands", exchange(sockets, commands, rounds, reply, null), start);
+        }
+        System.err.println(server.getMatchmaker());
+
+        for (SocketChannel socket : sockets) {
+            socket.close();
+        }
+        server.shutdown();
+    }
+
+    /**
+     * Prints the number of measured exchanges, their rate and their latencies.
+     */
+    private static void report(String what, long[] latencies, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.err.printf("%d %s in %.2f s (%.0f/s), p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", latencies.length,
+                what, seconds, latencies.length / seconds, percentile(latencies, 0.50) / 1e6,
+                percentile(latencies, 0.99) / 1e6, latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+    }
+
+    /**
+     * Lets every client send its command and wait for the answer, rounds times.
+     * An answer is the first line that starts with the reply text, other lines
+     * are skipped; the clients do not wait for each other.
+     * @param answers the last answer of every client is stored here, unless it is null
+     * @return the time from sending the command to the end of its answer, in nanoseconds
+     */
+    private static long[] exchange(SocketChannel[] sockets, byte[][] commands, int rounds, String reply,
+                                   String[] answers) throws IOException {
+        long[] latencies = new long[sockets.length * rounds];
+        int recorded = 0;
+        long[] sentAt = new long[sockets.length];
+        int[] left = new int[sockets.length];
+        StringBuilder[] lines = new StringBuilder[sockets.length];
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i].register(selector, SelectionKey.OP_READ, i);
+                left[i] = rounds;
+                lines[i] = new StringBuilder();
+                sentAt[i] = System.nanoTime();
+                send(sockets[i], commands[i]);
+            }
+            while (recorded < latencies.length) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    int client = (Integer) key.attachment();
+                    buffer.clear();
+                    if (sockets[client].read(buffer) == -1) {
+                        throw new IOException("The server closed client " + client);
+                    }
+                    for (int i = 0; i < buffer.position(); i++) {
+                        if (buffer.get(i) != '\n') {
+                            lines[client].append((char) buffer.get(i));
+                            continue;
+                        }
+                        boolean answer = left[client] > 0 && lines[client].indexOf(reply) == 0;
+                        if (answer && answers != null) {
+                            answers[client] = lines[client].toString();
+                        }
+                        lines[client].setLength(0);
+                        if (answer) {
+                            long now = System.nanoTime();
+                            latencies[recorded++] = now - sentAt[client];
+                            if (--left[client] > 0) {
+                                sentAt[client] = now;
+                                send(sockets[client], commands[client]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return latencies;
+    }
+
+    /**
+     * Plays the games the clients were matched into to their end. Of the two
+     * clients that got the same board, the first makes every move; it keeps
+     * the board itself and picks a random legal move, and waits for the MOVE
+     * of the server before the next one, or stops at an error or the end of
+     * the game. The other client only reads.
+     * @param newGames the NEWGAME message every client got
+     * @return the time from sending a move to receiving its MOVE, in nanoseconds
+     */
+    private static long[] play(SocketChannel[] sockets, String[] newGames) throws IOException {
+        SplittableRandom random = new SplittableRandom(1);
+        Set<String> boards = new HashSet<>();
+        long[][] cells = new long[sockets.length][];
+        for (int i = 0; i < sockets.length; i++) {
+            String[] parts = newGames[i].split(ProtocolMessages.DELIMITER);
+            String board = String.join(ProtocolMessages.DELIMITER, Arrays.copyOfRange(parts, 1, 1 + BitBoard.SIZE));
+            if (boards.add(board)) {
+                cells[i] = BitBoard.newCells();
+                for (int field = 0; field < BitBoard.SIZE; field++) {
+                    BitBoard.set(cells[i], field, Integer.parseInt(parts[1 + field]));
+                }
+            }
+        }
+
+        long[] latencies = new long[1 << 16];
+        int recorded = 0;
+        int errors = 0;
+        int playing = 0;
+        long[] sentAt = new long[sockets.length];
+        StringBuilder[] lines = new StringBuilder[sockets.length];
+        int[] moves = new int[PackedGame.MAX_MOVES];
+        int[] balls = new int[2 * PackedGame.CODES];
+        long[] scratch = BitBoard.newCells();
+        long[] afterFirst = BitBoard.newCells();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 12);
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i].register(selector, SelectionKey.OP_READ, i);
+                lines[i] = new StringBuilder();
+                sentAt[i] = System.nanoTime();
+                if (cells[i] == null) {
+                    continue;
+                }
+                if (sendMove(sockets[i], cells[i], random, moves, balls, scratch, afterFirst)) {
+                    playing++;
+                } else {
+                    // A board can be dealt without a legal move, the game is over at once
+                    cells[i] = null;
+                }
+            }
+            while (playing > 0) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    int client = (Integer) key.attachment();
+                    buffer.clear();
+                    if (sockets[client].read(buffer) == -1) {
+                        throw new IOException("The server closed client " + client);
+                    }
+                    for (int i = 0; i < buffer.position(); i++) {
+                        if (buffer.get(i) != '\n') {
+                            lines[client].append((char) buffer.get(i));
+                            continue;
+                        }
+                        String line = lines[client].toString();
+                        lines[client].setLength(0);
+                        if (line.startsWith(ProtocolMessages.ERROR)) {
+                            errors++;
+                        }
+                        if (cells[client] == null) {
+                            continue;
+                        }
+                        if (line.startsWith(ProtocolMessages.ERROR) || line.startsWith(ProtocolMessages.GAMEOVER)) {
+                            // The server refused the move or ended the game before the board of the client did
+                            cells[client] = null;
+                            playing--;
+                            continue;
+                        }
+                        if (!line.startsWith(ProtocolMessages.MOVE)) {
+                            continue;
+                        }
+                        long now = System.nanoTime();
+                        if (recorded == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, 2 * recorded);
+                        }
+                        latencies[recorded++] = now - sentAt[client];
+                        sentAt[client] = now;
+                        if (!sendMove(sockets[client], cells[client], random, moves, balls, scratch, afterFirst)) {
+                            cells[client] = null;
+                            playing--;
+                        }
+                    }
+                }
+            }
+        }
+        System.err.printf("%d games played, %d errors%n", boards.size(), errors);
+        return Arrays.copyOf(latencies, recorded);
+    }
+
+    /**
+     * Makes a random legal move on the board of a client and sends it.
+     * @return false if the game is over, nothing is sent then
+     */
+    private static boolean sendMove(SocketChannel socket, long[] cells, SplittableRandom random, int[] moves,
+                                    int[] balls, long[] scratch, long[] afterFirst) throws IOException {
+        int count = PackedGame.generate(cells, moves, scratch, afterFirst);
+        if (count == 0) {
+            return false;
+        }
+        int move = moves[random.nextInt(count)];
+        PackedGame.play(cells, move, balls, 0);
+        String command = ProtocolMessages.MOVE + ProtocolMessages.DELIMITER + PackedGame.first(move);
+        if (PackedGame.isDouble(move)) {
+            command += ProtocolMessages.DELIMITER + PackedGame.second(move);
+        }
+        send(socket, (command + "\n").getBytes(StandardCharsets.UTF_8));
+        return true;
+    }
+
+    /**
+     * Writes a short command; the socket buffer of an idle client takes it at once.
+     */
+    private static void send(SocketChannel socket, byte[] command) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(command);
+        while (buffer.hasRemaining()) {
+            socket.write(buffer);
+        }
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the resident memory of the process, including the thread stacks, where the system reports it.
+     * @return the resident set size in bytes, 0 if unknown
+     */
+    private static long residentSetSize() {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return 1024 * Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not a Linux system
+        }
+        return 0;
+    }
+}
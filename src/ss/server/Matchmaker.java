@@ -0,0 +1,349 @@
+package ss.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * The queue of players waiting for a game, paired by a background thread.
+ * <p>
+ * Queueing and leaving the queue never take a lock: a player gets a ticket
+ * in a concurrent map, which makes sure a player waits only once, and the
+ * ticket is added to a lock-free queue. The pairing thread takes the new
+ * tickets in batches and pairs them in the order they arrived. With a
+ * rating band, a player is only paired with a player whose rating differs
+ * at most the band from theirs; the band grows by its own size for every
+ * second a player waits, so nobody waits forever. The pairs are handed to
+ * a callback on the pairing thread, which should not block.
+ * @param <P> the type of the players
+ */
+public class Matchmaker<P> {
+
+    /**
+     * The largest number of tickets the pairing thread takes from the queue at once.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * How long the pairing thread waits before it looks at the waiting
+     * players again when their bands may have grown enough to pair them.
+     */
+    private static final long BAND_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int MATCHED = 2;
+    private static final int CANCELLED = 3;
+
+    /**
+     * A player in the queue.
+     */
+    private static final class Ticket<P> {
+
+        private final P player;
+        private final int rating;
+        private final long queuedAt = System.nanoTime();
+
+        /**
+         * WAITING until the ticket is matched or cancelled; CLAIMED while the pairing thread pairs it.
+         */
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Ticket(P player, int rating) {
+            this.player = player;
+            this.rating = rating;
+        }
+    }
+
+    private final BiConsumer<P, P> onMatch;
+
+    /**
+     * The largest rating difference of a pair, 0 to pair any players.
+     */
+    private final int band;
+
+    private final int batchSize;
+
+    /**
+     * The ticket of every waiting player.
+     */
+    private final ConcurrentHashMap<P, Ticket<P>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * The tickets the pairing thread did not take yet, oldest first.
+     */
+    private final Queue<Ticket<P>> arrivals = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The tickets of players put back in the queue, taken before the arrivals.
+     */
+    private final Queue<Ticket<P>> returns = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The thread pairing the players, null if the matchmaker is not started.
+     */
+    private volatile Thread pairer;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong totalWait = new AtomicLong();
+    private final AtomicLong maxWait = new AtomicLong();
+
+    /**
+     * Creates a matchmaker that pairs any two players, in the order they queue.
+     * @requires onMatch != null
+     * @param onMatch called with the two players of every pair, the first one queued first
+     */
+    public Matchmaker(BiConsumer<P, P> onMatch) {
+        this(onMatch, 0, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a matchmaker that pairs players of about the same rating.
+     * @requires onMatch != null && band >= 0 && batchSize >= 2
+     * @param onMatch called with the two players of every pair
+     * @param band the largest rating difference of a pair at first, 0 to pair any players
+     * @param batchSize the largest number of new players the pairing thread takes from the queue at once
+     */
+    public Matchmaker(BiConsumer<P, P> onMatch, int band, int batchSize) {
+        this.onMatch = onMatch;
+        this.band = band;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts the daemon thread that pairs the players.
+     */
+    public synchronized void start() {
+        if (pairer != null) {
+            return;
+        }
+        pairer = new Thread(this::pair, "matchmaker");
+        pairer.setDaemon(true);
+        pairer.start();
+    }
+
+    /**
+     * Stops the pairing thread. The players stay in the queue.
+     */
+    public synchronized void stop() {
+        if (pairer != null) {
+            pairer.interrupt();
+            pairer = null;
+        }
+    }
+
+    /**
+     * Puts a player at the back of the queue.
+     * @param player the player
+     * @param rating the rating of the player, only used with a band
+     * @return false if the player was already waiting
+     */
+    public boolean enqueue(P player, int rating) {
+        Ticket<P> ticket = new Ticket<>(player, rating);
+        if (waiting.putIfAbsent(player, ticket) != null) {
+            return false;
+        }
+        depth.incrementAndGet();
+        queued.incrementAndGet();
+        arrivals.add(ticket);
+        LockSupport.unpark(pairer);
+        return true;
+    }
+
+    /**
+     * Puts a player who was paired back in the queue, for example because
+     * their opponent left before the game started. The player is paired
+     * before the players who are waiting, as far as their ratings allow.
+     * @param player the player
+     * @param rating the rating the player queued with
+     * @return false if the player was already waiting
+     */
+    public boolean requeue(P player, int rating) {
+        Ticket<P> ticket = new Ticket<>(player, rating);
+        if (waiting.putIfAbsent(player, ticket) != null) {
+            return false;
+        }
+        depth.incrementAndGet();
+        returns.add(ticket);
+        LockSupport.unpark(pairer);
+        return true;
+    }
+
+    /**
+     * Takes a player out of the queue.
+     * @param player the player
+     * @return true if the player was waiting, false if they were not or were just paired
+     */
+    public boolean cancel(P player) {
+        Ticket<P> ticket = waiting.get(player);
+        if (ticket == null) {
+            return false;
+        }
+        while (!ticket.state.compareAndSet(WAITING, CANCELLED)) {
+            if (ticket.state.get() != CLAIMED) {
+                return false;
+            }
+            // The pairing thread decides in a moment
+            Thread.onSpinWait();
+        }
+        waiting.remove(player, ticket);
+        depth.decrementAndGet();
+        cancelled.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Checks if a player is waiting in the queue.
+     * @param player the player
+     * @return true if the player is waiting
+     */
+    public boolean isWaiting(P player) {
+        return waiting.containsKey(player);
+    }
+
+    /**
+     * Pairs the players until the thread is interrupted.
+     */
+    private void pair() {
+        List<Ticket<P>> pending = new ArrayList<>();
+        Comparator<Ticket<P>> byRating = Comparator.comparingInt(ticket -> ticket.rating);
+        while (!Thread.currentThread().isInterrupted()) {
+            int returned = 0;
+            for (Ticket<P> ticket = returns.poll(); ticket != null; ticket = returns.poll()) {
+                pending.add(returned++, ticket);
+            }
+            for (int taken = 0; taken < batchSize; taken++) {
+                Ticket<P> ticket = arrivals.poll();
+                if (ticket == null) {
+                    break;
+                }
+                pending.add(ticket);
+            }
+            pending.removeIf(ticket -> ticket.state.get() != WAITING);
+            if (band > 0) {
+                pending.sort(byRating);
+            }
+            int kept = 0;
+            long now = System.nanoTime();
+            for (int i = 0; i < pending.size(); i++) {
+                Ticket<P> first = pending.get(i);
+                if (i + 1 < pending.size() && fits(first, pending.get(i + 1), now)
+                        && match(first, pending.get(i + 1), now)) {
+                    i++;
+                } else {
+                    pending.set(kept++, first);
+                }
+            }
+            pending.subList(kept, pending.size()).clear();
+            if (arrivals.isEmpty() && returns.isEmpty()) {
+                if (band > 0 && pending.size() > 1) {
+                    LockSupport.parkNanos(this, BAND_RECHECK_NANOS);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the ratings of two players are close enough, widening the band with the wait of the longest waiting one.
+     */
+    private boolean fits(Ticket<P> first, Ticket<P> second, long now) {
+        if (band == 0) {
+            return true;
+        }
+        long waited = now - Math.min(first.queuedAt, second.queuedAt);
+        long allowed = band * (1 + waited / TimeUnit.SECONDS.toNanos(1));
+        return Math.abs((long) first.rating - second.rating) <= allowed;
+    }
+
+    /**
+     * Pairs two players unless one of them left the queue.
+     * @return true if the pair was made
+     */
+    private boolean match(Ticket<P> first, Ticket<P> second, long now) {
+        if (!first.state.compareAndSet(WAITING, CLAIMED)) {
+            return false;
+        }
+        if (!second.state.compareAndSet(WAITING, MATCHED)) {
+            first.state.set(WAITING);
+            return false;
+        }
+        first.state.set(MATCHED);
+        waiting.remove(first.player, first);
+        waiting.remove(second.player, second);
+        depth.addAndGet(-2);
+        matches.incrementAndGet();
+        for (Ticket<P> ticket : List.of(first, second)) {
+            long wait = now - ticket.queuedAt;
+            totalWait.addAndGet(wait);
+            maxWait.accumulateAndGet(wait, Math::max);
+        }
+        if (first.queuedAt <= second.queuedAt) {
+            onMatch.accept(first.player, second.player);
+        } else {
+            onMatch.accept(second.player, first.player);
+        }
+        return true;
+    }
+
+    // -- Metrics -----------------------------------------------------------
+
+    /**
+     * Returns the number of players waiting.
+     * @return the depth of the queue
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getMatches() {
+        return matches.get();
+    }
+
+    public long getCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Returns the average time the paired players waited for their game.
+     * @return the mean time to match in milliseconds, 0 before the first match
+     */
+    public double getMeanTimeToMatch() {
+        long paired = 2 * matches.get();
+        return paired == 0 ? 0 : totalWait.get() / 1e6 / paired;
+    }
+
+    /**
+     * Returns the longest time a paired player waited for their game.
+     * @return the longest time to match in milliseconds
+     */
+    public double getMaxTimeToMatch() {
+        return maxWait.get() / 1e6;
+    }
+
+    /**
+     * Describes the state of the queue.
+     * @return a one line summary of the metrics
+     */
+    @Override
+    public String toString() {
+        return String.format("matchmaking queue %d, queued %d, matches %d, cancelled %d, time to match %.1f ms (max %.1f ms)",
+                getQueueDepth(), getQueued(), getMatches(), getCancelled(), getMeanTimeToMatch(), getMaxTimeToMatch());
+    }
+}
@@ -0,0 +1,574 @@
+package ss.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking transport of a {@link CollectoServer}: a few event-loop
+ * threads serve all connections instead of one thread per client.
+ * <p>
+ * An acceptor hands every new connection to the next event loop, which
+ * owns it from then on. A loop waits on its Selector for connections that
+ * can be read or written. The bytes a client sends are collected in a small
+ * read buffer of the connection and cut into lines; every complete line is
+ * handed to a worker executor, which lets the connection's
+ * {@link CollectoClientHandler} handle the lines of a connection one at a
+ * time, in the order they arrived. So the commands are dispatched through
+ * the {@link ss.protocols.ServerProtocol} methods of the server as in the
+ * blocking mode, and a command waiting for the lock of a busy game holds up
+ * a worker, never a loop and the other connections on it. A client whose
+ * commands pile up is not read until the worker catches up, which bounds
+ * them. Messages to a client, sent by any
+ * thread, are written to the socket right away as far as it accepts them;
+ * the rest waits in the connection's write queue until the loop sees that
+ * the socket can take more. Meanwhile the next messages wait in the
+ * {@link Outbox} of the handler, which bounds them. An idle connection
+ * costs a registered key and a few hundred bytes, not a thread.
+ */
+public class NioCollectoServer implements Runnable {
+
+    /**
+     * The number of event loops when none is given: one for every processor.
+     */
+    public static final int DEFAULT_EVENT_LOOPS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The initial size of the read buffer of a connection, in bytes.
+     */
+    private static final int READ_BUFFER_SIZE = 256;
+
+    /**
+     * The longest line a client may send, in bytes; longer lines close the connection.
+     */
+    private static final int MAX_LINE_LENGTH = 1 << 13;
+
+    /**
+     * The number of commands of a connection that may wait for a worker; the
+     * loop stops reading from a client that is this far ahead, like a blocked
+     * handler thread stops reading in the thread-per-client modes.
+     */
+    private static final int MAX_PENDING_COMMANDS = 32;
+
+    /**
+     * The server the commands are dispatched to.
+     */
+    private final CollectoServer server;
+
+    /**
+     * The channel the connections are accepted on, in blocking mode.
+     */
+    private final ServerSocketChannel channel;
+
+    private final EventLoop[] loops;
+
+    /**
+     * Runs the commands of the clients, so the event loops never wait for a game.
+     */
+    private final Executor workers;
+
+    /**
+     * The number of open connections.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * Creates the transport and starts its event loops.
+     * @requires server != null && channel is bound && eventLoops > 0 && workers != null
+     * @param server the server the commands are dispatched to
+     * @param channel the bound channel to accept connections on
+     * @param eventLoops the number of event-loop threads
+     * @param workers runs the commands of the clients
+     * @throws IOException if a selector cannot be opened
+     */
+    public NioCollectoServer(CollectoServer server, ServerSocketChannel channel, int eventLoops, Executor workers)
+            throws IOException {
+        this.server = server;
+        this.channel = channel;
+        this.workers = workers;
+        loops = new EventLoop[eventLoops];
+        for (int i = 0; i < eventLoops; i++) {
+            loops[i] = new EventLoop(Selector.open());
+            Thread thread = new Thread(loops[i], "collecto-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Accepts connections until the channel is closed, handing them to the event loops in turn.
+     */
+    @Override
+    public void run() {
+        int next = 0;
+        while (true) {
+            SocketChannel client;
+            try {
+                client = channel.accept();
+                client.configureBlocking(false);
+                client.socket().setTcpNoDelay(true);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.out.println("A server IO error occurred: " + e.getMessage());
+                continue;
+            }
+            loops[next].register(client, server.nextClientName());
+            next = (next + 1) % loops.length;
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes all connections.
+     */
+    public void shutdown() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (EventLoop loop : loops) {
+            loop.close();
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    public int getEventLoopCount() {
+        return loops.length;
+    }
+
+    /**
+     * A thread serving the connections registered with its selector.
+     */
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+
+        /**
+         * Work handed to the loop by other threads, run before the next select.
+         */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        private volatile Thread thread;
+
+        private EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            while (selector.isOpen()) {
+                try {
+                    selector.select();
+                    for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("A server IO error occurred: " + e.getMessage());
+                } catch (ClosedSelectorException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Hands a new connection to this loop.
+         */
+        private void register(SocketChannel client, String name) {
+            execute(() -> {
+                Connection connection = new Connection(client, this);
+                try {
+                    connection.key = client.register(selector, SelectionKey.OP_READ, connection);
+                } catch (ClosedChannelException e) {
+                    return;
+                }
+                connection.handler = new CollectoClientHandler(connection, connection::isDrained, server, name);
+                connections.incrementAndGet();
+                server.addClient(connection.handler);
+            });
+        }
+
+        /**
+         * Runs a task on this loop: right away on the loop thread, before the next select otherwise.
+         */
+        private void execute(Runnable task) {
+            if (Thread.currentThread() == thread) {
+                task.run();
+            } else {
+                tasks.add(task);
+                selector.wakeup();
+            }
+        }
+
+        private void close() {
+            execute(() -> {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).disconnect();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+    }
+
+    /**
+     * A client connection: its read buffer and, as the Writer its handler
+     * writes to, its write queue.
+     */
+    private final class Connection extends Writer {
+
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private SelectionKey key;
+        private CollectoClientHandler handler;
+
+        /**
+         * The bytes received and not yet handled, in write mode.
+         */
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+        /**
+         * The text written by the handler since the last flush.
+         */
+        private final StringBuilder pending = new StringBuilder();
+
+        /**
+         * The encoded messages that the socket did not take yet, oldest first.
+         */
+        private final Queue<ByteBuffer> queue = new ArrayDeque<>();
+
+        /**
+         * Set while the loop watches the socket for room to write the queue.
+         */
+        private boolean waiting;
+
+        /**
+         * The commands of the client that were not handled yet, oldest first.
+         */
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The number of commands queued or being handled.
+         */
+        private final AtomicInteger pendingCommands = new AtomicInteger();
+
+        /**
+         * Set while a worker handles the commands.
+         */
+        private final AtomicBoolean handling = new AtomicBoolean();
+
+        /**
+         * Set while the loop does not read because too many commands are pending. Used by the loop thread.
+         */
+        private boolean paused;
+
+        /**
+         * Set while the loop watches the socket for room to write. Used by the loop thread.
+         */
+        private boolean writeInterest;
+
+        /**
+         * Set once the connection is closed; read by the loop and the workers.
+         */
+        private volatile boolean closed;
+
+        private Connection(SocketChannel channel, EventLoop loop) {
+            this.channel = channel;
+            this.loop = loop;
+        }
+
+        /**
+         * Reads what the client sent and dispatches every complete line, until
+         * the socket has nothing more or too many commands are pending. Called by the loop thread.
+         */
+        private void read() {
+            try {
+                int read;
+                do {
+                    read = channel.read(in);
+                    handleLines();
+                    if (paused) {
+                        // The rest stays in the buffer and the socket until the worker catches up
+                        return;
+                    }
+                    if (!in.hasRemaining()) {
+                        if (in.capacity() >= MAX_LINE_LENGTH) {
+                            System.out.println("> Line too long, closing the connection.");
+                            end();
+                            return;
+                        }
+                        ByteBuffer larger = ByteBuffer.allocate(2 * in.capacity());
+                        in.flip();
+                        in = larger.put(in);
+                    }
+                } while (read > 0);
+                if (read == -1) {
+                    end();
+                }
+            } catch (IOException e) {
+                end();
+            }
+        }
+
+        /**
+         * Stops reading from the client while its commands are pending. Called by the loop thread.
+         */
+        private void pause() {
+            paused = true;
+            updateInterest();
+        }
+
+        /**
+         * Reads from the client again once the worker caught up: first the
+         * lines left in the buffer, then the socket. Called by the loop thread.
+         */
+        private void resume() {
+            if (!paused || !key.isValid()) {
+                return;
+            }
+            paused = false;
+            updateInterest();
+            read();
+        }
+
+        /**
+         * Stops reading and lets a worker shut the handler down after the
+         * commands that were read before. Called by the loop thread.
+         */
+        private void end() {
+            key.cancel();
+            dispatch(handler::shutdown);
+        }
+
+        /**
+         * Queues a command of the client for the workers.
+         */
+        private void dispatch(Runnable command) {
+            commands.add(command);
+            if (pendingCommands.incrementAndGet() >= MAX_PENDING_COMMANDS && !paused) {
+                pause();
+            }
+            if (handling.compareAndSet(false, true)) {
+                try {
+                    workers.execute(this::handleCommands);
+                } catch (RejectedExecutionException e) {
+                    // The server is shutting down and closes the connection itself
+                    handling.set(false);
+                }
+            }
+        }
+
+        /**
+         * Runs the queued commands in order. Called by a worker, one at a time per connection.
+         */
+        private void handleCommands() {
+            do {
+                try {
+                    for (Runnable command = commands.poll(); command != null; command = commands.poll()) {
+                        if (!closed) {
+                            run(command);
+                        }
+                        if (pendingCommands.decrementAndGet() == MAX_PENDING_COMMANDS / 2) {
+                            loop.execute(this::resume);
+                        }
+                    }
+                } finally {
+                    handling.set(false);
+                }
+                // A command queued after the last poll would otherwise wait for the next one
+            } while (!commands.isEmpty() && handling.compareAndSet(false, true));
+        }
+
+        /**
+         * Runs a command; a command that fails closes the connection, as it
+         * ends the handler thread in the thread-per-client modes.
+         */
+        private void run(Runnable command) {
+            try {
+                command.run();
+            } catch (RuntimeException e) {
+                System.out.println("> Command failed, closing the connection: " + e);
+                handler.shutdown();
+            }
+        }
+
+        private void handleLine(String line) {
+            try {
+                handler.handleLine(line);
+            } catch (IOException e) {
+                handler.shutdown();
+            }
+        }
+
+        /**
+         * Continues writing the queue once the socket takes more, and lets the
+         * handler's outbox send its next batch once the queue is written. Called by the loop thread.
+         */
+        private void write() {
+            try {
+                if (writeQueued()) {
+                    handler.getOutbox().resume();
+                }
+            } catch (IOException e) {
+                handler.shutdown();
+            }
+        }
+
+        /**
+         * Checks if everything flushed so far was written to the socket.
+         * @return true if the write queue is empty
+         */
+        private synchronized boolean isDrained() {
+            return queue.isEmpty();
+        }
+
+        /**
+         * Dispatches the complete lines in the read buffer and keeps the rest.
+         * Lines end with a line feed, a carriage return before it is dropped.
+         */
+        private void handleLines() {
+            in.flip();
+            int start = 0;
+            for (int i = 0; i < in.limit() && !closed && !paused; i++) {
+                if (in.get(i) == '\n') {
+                    int end = i > start && in.get(i - 1) == '\r' ? i - 1 : i;
+                    String line = new String(in.array(), start, end - start, StandardCharsets.UTF_8);
+                    start = i + 1;
+                    dispatch(() -> handleLine(line));
+                }
+            }
+            in.position(start);
+            in.compact();
+        }
+
+        @Override
+        public synchronized void write(char[] chars, int offset, int length) {
+            pending.append(chars, offset, length);
+        }
+
+        /**
+         * Sends the text written since the last flush.
+         */
+        @Override
+        public synchronized void flush() throws IOException {
+            if (pending.length() == 0 || closed) {
+                return;
+            }
+            queue.add(StandardCharsets.UTF_8.encode(CharBuffer.wrap(pending)));
+            pending.setLength(0);
+            if (queue.size() == 1) {
+                writeQueued();
+            }
+        }
+
+        /**
+         * Writes the queued messages as far as the socket takes them and asks
+         * the loop to continue once it can take more.
+         * @return true if the queue was written completely
+         */
+        private synchronized boolean writeQueued() throws IOException {
+            if (closed) {
+                return false;
+            }
+            while (!queue.isEmpty()) {
+                ByteBuffer head = queue.peek();
+                channel.write(head);
+                if (head.hasRemaining()) {
+                    if (!waiting) {
+                        waiting = true;
+                        loop.execute(() -> setWriteInterest(true));
+                    }
+                    return false;
+                }
+                queue.poll();
+            }
+            if (waiting) {
+                waiting = false;
+                loop.execute(() -> setWriteInterest(false));
+            }
+            return true;
+        }
+
+        private void setWriteInterest(boolean write) {
+            writeInterest = write;
+            updateInterest();
+        }
+
+        /**
+         * Watches the socket for what the connection waits for. Called by the loop thread.
+         */
+        private void updateInterest() {
+            if (key.isValid()) {
+                int ops = (paused ? 0 : SelectionKey.OP_READ) | (writeInterest ? SelectionKey.OP_WRITE : 0);
+                if (key.interestOps() != ops) {
+                    key.interestOps(ops);
+                }
+            }
+        }
+
+        /**
+         * Closes the connection; called by the handler when it shuts down.
+         */
+        @Override
+        public void close() {
+            try {
+                flush();
+            } catch (IOException e) {
+                // The client is gone, there is nobody to send the rest to
+            }
+            disconnect();
+        }
+
+        private synchronized void disconnect() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            connections.decrementAndGet();
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package ss.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The messages waiting to be sent to one client.
+ * <p>
+ * Sending a message only queues it, so a thread handling a game never waits
+ * for a client. One writing task at a time, run by an executor, takes all
+ * queued messages, writes them and flushes once per batch. The queue is
+ * bounded by the number of characters waiting: a message reserves its room
+ * before it is queued, so senders on different threads never exceed the
+ * bound together, and a message that does not fit is handled by the
+ * {@link SlowConsumerPolicy}. Closing the connection is handed to an
+ * executor as well, because it quits the game of the client.
+ * <p>
+ * For a writer that does not block, such as a connection of a
+ * {@link NioCollectoServer}, the writing task can run on the sending thread.
+ * It then stops while the writer reports that the socket is still busy with
+ * the previous batch, and {@link #resume()} continues once it is done, so
+ * the waiting messages stay here, where they are counted.
+ */
+public class Outbox {
+
+    /**
+     * The default number of characters that may wait for a client.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final String LINE_END = System.lineSeparator();
+
+    private final Writer out;
+    private final Executor executor;
+
+    /**
+     * Runs the disconnect, off the sending thread.
+     */
+    private final Executor closer;
+    private final BooleanSupplier writable;
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+
+    /**
+     * Closes the connection, for the DISCONNECT policy and failed writes.
+     */
+    private final Runnable disconnect;
+
+    private final Queue<String> messages = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The characters of the queued messages and of the batch being written.
+     */
+    private final AtomicInteger waitingChars = new AtomicInteger();
+
+    /**
+     * Set while a writing task is scheduled or running.
+     */
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates an outbox whose executor also runs the disconnect.
+     * @requires all arguments != null && capacity > 0
+     * @param out the writer of the connection
+     * @param executor runs the writing tasks and the disconnect
+     * @param writable tells whether out can take the next batch
+     * @param capacity the number of characters that may wait
+     * @param policy what to do with a message that does not fit
+     * @param disconnect closes the connection
+     */
+    public Outbox(Writer out, Executor executor, BooleanSupplier writable, int capacity,
+                  SlowConsumerPolicy policy, Runnable disconnect) {
+        this(out, executor, executor, writable, capacity, policy, disconnect);
+    }
+
+    /**
+     * Creates an outbox.
+     * @requires all arguments != null && capacity > 0
+     * @param out the writer of the connection
+     * @param executor runs the writing tasks
+     * @param closer runs the disconnect
+     * @param writable tells whether out can take the next batch
+     * @param capacity the number of characters that may wait
+     * @param policy what to do with a message that does not fit
+     * @param disconnect closes the connection
+     */
+    public Outbox(Writer out, Executor executor, Executor closer, BooleanSupplier writable, int capacity,
+                  SlowConsumerPolicy policy, Runnable disconnect) {
+        this.out = out;
+        this.executor = executor;
+        this.closer = closer;
+        this.writable = writable;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.disconnect = disconnect;
+    }
+
+    /**
+     * Queues a message as a line for the client. Never waits for the client.
+     * @param message the message, without its line end
+     */
+    public void send(String message) {
+        if (closed) {
+            return;
+        }
+        int length = message.length() + LINE_END.length();
+        if (!reserve(length)) {
+            switch (policy) {
+                case DROP:
+                    dropped.incrementAndGet();
+                    return;
+                case DISCONNECT:
+                    dropped.incrementAndGet();
+                    close();
+                    disconnect();
+                    return;
+                case DEGRADE:
+                    if (!makeRoom(length)) {
+                        dropped.incrementAndGet();
+                        return;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown policy " + policy);
+            }
+        }
+        messages.add(message);
+        if (closed) {
+            // Closed after the check above; nobody writes the message any more
+            discard();
+            return;
+        }
+        schedule();
+    }
+
+    /**
+     * Reserves room for a message, if it fits.
+     * @return true if the characters were added to the waiting ones
+     */
+    private boolean reserve(int length) {
+        while (true) {
+            int waiting = waitingChars.get();
+            if (waiting + length > capacity) {
+                return false;
+            }
+            if (waitingChars.compareAndSet(waiting, waiting + length)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Discards the oldest queued messages until room for a message of the given length is reserved.
+     * @return false if the message does not fit even without the queued messages
+     */
+    private boolean makeRoom(int length) {
+        while (!reserve(length)) {
+            String oldest = messages.poll();
+            if (oldest == null) {
+                return false;
+            }
+            waitingChars.addAndGet(-(oldest.length() + LINE_END.length()));
+            dropped.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Continues writing once the writer can take the next batch.
+     */
+    public void resume() {
+        schedule();
+    }
+
+    /**
+     * Stops sending; the waiting messages are discarded.
+     */
+    public void close() {
+        closed = true;
+        discard();
+    }
+
+    private void discard() {
+        for (String message = messages.poll(); message != null; message = messages.poll()) {
+            waitingChars.addAndGet(-(message.length() + LINE_END.length()));
+        }
+    }
+
+    /**
+     * Lets the closer run the disconnect, so the sending or writing thread does not wait for it.
+     */
+    private void disconnect() {
+        try {
+            closer.execute(disconnect);
+        } catch (RejectedExecutionException e) {
+            // The server is shutting down and closes the connection itself
+        }
+    }
+
+    private void schedule() {
+        if (!messages.isEmpty() && writing.compareAndSet(false, true)) {
+            executor.execute(this::write);
+        }
+    }
+
+    /**
+     * Writes batches of all queued messages while the writer takes them.
+     */
+    private void write() {
+        int chars = 0;
+        try {
+            while (!closed && !messages.isEmpty() && writable.getAsBoolean()) {
+                chars = 0;
+                int count = 0;
+                for (String message = messages.poll(); message != null; message = messages.poll()) {
+                    out.write(message);
+                    out.write(LINE_END);
+                    chars += message.length() + LINE_END.length();
+                    count++;
+                }
+                out.flush();
+                waitingChars.addAndGet(-chars);
+                chars = 0;
+                sent.addAndGet(count);
+                batches.incrementAndGet();
+            }
+        } catch (IOException e) {
+            waitingChars.addAndGet(-chars);
+            close();
+            disconnect();
+        } finally {
+            writing.set(false);
+        }
+        // A message queued or the writer freed after the last check would otherwise wait for the next send
+        if (!closed && writable.getAsBoolean()) {
+            schedule();
+        }
+    }
+
+    // -- Metrics -----------------------------------------------------------
+
+    /**
+     * Returns the number of characters waiting to be sent.
+     * @return the characters queued or being written
+     */
+    public int getWaitingChars() {
+        return waitingChars.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public SlowConsumerPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * Returns the number of flushed batches; fewer than the sent messages when writes were coalesced.
+     * @return the number of batches
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Describes the state of the outbox.
+     * @return a one line summary of the metrics
+     */
+    @Override
+    public String toString() {
+        return String.format("outbox %d/%d chars, sent %d in %d batches, dropped %d (%s)",
+                getWaitingChars(), getCapacity(), getSent(), getBatches(), getDropped(), getPolicy());
+    }
+}
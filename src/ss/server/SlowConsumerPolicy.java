@@ -0,0 +1,24 @@
+package ss.server;
+
+/**
+ * What the server does with a message to a client whose {@link Outbox} is
+ * full because the client reads slower than the server sends.
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * Discard the new message; the client misses it.
+     */
+    DROP,
+
+    /**
+     * Close the connection to the client, which ends its game as a disconnect.
+     */
+    DISCONNECT,
+
+    /**
+     * Discard the oldest waiting messages until the new one fits; the client
+     * misses older messages but keeps receiving the newest.
+     */
+    DEGRADE
+}
@@ -0,0 +1,90 @@
+package ss.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.BitBoard;
+import ss.gamedesign.Board;
+import ss.gamedesign.Colour;
+import ss.gamedesign.Move;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class BitBoardTest {
+
+    private long[] cells;
+
+    @BeforeEach
+    public void setUp() {
+        cells = BitBoard.newCells();
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        for (Colour colour : Colour.values()) {
+            assertEquals(colour, BitBoard.decode(BitBoard.encode(colour)));
+        }
+        assertEquals(0, BitBoard.encode(Colour.EMPTY));
+        assertEquals(1, BitBoard.encode(Colour.BLUE));
+        assertEquals(6, BitBoard.encode(Colour.GREEN));
+    }
+
+    @Test
+    public void testSetDoesNotTouchOtherFields() {
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            BitBoard.set(cells, i, i % 7);
+        }
+        BitBoard.set(cells, 20, 6);
+        BitBoard.set(cells, 21, 5);
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            int expected = i == 20 ? 6 : i == 21 ? 5 : i % 7;
+            assertEquals(expected, BitBoard.get(cells, i));
+        }
+    }
+
+    @Test
+    public void testBoardFieldsWriteThrough() {
+        Board board = new Board();
+        board.getField(3, 5).getBall().setColour(Colour.PURPLE);
+        assertEquals(Colour.PURPLE, board.getColour(26));
+        assertSame(board.getField(26), board.getField(3, 5));
+
+        board.setField(Colour.YELLOW, 26);
+        assertEquals(Colour.YELLOW, board.getField(26).getBall().getColour());
+        assertEquals(2, board.getField(26).getBall().getColourInt());
+        assertEquals("2~", board.getField().substring(52, 54));
+    }
+
+    @Test
+    public void testRemovePairsMatchesMove() {
+        Random random = new Random(21);
+        for (int game = 0; game < 500; game++) {
+            Board board = new Board();
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                int code = random.nextInt(4);
+                BitBoard.set(cells, i, code);
+                board.setField(BitBoard.decode(code), i);
+            }
+            Move move = new Move(board);
+            move.fillArrayList();
+            int expectedCount = move.getSameNeighboursArrayList().size();
+            move.removeSameBalls();
+
+            int[] removed = new int[14];
+            assertEquals(expectedCount, BitBoard.removePairs(cells, removed, 7));
+            int total = 0;
+            for (int code = 1; code <= 6; code++) {
+                total += removed[7 + code];
+            }
+            assertEquals(expectedCount, total);
+            assertEquals(0, removed[7]);
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                assertEquals(BitBoard.encode(board.getColour(i)), BitBoard.get(cells, i), "field " + i);
+            }
+            assertFalse(BitBoard.hasPairs(cells));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.Board;
+import ss.gamedesign.BoardGenerator;
+import ss.gamedesign.Colour;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardGeneratorTest {
+
+    private static final int DIM = 7;
+
+    @Test
+    void generatedBoardsAreValidTest() {
+        SplittableRandom random = new SplittableRandom(7);
+        Board board = new Board(random);
+        for (int game = 0; game < 2000; game++) {
+            board.initialiseBoard(random);
+            int[] count = new int[Colour.values().length];
+            for (int i = 0; i < DIM * DIM; i++) {
+                count[board.getColour(i).ordinal()]++;
+                if (!board.isEmptyField(i)) {
+                    assertFalse(board.hasSameNeighbours(i), "field " + i + " of\n" + board);
+                }
+            }
+            for (Colour colour : Colour.values()) {
+                assertEquals(colour == Colour.EMPTY ? 1 : BoardGenerator.BALLS_PER_COLOUR, count[colour.ordinal()]);
+            }
+            assertTrue(board.isEmptyField(BoardGenerator.CENTRE));
+        }
+    }
+
+    @Test
+    void sameSeedGivesSameBoardTest() {
+        Board first = new Board(new SplittableRandom(2021));
+        Board second = new Board(new SplittableRandom(2021));
+        Board other = new Board(new SplittableRandom(2022));
+        assertEquals(first.getField(), second.getField());
+        assertNotEquals(first.getField(), other.getField());
+    }
+
+    @Test
+    void countersAreZeroAfterGenerationTest() {
+        Board board = new Board();
+        assertEquals(0, board.getBlueCounter());
+        assertEquals(0, board.getGreenCounter());
+    }
+}
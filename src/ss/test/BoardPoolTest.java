@@ -0,0 +1,78 @@
+package ss.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.Board;
+import ss.gamedesign.BoardPool;
+import ss.gamedesign.NetworkGame;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardPoolTest {
+
+    private BoardPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new BoardPool(8, new SplittableRandom(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.stop();
+    }
+
+    /**
+     * Waits until the filling thread filled the pool.
+     */
+    private void awaitFull() throws InterruptedException {
+        for (int i = 0; i < 500 && pool.getSize() < pool.getCapacity(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void emptyPoolGeneratesBoardTest() {
+        Board board = pool.takeBoard();
+        assertNotNull(board);
+        assertEquals(1, pool.getTaken());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getRefillRate());
+    }
+
+    @Test
+    void startedPoolIsFilledTest() throws InterruptedException {
+        pool.start();
+        awaitFull();
+        assertEquals(8, pool.getSize());
+
+        Board first = pool.takeBoard();
+        Board second = pool.takeBoard();
+        assertNotEquals(first.getField(), second.getField());
+        assertEquals(0, pool.getMisses());
+        assertEquals(2, pool.getTaken());
+        for (int i = 0; i < 49; i++) {
+            if (!first.isEmptyField(i)) {
+                assertFalse(first.hasSameNeighbours(i));
+            }
+        }
+
+        awaitFull();
+        assertEquals(10, pool.getGenerated());
+        assertTrue(pool.getRefillRate() > 0);
+    }
+
+    @Test
+    void networkGameUsesPoolTest() throws InterruptedException {
+        pool.start();
+        awaitFull();
+        NetworkGame game = new NetworkGame("pooled", 2, pool);
+        assertNotNull(game.getBoard());
+        assertFalse(game.isOver());
+        assertEquals(1, pool.getTaken());
+        assertEquals(0, pool.getMisses());
+    }
+}
@@ -51,6 +51,26 @@ public class BoardTest {
     }
 
 
+    @Test
+    public void testGetNeighboursIndexReturnsCopy() {
+        board.getNeighboursIndex(0)[1] = 48;
+        assertArrayEquals(new int[]{-1, 1, -1, 7}, board.getNeighboursIndex(0));
+        assertArrayEquals(new int[]{47, -1, 41, -1}, board.getNeighboursIndex(6, 6));
+        assertArrayEquals(new int[]{-1, -1, -1, -1}, board.getNeighboursIndex(7, 0));
+    }
+
+    @Test
+    public void testGetNeighbour() {
+        for (int i = 0; i < DIM * DIM; i++) {
+            int[] neighbours = board.getNeighboursIndex(i);
+            for (int direction = 0; direction < Board.NEIGHBOURS; direction++) {
+                assertEquals(neighbours[direction], Board.getNeighbour(i, direction));
+            }
+        }
+        assertEquals(25, Board.getNeighbour(26, Board.LEFT));
+        assertEquals(-1, Board.getNeighbour(48, Board.DOWN));
+    }
+
     @Test
   //java.lang.NullPointerException
     public void testBoardIsReady() {
@@ -157,8 +177,13 @@ public class BoardTest {
     public void testDeepCopy() {
         Board newBoard = board.deepCopy();
         for (int i = 0; i < DIM * DIM; i++) {
-            assertEquals(newBoard.getField(i), board.getField(i));
+            assertEquals(board.getField(i).getIndex(), newBoard.getField(i).getIndex());
+            assertEquals(board.getField(i).getBall().getColour(), newBoard.getField(i).getBall().getColour());
         }
+
+        Colour colour = board.getColour(26);
+        newBoard.setField(Colour.EMPTY, 26);
+        assertEquals(colour, board.getColour(26));
     }
 
     @Test
@@ -0,0 +1,274 @@
+package ss.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.NetworkGame;
+import ss.server.CollectoClientHandler;
+import ss.server.CollectoServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollectoServerTest {
+
+    private CollectoServer server;
+
+    private ServerSocketChannel channel;
+
+    /**
+     * Starts a server on a free port of the loopback address.
+     */
+    private void start(int eventLoops, boolean virtualThreads) throws IOException {
+        server = new CollectoServer(eventLoops, virtualThreads);
+        channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread acceptor = new Thread(() -> {
+            try {
+                server.serve(channel);
+            } catch (IOException e) {
+                // Closed by the shutdown
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Creates handlers on the server side of connected socket pairs, without
+     * starting them, so the test can call the server for them directly.
+     * @return the client sockets, the handler of sockets[i] is handlers[i]
+     */
+    private List<Socket> connectHandlers(CollectoClientHandler[] handlers) throws IOException {
+        List<Socket> sockets = new ArrayList<>();
+        try (ServerSocket listener = new ServerSocket(0, handlers.length, InetAddress.getLoopbackAddress())) {
+            for (int i = 0; i < handlers.length; i++) {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), listener.getLocalPort());
+                socket.setSoTimeout(5000);
+                sockets.add(socket);
+                handlers[i] = new CollectoClientHandler(listener.accept(), server, "Client " + i);
+            }
+        }
+        return sockets;
+    }
+
+    private static void runConcurrently(List<Callable<Object>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (Future<Object> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), channel.socket().getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    /**
+     * Test if the virtual-thread executor runs tasks where the runtime has virtual threads.
+     */
+    @Test
+    void virtualThreadExecutorRunsTasksTest() throws Exception {
+        ExecutorService executor = CollectoServer.newVirtualThreadExecutor();
+        if (Runtime.version().feature() < 21) {
+            assertNull(executor);
+            return;
+        }
+        Future<String> result = executor.submit(() -> "done");
+        assertEquals("done", result.get());
+        executor.shutdown();
+    }
+
+    /**
+     * Test if a client is served in the virtual-thread mode and disconnected by the shutdown.
+     */
+    @Test
+    void virtualThreadModeServesClientsTest() throws Exception {
+        start(0, true);
+        try (Socket socket = connect()) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            socket.getOutputStream().write("HELLO~client\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("HELLO~username", in.readLine());
+            assertEquals(1, server.getClientCount());
+
+            server.shutdown();
+            assertNull(in.readLine());
+            assertEquals(0, server.getClientCount());
+        }
+    }
+
+    /**
+     * Test if games queued at the same time from many threads all start,
+     * each with its own two players.
+     */
+    @Test
+    void independentGamesStartConcurrentlyTest() throws Exception {
+        server = new CollectoServer();
+        CollectoClientHandler[] handlers = new CollectoClientHandler[80];
+        List<Socket> sockets = connectHandlers(handlers);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < handlers.length; i++) {
+            server.doLogin("player" + i, handlers[i]);
+            CollectoClientHandler handler = handlers[i];
+            String gameName = "game" + i / 2;
+            tasks.add(() -> {
+                server.doQUEUE(gameName, handler);
+                return null;
+            });
+        }
+        Collections.shuffle(tasks);
+        runConcurrently(tasks);
+
+        Set<NetworkGame> games = new HashSet<>();
+        for (int i = 0; i < handlers.length; i++) {
+            assertTrue(handlers[i].isJoinedToGame());
+            assertSame(handlers[i - i % 2].getActiveGame(), handlers[i].getActiveGame());
+            games.add(handlers[i].getActiveGame());
+            BufferedReader in = new BufferedReader(new InputStreamReader(sockets.get(i).getInputStream(), StandardCharsets.UTF_8));
+            String line = in.readLine();
+            while (line.isEmpty()) {
+                line = in.readLine();
+            }
+            assertTrue(line.startsWith("NEWGAME~"), line);
+        }
+        assertEquals(40, games.size());
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Test if a client queueing for a full game gets an error and is not started
+     * in a game, while the two players of the game are.
+     */
+    @Test
+    void queueForFullGameIsRefusedTest() throws Exception {
+        server = new CollectoServer();
+        CollectoClientHandler[] handlers = new CollectoClientHandler[3];
+        List<Socket> sockets = connectHandlers(handlers);
+        for (int i = 0; i < handlers.length; i++) {
+            server.doLogin("player" + i, handlers[i]);
+            server.doQUEUE("full", handlers[i]);
+        }
+        assertTrue(handlers[0].isJoinedToGame());
+        assertSame(handlers[0].getActiveGame(), handlers[1].getActiveGame());
+        assertFalse(handlers[2].isJoinedToGame());
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(sockets.get(2).getInputStream(), StandardCharsets.UTF_8));
+        String line = in.readLine();
+        while (line.isEmpty()) {
+            line = in.readLine();
+        }
+        assertTrue(line.startsWith("ERROR~"), line);
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Test if a move from a client that is not in a game is answered with an error.
+     */
+    @Test
+    void moveWithoutGameIsRefusedTest() throws Exception {
+        start(0, false);
+        try (Socket socket = connect()) {
+            socket.getOutputStream().write("MOVE~1\nHELLO\n".getBytes(StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertTrue(in.readLine().startsWith("ERROR~"));
+            String line = in.readLine();
+            while (line.isEmpty()) {
+                line = in.readLine();
+            }
+            assertEquals("HELLO~username", line);
+        }
+    }
+
+    /**
+     * Test if a name can be logged in only once, also when many clients try at the same time.
+     */
+    @Test
+    void concurrentLoginsAreUniqueTest() throws Exception {
+        server = new CollectoServer();
+        CollectoClientHandler[] handlers = new CollectoClientHandler[16];
+        List<Socket> sockets = connectHandlers(handlers);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (CollectoClientHandler handler : handlers) {
+            tasks.add(() -> {
+                server.doLogin("bob", handler);
+                return null;
+            });
+        }
+        runConcurrently(tasks);
+
+        int loggedIn = 0;
+        for (CollectoClientHandler handler : handlers) {
+            if ("bob".equals(handler.getUsername())) {
+                loggedIn++;
+            }
+        }
+        assertEquals(1, loggedIn);
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    /**
+     * Test if two logged in clients that send QUEUE are paired into a new game,
+     * and if a second QUEUE takes a client out of the queue again.
+     */
+    @Test
+    void queuedClientsArePairedTest() throws Exception {
+        start(0, false);
+        try (Socket alice = connect(); Socket bob = connect(); Socket carol = connect()) {
+            BufferedReader aliceIn = new BufferedReader(new InputStreamReader(alice.getInputStream(), StandardCharsets.UTF_8));
+            BufferedReader bobIn = new BufferedReader(new InputStreamReader(bob.getInputStream(), StandardCharsets.UTF_8));
+            carol.getOutputStream().write("LOGIN~Carol\nQUEUE\nQUEUE\nHELLO\n".getBytes(StandardCharsets.UTF_8));
+            BufferedReader carolIn = new BufferedReader(new InputStreamReader(carol.getInputStream(), StandardCharsets.UTF_8));
+            String line = carolIn.readLine();
+            while (!line.startsWith("HELLO")) {
+                line = carolIn.readLine();
+            }
+            assertEquals(0, server.getMatchmaker().getQueueDepth());
+
+            alice.getOutputStream().write("LOGIN~Alice\nQUEUE\n".getBytes(StandardCharsets.UTF_8));
+            bob.getOutputStream().write("LOGIN~Bob\nQUEUE\n".getBytes(StandardCharsets.UTF_8));
+            for (BufferedReader in : new BufferedReader[] {aliceIn, bobIn}) {
+                line = in.readLine();
+                while (!line.startsWith("NEWGAME")) {
+                    line = in.readLine();
+                }
+            }
+            assertEquals(1, server.getMatchmaker().getMatches());
+            assertEquals(1, server.getMatchmaker().getCancelled());
+        }
+    }
+}
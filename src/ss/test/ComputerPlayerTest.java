@@ -0,0 +1,79 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerPlayerTest {
+
+    @Test
+    void choosesLegalSingleMovesTest() {
+        SplittableRandom random = new SplittableRandom(1);
+        ComputerPlayer computer = new ComputerPlayer("computer", 50);
+        for (int game = 0; game < 5; game++) {
+            Board board = new Board(random);
+            Move move = new Move(board);
+            int command = computer.determineSingleMove(move);
+            assertTrue(MoveGenerator.contains(move.getSingleMovesMask(), command));
+        }
+    }
+
+    @Test
+    void choosesLegalDoubleMovesTest() {
+        Random random = new Random(3);
+        ComputerPlayer computer = new ComputerPlayer("computer", 50);
+        Board board = new Board();
+        Move move = new Move(board);
+        int found = 0;
+        while (found < 5) {
+            board.setBoardFieldsToEmpty();
+            for (int i = 0; i < 4 + random.nextInt(6); i++) {
+                board.setField(Colour.values()[random.nextInt(6)], random.nextInt(49));
+            }
+            if (move.noPossibleSingleMoves() && !move.noPossibleDoubleMoves()) {
+                int[] commands = computer.determineDoubleMove(move);
+                assertTrue(MoveGenerator.contains(move.getSecondMovesMask(commands[0]), commands[1]));
+                found++;
+            }
+        }
+    }
+
+    @Test
+    void takesTheWinningPointTest() {
+        Board board = new Board();
+        board.setBoardFieldsToEmpty();
+        board.setField(Colour.BLUE, 0, 0);
+        board.setField(Colour.BLUE, 0, 2);
+        board.setField(Colour.RED, 6, 0);
+        board.setField(Colour.RED, 6, 2);
+        Move move = new Move(board);
+        ComputerPlayer computer = new ComputerPlayer("computer", 500);
+        computer.setOpponent(new HumanPlayer("human"));
+        computer.increasePlayerBalls(Colour.BLUE);
+        computer.increasePlayerBalls(Colour.BLUE);
+
+        int command = computer.determineSingleMove(move);
+        SearchResult result = computer.getLastResult();
+        assertTrue(result.getScore() > AlphaBetaSearch.WIN, result.toString());
+        move.singleMove(computer, command);
+        assertEquals(4, computer.getBallCount(Colour.BLUE));
+    }
+
+    @Test
+    void respectsTheTimeBudgetTest() {
+        ComputerPlayer computer = new ComputerPlayer("computer", 100);
+        Move move = new Move(new Board(new SplittableRandom(5)));
+        long start = System.nanoTime();
+        computer.determineSingleMove(move);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        SearchResult result = computer.getLastResult();
+        assertTrue(elapsedMillis < 1000, "took " + elapsedMillis + " ms");
+        assertTrue(result.getDepth() >= 1);
+        assertTrue(result.getNodes() > 0);
+        assertTrue(result.getNodesPerSecond() > 0);
+    }
+}
@@ -0,0 +1,130 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ss.gamedesign.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EndgameSolverTest {
+
+    /**
+     * Plain minimax to the end of the game, without pruning or memory.
+     * @return the best final score difference for the player to move
+     */
+    private static int minimax(long[] cells, int[] balls, int player) {
+        int[] moves = new int[PackedGame.MAX_MOVES];
+        int count = PackedGame.generate(cells, moves, BitBoard.newCells(), BitBoard.newCells());
+        if (count == 0) {
+            return PackedGame.scoreDifference(balls, player);
+        }
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long[] next = cells.clone();
+            int[] nextBalls = balls.clone();
+            PackedGame.play(next, moves[i], nextBalls, player);
+            best = Math.max(best, -minimax(next, nextBalls, 1 - player));
+        }
+        return best;
+    }
+
+    private static int[] randomBalls(SplittableRandom random) {
+        int[] balls = new int[PackedGame.CODES];
+        for (int code = 1; code < PackedGame.CODES; code++) {
+            balls[code] = random.nextInt(5);
+        }
+        return balls;
+    }
+
+    @Test
+    void solvedValueMatchesMinimaxTest() {
+        SplittableRandom random = new SplittableRandom(12);
+        EndgameSolver solver = new EndgameSolver(10, 1 << 12);
+        for (int game = 0; game < 100; game++) {
+            long[] cells = Positions.random(random, 2 + random.nextInt(9));
+            int[] own = randomBalls(random);
+            int[] other = randomBalls(random);
+            int[] balls = new int[2 * PackedGame.CODES];
+            System.arraycopy(own, 0, balls, 0, PackedGame.CODES);
+            System.arraycopy(other, 0, balls, PackedGame.CODES, PackedGame.CODES);
+
+            SearchResult result = solver.solve(cells, own, other);
+            assertEquals(minimax(cells, balls, 0), result.getScore(), "position " + game);
+            if (result.getFirstCommand() != -1) {
+                // The chosen move keeps the value
+                int move = result.isDoubleMove()
+                        ? PackedGame.doubleMove(result.getFirstCommand(), result.getSecondCommand())
+                        : result.getFirstCommand();
+                long[] next = cells.clone();
+                PackedGame.play(next, move, balls, 0);
+                assertEquals(result.getScore(), -minimax(next, balls, 1));
+            }
+        }
+    }
+
+    /**
+     * Positions where a capture is made below the root, which shifts the window of the search.
+     */
+    @Test
+    void capturesBelowTheRootMatchMinimaxTest() {
+        SplittableRandom random = new SplittableRandom(37);
+        EndgameSolver solver = new EndgameSolver(12, 1 << 14);
+        for (int game = 0; game < 8; game++) {
+            long[] cells = Positions.random(random, 12);
+            int[] own = randomBalls(random);
+            int[] balls = new int[2 * PackedGame.CODES];
+            System.arraycopy(own, 0, balls, 0, PackedGame.CODES);
+            assertEquals(minimax(cells, balls, 0), solver.solve(cells, own, new int[PackedGame.CODES]).getScore(),
+                    "position " + game);
+        }
+    }
+
+    @Test
+    void spillFileGivesTheSameValuesTest(@TempDir Path directory) throws IOException {
+        SplittableRandom random = new SplittableRandom(13);
+        EndgameSolver large = new EndgameSolver(16, 1 << 16);
+        try (EndgameSolver spilling = new EndgameSolver(16, 4, directory.resolve("endgame.bin"), 1 << 12)) {
+            for (int game = 0; game < 20; game++) {
+                long[] cells = Positions.random(random, 8 + random.nextInt(7));
+                int[] own = randomBalls(random);
+                int[] other = randomBalls(random);
+                assertEquals(large.solve(cells, own, other).getScore(), spilling.solve(cells, own, other).getScore());
+            }
+            assertTrue(spilling.getSpills() > 0);
+        }
+    }
+
+    @Test
+    void refusesLargePositionsTest() {
+        EndgameSolver solver = new EndgameSolver(10, 16);
+        long[] cells = Positions.random(new SplittableRandom(1), 11);
+        assertFalse(solver.canSolve(cells));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(cells, new int[7], new int[7]));
+    }
+
+    @Test
+    void computerPlayerUsesTheSolverTest() {
+        Board board = new Board();
+        board.setBoardFieldsToEmpty();
+        board.setField(Colour.BLUE, 0, 0);
+        board.setField(Colour.BLUE, 0, 2);
+        board.setField(Colour.RED, 6, 0);
+        board.setField(Colour.RED, 6, 2);
+        ComputerPlayer computer = new ComputerPlayer("computer", 1000);
+        computer.setEndgameSolver(new EndgameSolver(8, 1 << 10));
+        computer.increasePlayerBalls(Colour.BLUE);
+        Player opponent = new HumanPlayer("human");
+        opponent.increasePlayerBalls(Colour.BLUE);
+        computer.setOpponent(opponent);
+
+        Move move = new Move(board);
+        move.singleMove(computer, computer.determineSingleMove(move));
+        assertEquals(3, computer.getBallCount(Colour.BLUE));
+        // 1 point and 3 balls against no points and 3 balls
+        assertEquals(100, computer.getLastResult().getScore());
+    }
+}
@@ -0,0 +1,141 @@
+package ss.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ss.server.Matchmaker;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchmakerTest {
+
+    private final Queue<int[]> pairs = new ConcurrentLinkedQueue<>();
+
+    private Matchmaker<Integer> matchmaker;
+
+    @AfterEach
+    void tearDown() {
+        matchmaker.stop();
+    }
+
+    private void awaitMatches(long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (matchmaker.getMatches() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, matchmaker.getMatches());
+    }
+
+    /**
+     * Test if players queued by many threads at once are all paired, each exactly once.
+     */
+    @Test
+    void pairsEveryPlayerOnceTest() throws InterruptedException {
+        matchmaker = new Matchmaker<>((first, second) -> pairs.add(new int[] {first, second}));
+        matchmaker.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            threads.add(new Thread(() -> {
+                for (int i = offset; i < 10000; i += 4) {
+                    assertTrue(matchmaker.enqueue(i, 0));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        awaitMatches(5000);
+
+        Set<Integer> paired = new HashSet<>();
+        for (int[] pair : pairs) {
+            assertTrue(paired.add(pair[0]));
+            assertTrue(paired.add(pair[1]));
+        }
+        assertEquals(10000, paired.size());
+        assertEquals(0, matchmaker.getQueueDepth());
+        assertEquals(10000, matchmaker.getQueued());
+        assertTrue(matchmaker.getMaxTimeToMatch() >= matchmaker.getMeanTimeToMatch());
+    }
+
+    /**
+     * Test if a player waits only once, can leave the queue and is then not paired.
+     */
+    @Test
+    void leavingTheQueueTest() throws InterruptedException {
+        matchmaker = new Matchmaker<>((first, second) -> pairs.add(new int[] {first, second}));
+        assertTrue(matchmaker.enqueue(1, 0));
+        assertFalse(matchmaker.enqueue(1, 0));
+        assertTrue(matchmaker.enqueue(2, 0));
+        assertTrue(matchmaker.cancel(1));
+        assertFalse(matchmaker.cancel(1));
+        assertFalse(matchmaker.isWaiting(1));
+        assertTrue(matchmaker.enqueue(3, 0));
+        assertEquals(2, matchmaker.getQueueDepth());
+
+        matchmaker.start();
+        awaitMatches(1);
+        // The first to queue comes first
+        assertArrayEquals(new int[] {2, 3}, pairs.poll());
+        assertEquals(1, matchmaker.getCancelled());
+        assertEquals(0, matchmaker.getQueueDepth());
+        assertFalse(matchmaker.cancel(2));
+    }
+
+    /**
+     * Test if a player put back in the queue is paired before the players who were waiting.
+     */
+    @Test
+    void requeuedPlayerComesFirstTest() throws InterruptedException {
+        matchmaker = new Matchmaker<>((first, second) -> pairs.add(new int[] {first, second}));
+        assertTrue(matchmaker.enqueue(1, 0));
+        assertTrue(matchmaker.enqueue(2, 0));
+        assertTrue(matchmaker.enqueue(3, 0));
+        assertTrue(matchmaker.requeue(4, 0));
+        assertFalse(matchmaker.requeue(4, 0));
+        assertEquals(4, matchmaker.getQueueDepth());
+
+        matchmaker.start();
+        awaitMatches(2);
+        Set<String> made = new HashSet<>();
+        for (int[] pair : pairs) {
+            made.add(Math.min(pair[0], pair[1]) + "-" + Math.max(pair[0], pair[1]));
+        }
+        assertEquals(Set.of("1-4", "2-3"), made);
+    }
+
+    /**
+     * Test if players are paired within their rating band, and outside it once they waited long enough.
+     */
+    @Test
+    void ratingBandTest() throws InterruptedException {
+        matchmaker = new Matchmaker<>((first, second) -> pairs.add(new int[] {first, second}), 100, 16);
+        matchmaker.enqueue(0, 0);
+        matchmaker.enqueue(1000, 1000);
+        matchmaker.enqueue(50, 50);
+        matchmaker.enqueue(1050, 1050);
+        matchmaker.start();
+        awaitMatches(2);
+        Set<String> made = new HashSet<>();
+        for (int[] pair : pairs) {
+            made.add(Math.min(pair[0], pair[1]) + "-" + Math.max(pair[0], pair[1]));
+        }
+        assertEquals(Set.of("0-50", "1000-1050"), made);
+
+        // 150 apart: the band of 100 has to grow for a second first
+        long start = System.nanoTime();
+        matchmaker.enqueue(2000, 2000);
+        matchmaker.enqueue(2150, 2150);
+        awaitMatches(3);
+        assertTrue(System.nanoTime() - start >= 1_000_000_000L);
+    }
+}
@@ -0,0 +1,76 @@
+package ss.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MctsSearchTest {
+
+    private MctsSearch search;
+
+    @BeforeEach
+    public void setUp() {
+        search = new MctsSearch(2, new SplittableRandom(6));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        search.shutdown();
+    }
+
+    @Test
+    void choosesLegalMovesTest() {
+        SplittableRandom random = new SplittableRandom(2);
+        MctsPlayer player = new MctsPlayer("mcts", 30, search);
+        for (int game = 0; game < 3; game++) {
+            Board board = new Board(random);
+            Move move = new Move(board);
+            while (!board.gameOver(move)) {
+                if (!move.noPossibleSingleMoves()) {
+                    int command = player.determineSingleMove(move);
+                    assertTrue(MoveGenerator.contains(move.getSingleMovesMask(), command));
+                    move.singleMove(player, command);
+                } else {
+                    int[] commands = player.determineDoubleMove(move);
+                    assertTrue(MoveGenerator.contains(move.getSecondMovesMask(commands[0]), commands[1]));
+                    move.doubleMove(player, commands[0], commands[1]);
+                }
+                assertTrue(player.getLastResult().getNodes() > 0);
+            }
+        }
+    }
+
+    @Test
+    void takesTheWinningPointTest() {
+        Board board = new Board();
+        board.setBoardFieldsToEmpty();
+        board.setField(Colour.BLUE, 0, 0);
+        board.setField(Colour.BLUE, 0, 2);
+        board.setField(Colour.RED, 6, 0);
+        board.setField(Colour.RED, 6, 2);
+        Move move = new Move(board);
+        MctsPlayer player = new MctsPlayer("mcts", 200, search);
+        // Gathering the red balls would leave the blue ones, and the point, to the opponent
+        Player opponent = new HumanPlayer("human");
+        opponent.increasePlayerBalls(Colour.BLUE);
+        player.setOpponent(opponent);
+        player.increasePlayerBalls(Colour.BLUE);
+
+        int command = player.determineSingleMove(move);
+        move.singleMove(player, command);
+        assertEquals(3, player.getBallCount(Colour.BLUE), player.getLastResult().toString());
+    }
+
+    @Test
+    void finishedGameHasNoMoveTest() {
+        long[] cells = BitBoard.newCells();
+        BitBoard.set(cells, 0, BitBoard.encode(Colour.BLUE));
+        SearchResult result = search.search(cells, new int[7], new int[7], 10_000_000);
+        assertEquals(-1, result.getFirstCommand());
+    }
+}
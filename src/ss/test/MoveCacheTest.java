@@ -0,0 +1,86 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveCacheTest {
+
+    @Test
+    void cachedMovesMatchGeneratedMovesTest() {
+        SplittableRandom random = new SplittableRandom(17);
+        MoveCache cache = new MoveCache(64);
+        Player player = new HumanPlayer("player");
+        for (int game = 0; game < 50; game++) {
+            Board board = new Board(random);
+            Move cached = new Move(board);
+            cached.setCache(cache);
+            Board plainBoard = board.deepCopy();
+            Move plain = new Move(plainBoard);
+            for (int turn = 0; turn < 40 && !plain.noPossibleDoubleMoves(); turn++) {
+                assertEquals(plain.getSingleMovesMask(), cached.getSingleMovesMask());
+                assertEquals(plain.noPossibleDoubleMoves(), cached.noPossibleDoubleMoves());
+                int singles = plain.getSingleMovesMask();
+                int first = random.nextInt(MoveGenerator.COMMANDS);
+                int second = random.nextInt(MoveGenerator.COMMANDS);
+                if (singles != 0) {
+                    first = Integer.numberOfTrailingZeros(singles);
+                    plain.singleMove(player, first);
+                    cached.singleMove(player, first);
+                } else {
+                    plain.doubleMove(player, first, second);
+                    cached.doubleMove(player, first, second);
+                }
+                assertEquals(plainBoard.getField(), board.getField());
+            }
+        }
+        assertTrue(cache.getSize() <= cache.getCapacity());
+        assertTrue(cache.getEvictions() > 0);
+    }
+
+    @Test
+    void repeatedPositionsHitTest() {
+        MoveCache cache = new MoveCache(1024);
+        Board board = new Board(new SplittableRandom(4));
+        int singles = cache.singleMoves(board);
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getHits());
+
+        Board copy = board.deepCopy();
+        assertEquals(singles, cache.singleMoves(copy));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getSize());
+
+        // The double move flag is computed once and then answered from the cache
+        boolean doubles = cache.hasDoubleMove(board);
+        assertEquals(doubles, cache.hasDoubleMove(copy));
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(0.5, cache.getHitRate());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        cache.singleMoves(board);
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void clockKeepsReferencedPositionsTest() {
+        // A single bucket, so every position competes for the same slots
+        MoveCache cache = new MoveCache(1);
+        assertEquals(MoveCache.WAYS, cache.getCapacity());
+        SplittableRandom random = new SplittableRandom(8);
+        Board kept = new Board(random);
+        cache.singleMoves(kept);
+        for (int i = 0; i < 20; i++) {
+            cache.singleMoves(kept);
+            cache.singleMoves(new Board(random));
+        }
+        long misses = cache.getMisses();
+        cache.singleMoves(kept);
+        assertEquals(misses, cache.getMisses());
+    }
+}
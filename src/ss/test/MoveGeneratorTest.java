@@ -0,0 +1,183 @@
+package ss.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveGeneratorTest {
+
+    private Board board;
+    private Move move;
+    private Random random;
+
+    @BeforeEach
+    public void setUp() {
+        board = new Board();
+        move = new Move(board);
+        random = new Random(42);
+    }
+
+    /**
+     * Empties random fields of the board so that rows and columns can move.
+     * Every fourth board also gets a few random colours, which may leave
+     * pairs of equal balls on the board before any move.
+     * @param emptyFields the number of fields to empty
+     */
+    private void emptyRandomFields(int emptyFields) {
+        board.initialiseBoard();
+        for (int i = 0; i < emptyFields; i++) {
+            board.setField(Colour.EMPTY, random.nextInt(49));
+        }
+        if (random.nextInt(4) == 0) {
+            for (int i = 0; i < 3; i++) {
+                board.setField(Colour.values()[random.nextInt(7)], random.nextInt(49));
+            }
+        }
+    }
+
+    /**
+     * Checks a command the slow way, by moving the board and looking for
+     * neighbours of the same colour.
+     */
+    private boolean isValidSingleMove(int command) {
+        Board copy = board.deepCopy();
+        Move reference = new Move(copy);
+        int line = command % 7;
+        switch (command / 7) {
+            case 0:
+                reference.moveRowOnLeft(line);
+                break;
+            case 1:
+                reference.moveRowOnRight(line);
+                break;
+            case 2:
+                reference.moveColumnUp(line);
+                break;
+            default:
+                reference.moveColumnDown(line);
+                break;
+        }
+        reference.fillArrayList();
+        return reference.isMoveValid();
+    }
+
+    @Test
+    void legalSingleMovesMatchesBoardScanTest() {
+        for (int game = 0; game < 400; game++) {
+            emptyRandomFields(random.nextInt(45));
+            move.fillSingleMovesMap();
+            int legal = move.getSingleMovesMask();
+            for (int command = 0; command < MoveGenerator.COMMANDS; command++) {
+                assertEquals(isValidSingleMove(command), MoveGenerator.contains(legal, command), "command " + command);
+            }
+        }
+    }
+
+    /**
+     * Checks all pairs of commands the slow way.
+     */
+    private boolean hasValidDoubleMove() {
+        for (int first = 0; first < MoveGenerator.COMMANDS; first++) {
+            for (int second = 0; second < MoveGenerator.COMMANDS; second++) {
+                Board copy = board.deepCopy();
+                Move reference = new Move(copy);
+                reference.doubleMove(new HumanPlayer("reference"), first, second);
+                if (!copy.getField().equals(board.getField())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void hasDoubleMoveMatchesBoardScanTest() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int game = 0; game < 40; game++) {
+            board.setBoardFieldsToEmpty();
+            for (int i = 0; i < 2 + random.nextInt(8); i++) {
+                board.setField(Colour.values()[random.nextInt(6)], random.nextInt(49));
+            }
+            move.updateCopy();
+            move.fillSingleMovesMap();
+            if (move.noPossibleSingleMoves()) {
+                boolean expected = hasValidDoubleMove();
+                assertEquals(!expected, move.noPossibleDoubleMoves());
+                assertEquals(!expected, move.noPossibleDoubleMoves(pool));
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    void incrementalSingleMovesMatchFullGenerationTest() {
+        Player player = new HumanPlayer("Yordan");
+        for (int game = 0; game < 30; game++) {
+            board.initialiseBoard();
+            move.fillSingleMovesMap();
+            while (!move.noPossibleSingleMoves()) {
+                int legal = move.getSingleMovesMask();
+                int command;
+                do {
+                    command = random.nextInt(MoveGenerator.COMMANDS);
+                } while (!MoveGenerator.contains(legal, command));
+                move.singleMove(player, command);
+
+                Move fresh = new Move(board.deepCopy());
+                assertEquals(fresh.getSingleMovesMask(), move.getSingleMovesMask());
+                for (int i = 0; i < MoveGenerator.COMMANDS; i++) {
+                    assertEquals(fresh.getSingleMoves().get(i), move.getSingleMoves().get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void singleMovesFollowBoardChangesTest() {
+        board.setBoardFieldsToEmpty();
+        assertTrue(move.noPossibleSingleMoves());
+        board.setField(Colour.RED, 0);
+        board.setField(Colour.RED, 2);
+        assertFalse(move.noPossibleSingleMoves());
+        assertTrue(move.getSingleMoves().get(0));
+    }
+
+    @Test
+    void legalSingleMovesDoesNotChangeBoardTest() {
+        emptyRandomFields(20);
+        String before = board.getField();
+        move.fillSingleMovesMap();
+        assertEquals(before, board.getField());
+    }
+
+    @Test
+    void secondMovesMatchDoubleMovesTest() {
+        for (int game = 0; game < 10; game++) {
+            board.setBoardFieldsToEmpty();
+            for (int i = 0; i < 2 + random.nextInt(8); i++) {
+                board.setField(Colour.values()[random.nextInt(6)], random.nextInt(49));
+            }
+            for (int first = 0; first < MoveGenerator.COMMANDS; first++) {
+                int seconds = move.getSecondMovesMask(first);
+                for (int second = 0; second < MoveGenerator.COMMANDS; second++) {
+                    Board copy = board.deepCopy();
+                    new Move(copy).doubleMove(new HumanPlayer("reference"), first, second);
+                    boolean valid = !copy.getField().equals(board.getField());
+                    assertEquals(valid, MoveGenerator.contains(seconds, second), first + ", " + second);
+                }
+            }
+        }
+    }
+
+    @Test
+    void containsTest() {
+        assertTrue(MoveGenerator.contains(1 << 27, 27));
+        assertFalse(MoveGenerator.contains(-1, 28));
+        assertFalse(MoveGenerator.contains(-1, -1));
+    }
+}
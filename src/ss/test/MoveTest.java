@@ -58,7 +58,7 @@ public class MoveTest {
         board.setField(Colour.BLUE, 11);
         board.setField(Colour.BLUE, 12);
         board.setField(Colour.GREEN, 13);
-        move.moveRowOnRight(1);
+        assertFalse(move.moveRowOnRight(1));
         assertEquals(Colour.BLUE, board.getField(7).getBall().getColour());
         assertEquals(Colour.RED, board.getField(8).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(9).getBall().getColour());
@@ -68,7 +68,7 @@ public class MoveTest {
         assertEquals(Colour.GREEN, board.getField(13).getBall().getColour());
 
         board.setField(Colour.EMPTY, 11);
-        move.moveRowOnRight(1);
+        assertTrue(move.moveRowOnRight(1));
         assertEquals(Colour.EMPTY, board.getField(7).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(8).getBall().getColour());
         assertEquals(Colour.RED, board.getField(9).getBall().getColour());
@@ -104,7 +104,7 @@ public class MoveTest {
         board.setField(Colour.YELLOW, 11);
         board.setField(Colour.BLUE, 12);
         board.setField(Colour.GREEN, 13);
-        move.moveRowOnLeft(1);
+        assertFalse(move.moveRowOnLeft(1));
         assertEquals(Colour.RED, board.getField(7).getBall().getColour());
         assertEquals(Colour.RED, board.getField(8).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(9).getBall().getColour());
@@ -114,7 +114,7 @@ public class MoveTest {
         assertEquals(Colour.GREEN, board.getField(13).getBall().getColour());
 
         board.setField(Colour.EMPTY, 7);
-        move.moveRowOnLeft(1);
+        assertTrue(move.moveRowOnLeft(1));
         assertEquals(Colour.RED, board.getField(7).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(8).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(9).getBall().getColour());
@@ -163,7 +163,7 @@ public class MoveTest {
         board.setField(Colour.YELLOW, 29);
         board.setField(Colour.BLUE, 36);
         board.setField(Colour.GREEN, 43);
-        move.moveColumnDown(1);
+        assertFalse(move.moveColumnDown(1));
         assertEquals(Colour.RED, board.getField(1).getBall().getColour());
         assertEquals(Colour.RED, board.getField(8).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(15).getBall().getColour());
@@ -173,7 +173,7 @@ public class MoveTest {
         assertEquals(Colour.GREEN, board.getField(43).getBall().getColour());
 
         board.setField(Colour.EMPTY, 43);
-        move.moveColumnDown(1);
+        assertTrue(move.moveColumnDown(1));
         assertEquals(Colour.EMPTY, board.getField(1).getBall().getColour());
         assertEquals(Colour.RED, board.getField(8).getBall().getColour());
         assertEquals(Colour.RED, board.getField(15).getBall().getColour());
@@ -211,7 +211,7 @@ public class MoveTest {
         board.setField(Colour.BLUE, 36);
         board.setField(Colour.RED, 43);
 
-        move.moveColumnUp(1);
+        assertFalse(move.moveColumnUp(1));
         assertEquals(Colour.PURPLE, board.getField(1).getBall().getColour());
         assertEquals(Colour.RED, board.getField(8).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(15).getBall().getColour());
@@ -221,7 +221,7 @@ public class MoveTest {
         assertEquals(Colour.RED, board.getField(43).getBall().getColour());
 
         board.setField(Colour.EMPTY, 1);
-        move.moveColumnUp(1);
+        assertTrue(move.moveColumnUp(1));
         assertEquals(Colour.RED, board.getField(1).getBall().getColour());
         assertEquals(Colour.BLUE, board.getField(8).getBall().getColour());
         assertEquals(Colour.ORANGE, board.getField(15).getBall().getColour());
@@ -305,9 +305,12 @@ public class MoveTest {
     void updateCopyTest() {
         board.setBoardFieldsToEmpty();
         move.updateCopy();
+        board.setField(Colour.RED, 0);
+        board.setField(Colour.BLUE, 26);
+        move.reverseMove();
         for (int i = 0; i < 49; i++) {
-            assertEquals(board.getField(i).getBall().getColour(), copy.getField(i).getBall().getColour());
-            assertEquals(board.getField(i).getIndex(), copy.getField(i).getIndex());
+            assertEquals(Colour.EMPTY, board.getField(i).getBall().getColour());
+            assertEquals(i, board.getField(i).getIndex());
         }
     }
 
@@ -0,0 +1,131 @@
+package ss.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ss.server.CollectoServer;
+import ss.server.NioCollectoServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NioCollectoServerTest {
+
+    private NioCollectoServer server;
+
+    private ServerSocketChannel channel;
+
+    private ExecutorService workers;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        workers = Executors.newCachedThreadPool();
+        server = new NioCollectoServer(new CollectoServer(2), channel, 2, workers);
+        Thread acceptor = new Thread(server);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.shutdown();
+        workers.shutdown();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), channel.socket().getLocalPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Test if a command is answered, also when its line arrives in pieces
+     * or together with the next one.
+     */
+    @Test
+    void linesAreFramedTest() throws IOException {
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = reader(socket);
+            out.write("HEL".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            out.write("LO~client\r\nHELLO~again\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals("HELLO~username", in.readLine());
+            assertEquals("HELLO~username", in.readLine());
+        }
+    }
+
+    /**
+     * Test if a client that sends many commands at once gets all answers in
+     * order, while the loop stops reading it whenever its commands pile up.
+     */
+    @Test
+    void pipelinedCommandsAreAnsweredTest() throws IOException {
+        try (Socket socket = connect()) {
+            StringBuilder commands = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                commands.append("HELLO~").append(i).append('\n');
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(commands.toString().getBytes(StandardCharsets.UTF_8));
+            out.write("LOGIN~last\nLIST\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            BufferedReader in = reader(socket);
+            for (int i = 0; i < 2000; i++) {
+                assertEquals("HELLO~username", in.readLine());
+            }
+            assertEquals("", in.readLine());
+            assertEquals("", in.readLine());
+            assertTrue(in.readLine().startsWith("LIST"));
+        }
+    }
+
+    /**
+     * Test if many connections are served at the same time by the two event loops.
+     */
+    @Test
+    void servesManyConnectionsTest() throws Exception {
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                sockets.add(connect());
+            }
+            for (Socket socket : sockets) {
+                socket.getOutputStream().write("HELLO\n".getBytes(StandardCharsets.UTF_8));
+            }
+            for (Socket socket : sockets) {
+                assertEquals("HELLO~username", reader(socket).readLine());
+            }
+            assertEquals(200, server.getConnectionCount());
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getConnectionCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.getConnectionCount());
+    }
+}
@@ -0,0 +1,211 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.server.Outbox;
+import ss.server.SlowConsumerPolicy;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutboxTest {
+
+    private static final String LINE_END = System.lineSeparator();
+
+    /**
+     * Holds the writing tasks until the test runs them, like a client that is slow to take its messages.
+     */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    private final StringWriter out = new StringWriter();
+
+    private final AtomicInteger disconnects = new AtomicInteger();
+
+    private Outbox outbox(int capacity, SlowConsumerPolicy policy) {
+        return new Outbox(out, tasks::add, () -> true, capacity, policy, disconnects::incrementAndGet);
+    }
+
+    private void runTasks() {
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+    }
+
+    /**
+     * Test if the messages queued while the writer is busy are written and flushed in one batch.
+     */
+    @Test
+    void coalescesQueuedMessagesTest() {
+        Outbox outbox = outbox(Outbox.DEFAULT_CAPACITY, SlowConsumerPolicy.DISCONNECT);
+        for (int i = 0; i < 10; i++) {
+            outbox.send("MOVE~" + i);
+        }
+        assertEquals(1, tasks.size());
+        assertEquals(10 * ("MOVE~0" + LINE_END).length(), outbox.getWaitingChars());
+        runTasks();
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            expected.append("MOVE~").append(i).append(LINE_END);
+        }
+        assertEquals(expected.toString(), out.toString());
+        assertEquals(10, outbox.getSent());
+        assertEquals(1, outbox.getBatches());
+        assertEquals(0, outbox.getWaitingChars());
+    }
+
+    /**
+     * Test if a message to a full outbox is discarded with the DROP policy.
+     */
+    @Test
+    void dropPolicyTest() {
+        int line = ("MOVE~0" + LINE_END).length();
+        Outbox outbox = outbox(3 * line, SlowConsumerPolicy.DROP);
+        for (int i = 0; i < 5; i++) {
+            outbox.send("MOVE~" + i);
+        }
+        runTasks();
+        assertEquals("MOVE~0" + LINE_END + "MOVE~1" + LINE_END + "MOVE~2" + LINE_END, out.toString());
+        assertEquals(2, outbox.getDropped());
+        assertEquals(0, disconnects.get());
+    }
+
+    /**
+     * Test if the oldest messages make room for a new one with the DEGRADE policy.
+     */
+    @Test
+    void degradePolicyTest() {
+        int line = ("MOVE~0" + LINE_END).length();
+        Outbox outbox = outbox(3 * line, SlowConsumerPolicy.DEGRADE);
+        for (int i = 0; i < 5; i++) {
+            outbox.send("MOVE~" + i);
+        }
+        runTasks();
+        assertEquals("MOVE~2" + LINE_END + "MOVE~3" + LINE_END + "MOVE~4" + LINE_END, out.toString());
+        assertEquals(2, outbox.getDropped());
+    }
+
+    /**
+     * Test if a full outbox closes the connection with the DISCONNECT policy,
+     * off the sending thread, and sends nothing after.
+     */
+    @Test
+    void disconnectPolicyTest() {
+        int line = ("MOVE~0" + LINE_END).length();
+        Outbox outbox = outbox(2 * line, SlowConsumerPolicy.DISCONNECT);
+        for (int i = 0; i < 4; i++) {
+            outbox.send("MOVE~" + i);
+        }
+        assertEquals(0, disconnects.get());
+        assertEquals(0, outbox.getWaitingChars());
+        runTasks();
+        assertEquals(1, disconnects.get());
+        assertEquals("", out.toString());
+    }
+
+    /**
+     * Test if messages sent from many threads at once never take more room than the capacity.
+     */
+    @Test
+    void concurrentSendersStayWithinCapacityTest() throws InterruptedException {
+        int line = ("MOVE~0" + LINE_END).length();
+        for (SlowConsumerPolicy policy : new SlowConsumerPolicy[] {SlowConsumerPolicy.DROP, SlowConsumerPolicy.DEGRADE}) {
+            Outbox outbox = new Outbox(out, task -> { }, () -> true, 10 * line, policy, disconnects::incrementAndGet);
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicBoolean exceeded = new AtomicBoolean();
+            List<Thread> senders = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                Thread sender = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        outbox.send("MOVE~" + j % 10);
+                        if (outbox.getWaitingChars() > outbox.getCapacity()) {
+                            exceeded.set(true);
+                        }
+                    }
+                });
+                sender.start();
+                senders.add(sender);
+            }
+            start.countDown();
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            assertFalse(exceeded.get());
+            assertEquals(10 * line, outbox.getWaitingChars());
+        }
+    }
+
+    /**
+     * Test if closing the outbox discards the waiting messages from its count.
+     */
+    @Test
+    void closeDiscardsWaitingMessagesTest() {
+        Outbox outbox = outbox(Outbox.DEFAULT_CAPACITY, SlowConsumerPolicy.DISCONNECT);
+        outbox.send("MOVE~1");
+        outbox.send("MOVE~2");
+        outbox.close();
+        assertEquals(0, outbox.getWaitingChars());
+        runTasks();
+        assertEquals("", out.toString());
+    }
+
+    /**
+     * Test if the messages wait while the writer is busy and are sent once it resumes.
+     */
+    @Test
+    void waitsForTheWriterTest() {
+        AtomicBoolean writable = new AtomicBoolean(false);
+        Outbox outbox = new Outbox(out, Runnable::run, writable::get, Outbox.DEFAULT_CAPACITY,
+                SlowConsumerPolicy.DISCONNECT, disconnects::incrementAndGet);
+        outbox.send("HELLO~username");
+        outbox.send("");
+        assertEquals("", out.toString());
+        assertEquals(("HELLO~username" + LINE_END + LINE_END).length(), outbox.getWaitingChars());
+
+        writable.set(true);
+        outbox.resume();
+        assertEquals("HELLO~username" + LINE_END + LINE_END, out.toString());
+        assertEquals(0, outbox.getWaitingChars());
+    }
+
+    /**
+     * Test if a failing write closes the connection.
+     */
+    @Test
+    void failedWriteDisconnectsTest() {
+        Writer broken = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                throw new IOException("Connection reset");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Outbox outbox = new Outbox(broken, Runnable::run, () -> true, Outbox.DEFAULT_CAPACITY,
+                SlowConsumerPolicy.DROP, disconnects::incrementAndGet);
+        outbox.send("MOVE~1");
+        assertEquals(1, disconnects.get());
+        outbox.send("MOVE~2");
+        assertEquals(0, outbox.getSent());
+    }
+}
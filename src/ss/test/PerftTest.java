@@ -0,0 +1,98 @@
+package ss.test;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PerftTest {
+
+    private final Perft perft = new Perft(2, 0);
+
+    @AfterEach
+    void tearDown() {
+        perft.shutdown();
+    }
+
+    private static long[] cellsOf(Board board) {
+        long[] cells = BitBoard.newCells();
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            BitBoard.set(cells, i, BitBoard.encode(board.getColour(i)));
+        }
+        return cells;
+    }
+
+    /**
+     * Plays random single moves on a new board until only double moves are left.
+     */
+    private static Board boardWithoutSingleMoves(SplittableRandom random) {
+        Board board = new Board(random);
+        Move move = new Move(board);
+        Player player = new HumanPlayer("player");
+        int singles = move.getSingleMovesMask();
+        while (singles != 0) {
+            for (int skip = random.nextInt(Integer.bitCount(singles)); skip > 0; skip--) {
+                singles &= singles - 1;
+            }
+            move.singleMove(player, Integer.numberOfTrailingZeros(singles));
+            singles = move.getSingleMovesMask();
+        }
+        return board;
+    }
+
+    @Test
+    void shallowCountsTest() {
+        Board board = new Board(new SplittableRandom(3));
+        long[] cells = cellsOf(board);
+        assertEquals(1, perft.count(cells, 0));
+        assertEquals(Integer.bitCount(MoveGenerator.legalSingleMoves(cells)), perft.count(cells, 1));
+    }
+
+    @Test
+    void moveAgreesWithPackedRulesTest() {
+        SplittableRandom random = new SplittableRandom(19);
+        for (int game = 0; game < 4; game++) {
+            Board board = new Board(random);
+            for (int depth = 1; depth <= 3; depth++) {
+                assertEquals(perft.count(cellsOf(board), depth), Perft.countWithMove(board, depth),
+                        "board " + game + " depth " + depth);
+            }
+        }
+        for (int game = 0; game < 4; game++) {
+            Board board = boardWithoutSingleMoves(random);
+            long[] cells = cellsOf(board);
+            for (int depth = 1; depth <= 2; depth++) {
+                assertEquals(perft.count(cells, depth), Perft.countWithMove(board, depth),
+                        "blocked board " + game + " depth " + depth);
+            }
+            // The board is left as it was
+            assertArrayEquals(cells, cellsOf(board));
+        }
+    }
+
+    @Test
+    void splitAndTableKeepCountsTest() {
+        long[] cells = cellsOf(new Board(new SplittableRandom(5)));
+        Perft sequential = new Perft(1, 0);
+        Perft tabled = new Perft(3, 1 << 12);
+        try {
+            long expected = sequential.count(cells, 5);
+            assertEquals(expected, perft.count(cells, 5));
+            assertEquals(expected, tabled.count(cells, 5));
+            assertEquals(expected, tabled.count(cells, 5));
+            assertTrue(tabled.getTableHits() > 0);
+
+            long sum = 0;
+            for (long entry : perft.divide(cells, 5)) {
+                sum += entry & (1L << 48) - 1;
+            }
+            assertEquals(expected, sum);
+        } finally {
+            sequential.shutdown();
+            tabled.shutdown();
+        }
+    }
+}
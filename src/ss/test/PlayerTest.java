@@ -4,7 +4,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ss.gamedesign.*;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class PlayerTest {
 
@@ -87,4 +89,34 @@ public class PlayerTest {
         assertEquals(4, players[0].getNumberOfBalls());
     }
 
+    /**
+     * Test if the points, the number of balls and the map view follow
+     * every collected ball without being recalculated.
+     */
+    @Test
+    void countsFollowEveryBallTest() {
+        Map<Colour, Integer> balls = players[0].getPlayerBalls();
+        assertEquals(6, balls.size());
+        assertFalse(balls.containsKey(Colour.EMPTY));
+        for (int i = 0; i < 7; i++) {
+            players[0].increasePlayerBalls(Colour.GREEN);
+        }
+        players[0].increasePlayerBalls(Colour.EMPTY);
+        assertEquals(7, balls.get(Colour.GREEN));
+        assertEquals(2, players[0].getPoints());
+        assertEquals(7, players[0].getNumberOfBalls());
+
+        // Recounting gives the same totals, however often it is done
+        players[0].setPoints();
+        players[0].setPoints();
+        players[0].setNumberOfBalls();
+        assertEquals(2, players[0].getPoints());
+        assertEquals(7, players[0].getNumberOfBalls());
+
+        players[1].setPlayerBalls(Map.of(Colour.RED, 4, Colour.BLUE, 2));
+        assertEquals(1, players[1].getPoints());
+        assertEquals(6, players[1].getNumberOfBalls());
+        assertEquals(4, players[1].getBallCount(Colour.RED));
+        assertThrows(UnsupportedOperationException.class, () -> players[1].getPlayerBalls().put(Colour.RED, 0));
+    }
 }
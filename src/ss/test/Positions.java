@@ -0,0 +1,34 @@
+package ss.test;
+
+import ss.gamedesign.BitBoard;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random positions for the tests of the packed engine.
+ */
+final class Positions {
+
+    private Positions() {
+    }
+
+    /**
+     * Places balls of random colours on random empty fields.
+     * @requires balls >= 0 && balls <= BitBoard.SIZE
+     * @param random the source of the fields and colours
+     * @param balls the number of balls on the position
+     * @return the packed cells of the position, with exactly balls balls
+     */
+    static long[] random(SplittableRandom random, int balls) {
+        long[] cells = BitBoard.newCells();
+        int placed = 0;
+        while (placed < balls) {
+            int index = random.nextInt(BitBoard.SIZE);
+            if (BitBoard.get(cells, index) == BitBoard.EMPTY) {
+                BitBoard.set(cells, index, 1 + random.nextInt(6));
+                placed++;
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,67 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelfPlayTest {
+
+    @Test
+    void seedReplaysGameTest() {
+        for (long seed = 0; seed < 20; seed++) {
+            GameRecord first = SelfPlay.play(seed, Strategy.greedy().get(), Strategy.random().get());
+            GameRecord again = SelfPlay.play(seed, Strategy.greedy().get(), Strategy.random().get());
+            assertEquals(first.getStarter(), again.getStarter());
+            assertEquals(first.getMoves(), again.getMoves());
+            assertEquals(first.getWinner(), again.getWinner());
+            for (int strategy = 0; strategy < 2; strategy++) {
+                assertEquals(first.getPoints(strategy), again.getPoints(strategy));
+                assertEquals(first.getBalls(strategy), again.getBalls(strategy));
+            }
+        }
+    }
+
+    @Test
+    void recordIsConsistentTest() {
+        GameRecord record = SelfPlay.play(7, Strategy.random().get(), Strategy.random().get());
+        assertTrue(record.getMoves() > 0);
+        assertTrue(record.getBalls(0) + record.getBalls(1) <= 49);
+        assertTrue(record.getPoints(0) <= record.getBalls(0) / 3);
+        assertEquals(record.getNanos(0) + record.getNanos(1),
+                java.util.stream.IntStream.range(0, record.getMoves()).mapToLong(record::getTurnNanos).sum());
+        String[] columns = record.toCsv().split(",");
+        assertEquals(GameRecord.CSV_HEADER.split(",").length, columns.length);
+        assertEquals(record.getMoves(), columns[10].split(" ").length);
+    }
+
+    @Test
+    void runPlaysEveryGameOnceTest() throws InterruptedException {
+        List<GameRecord> records = new ArrayList<>();
+        new SelfPlay(Strategy.greedy(), Strategy.random(), 3).run(300, 1000, records::add);
+        assertEquals(300, records.size());
+        Set<Long> seeds = new HashSet<>();
+        int greedyWins = 0;
+        for (GameRecord record : records) {
+            seeds.add(record.getSeed());
+            if (record.getWinner() == 0) {
+                greedyWins++;
+            }
+        }
+        assertEquals(300, seeds.size());
+        assertTrue(seeds.contains(1000L) && seeds.contains(1299L));
+        assertTrue(greedyWins > 150, "greedy won " + greedyWins + " of 300 games against random");
+    }
+
+    @Test
+    void strategyNamesTest() {
+        assertNotNull(Strategy.forName("search:5").get());
+        assertThrows(IllegalArgumentException.class, () -> Strategy.forName("perfect"));
+        assertThrows(IllegalArgumentException.class, () -> Strategy.forName("search:soon"));
+    }
+}
@@ -0,0 +1,144 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymmetryTest {
+
+    private static long[] transform(int t, long[] cells) {
+        long[] out = BitBoard.newCells();
+        Symmetry.transform(t, cells, out);
+        return out;
+    }
+
+    @Test
+    void transformsArePermutationsTest() {
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++) {
+            boolean[] fields = new boolean[BitBoard.SIZE];
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                fields[Symmetry.mapField(t, i)] = true;
+                assertEquals(i, Symmetry.mapField(Symmetry.inverse(t), Symmetry.mapField(t, i)));
+            }
+            int commands = 0;
+            for (int c = 0; c < MoveGenerator.COMMANDS; c++) {
+                commands |= 1 << Symmetry.mapCommand(t, c);
+                assertEquals(c, Symmetry.mapCommand(Symmetry.inverse(t), Symmetry.mapCommand(t, c)));
+            }
+            for (boolean field : fields) {
+                assertTrue(field);
+            }
+            assertEquals(MoveGenerator.ALL_COMMANDS, commands);
+        }
+        assertEquals(7, Symmetry.mapCommand(4, 0), "mirroring turns a row to the left into one to the right");
+        assertEquals(20, Symmetry.mapCommand(1, 0), "a quarter turn turns row 0 to the left into column 6 up");
+    }
+
+    @Test
+    void slidesCommuteWithTransformsTest() {
+        SplittableRandom random = new SplittableRandom(17);
+        for (int round = 0; round < 200; round++) {
+            long[] cells = Positions.random(random, 10 + random.nextInt(40));
+            for (int t = 0; t < Symmetry.TRANSFORMS; t++) {
+                for (int c = 0; c < MoveGenerator.COMMANDS; c++) {
+                    long[] slid = cells.clone();
+                    BitBoard.slide(slid, c);
+                    long[] image = transform(t, cells);
+                    BitBoard.slide(image, Symmetry.mapCommand(t, c));
+                    assertArrayEquals(transform(t, slid), image);
+                }
+                assertEquals(Symmetry.mapCommands(t, MoveGenerator.legalSingleMoves(cells)),
+                        MoveGenerator.legalSingleMoves(transform(t, cells)));
+            }
+        }
+    }
+
+    @Test
+    void imagesShareCanonicalFormTest() {
+        SplittableRandom random = new SplittableRandom(23);
+        for (int round = 0; round < 200; round++) {
+            long[] cells = Positions.random(random, 1 + random.nextInt(49));
+            long[] canonical = BitBoard.newCells();
+            int t = Symmetry.canonicalize(cells, canonical, BitBoard.newCells());
+            assertArrayEquals(transform(t, cells), canonical);
+            for (int u = 0; u < Symmetry.TRANSFORMS; u++) {
+                long[] other = BitBoard.newCells();
+                Symmetry.canonicalize(transform(u, cells), other, BitBoard.newCells());
+                assertArrayEquals(canonical, other);
+            }
+        }
+    }
+
+    @Test
+    void colourPermutationsShareCanonicalFormTest() {
+        SplittableRandom random = new SplittableRandom(29);
+        for (int round = 0; round < 200; round++) {
+            long[] cells = Positions.random(random, 1 + random.nextInt(49));
+            int[] permutation = {0, 6, 5, 4, 3, 2, 1};
+            long[] swapped = BitBoard.newCells();
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                BitBoard.set(swapped, i, permutation[BitBoard.get(cells, i)]);
+            }
+            long[] canonical = BitBoard.newCells();
+            long[] other = BitBoard.newCells();
+            Symmetry.canonicalize(cells, canonical, BitBoard.newCells(), true);
+            Symmetry.canonicalize(transform(3, swapped), other, BitBoard.newCells(), true);
+            assertArrayEquals(canonical, other);
+        }
+    }
+
+    @Test
+    void symmetricMoveCacheMatchesGeneratorTest() {
+        SplittableRandom random = new SplittableRandom(31);
+        MoveCache cache = new MoveCache(1 << 10, true);
+        Board board = new Board(random);
+        long[] original = BitBoard.newCells();
+        for (int i = 0; i < BitBoard.SIZE; i++) {
+            BitBoard.set(original, i, BitBoard.encode(board.getColour(i)));
+        }
+        Board image = new Board();
+        for (int t = 0; t < Symmetry.TRANSFORMS; t++) {
+            long[] cells = transform(t, original);
+            for (int i = 0; i < BitBoard.SIZE; i++) {
+                image.setField(BitBoard.decode(BitBoard.get(cells, i)), i);
+            }
+            assertEquals(MoveGenerator.legalSingleMoves(cells), cache.singleMoves(image));
+            assertEquals(MoveGenerator.hasDoubleMove(cells), cache.hasDoubleMove(image));
+        }
+        assertEquals(1, cache.getSize());
+        assertEquals(14, cache.getHits());
+    }
+
+    @Test
+    void symmetricSolverMatchesPlainSolverTest() {
+        SplittableRandom random = new SplittableRandom(37);
+        EndgameSolver symmetric = new EndgameSolver(12, 1 << 14);
+        EndgameSolver plain = new EndgameSolver(12, 1 << 14);
+        plain.setSymmetric(false);
+        for (int round = 0; round < 20; round++) {
+            long[] cells = Positions.random(random, 12);
+            int[] own = new int[PackedGame.CODES];
+            int[] opponent = new int[PackedGame.CODES];
+            own[1 + random.nextInt(6)] = random.nextInt(3);
+            for (int t = 0; t < Symmetry.TRANSFORMS; t++) {
+                long[] image = transform(t, cells);
+                SearchResult expected = plain.solve(image, own, opponent);
+                SearchResult result = symmetric.solve(image, own, opponent);
+                assertEquals(expected.getScore(), result.getScore());
+                if (result.getFirstCommand() != -1) {
+                    int move = result.isDoubleMove()
+                            ? PackedGame.doubleMove(result.getFirstCommand(), result.getSecondCommand())
+                            : result.getFirstCommand();
+                    int[] moves = new int[PackedGame.MAX_MOVES];
+                    int count = PackedGame.generate(image, moves, BitBoard.newCells(), BitBoard.newCells());
+                    assertTrue(Arrays.stream(moves, 0, count).anyMatch(m -> m == move),
+                            "the best move is legal");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ss.test;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UndoJournalTest {
+
+    private static final int DIM = 7;
+
+    private Board board;
+    private UndoJournal journal;
+
+    @BeforeEach
+    public void setUp() {
+        board = new Board(new SplittableRandom(3));
+        journal = new UndoJournal();
+    }
+
+    private static void assertSameFields(Board expected, Board actual) {
+        for (int i = 0; i < DIM * DIM; i++) {
+            assertEquals(expected.getColour(i), actual.getColour(i), "field " + i);
+        }
+    }
+
+    @Test
+    void recordsOnlyChangedFieldsTest() {
+        Colour colour = board.getColour(0);
+        board.setJournal(journal);
+        board.setField(colour, 0);
+        assertEquals(0, journal.size());
+        board.setField(Colour.EMPTY, 0);
+        board.setField(Colour.EMPTY, 2, 3);
+        board.setJournal(null);
+        board.setField(Colour.EMPTY, 1);
+        assertEquals(2, journal.size());
+        assertEquals(0, journal.getIndex(0));
+        assertEquals(2 * DIM + 3, journal.getIndex(1));
+    }
+
+    @Test
+    void undoRestoresBoardTest() {
+        Board original = board.deepCopy();
+        board.setJournal(journal);
+        board.setField(Colour.EMPTY, 10);
+        int mark = journal.size();
+        board.setBoardFieldsToEmpty();
+        board.setField(Colour.RED, 10);
+        board.setJournal(null);
+
+        journal.undo(board, mark);
+        assertEquals(Colour.EMPTY, board.getColour(10));
+        assertEquals(original.getColour(11), board.getColour(11));
+        journal.undo(board);
+        assertEquals(0, journal.size());
+        assertSameFields(original, board);
+    }
+
+    @Test
+    void deepCopyKeepsCountersTest() {
+        Player player = new HumanPlayer("a");
+        Move move = new Move(board);
+        move.fillSingleMovesMap();
+        int command = Integer.numberOfTrailingZeros(move.getSingleMovesMask());
+        move.singleMove(player, command);
+        Board copy = board.deepCopy();
+        for (Colour colour : Colour.values()) {
+            assertEquals(board.getColourCounter().get(colour), copy.getColourCounter().get(colour));
+        }
+        assertSameFields(board, copy);
+    }
+
+    @Test
+    void invalidDoubleMoveIsUndoneTest() {
+        board.setBoardFieldsToEmpty();
+        board.setField(Colour.BLUE, 0, 1);
+        board.setField(Colour.RED, 1, 1);
+        board.setField(Colour.GREEN, 4, 4);
+        Move move = new Move(board);
+        Board original = board.deepCopy();
+        move.doubleMove(new HumanPlayer("a"), 0, 21);
+        assertSameFields(original, board);
+        assertEquals(0, move.getJournal().size());
+    }
+
+    @Test
+    void validMoveJournalsChangedFieldsTest() {
+        board.setBoardFieldsToEmpty();
+        board.setField(Colour.BLUE, 0, 1);
+        board.setField(Colour.BLUE, 1, 0);
+        Move move = new Move(board);
+        move.singleMove(new HumanPlayer("a"), 0);
+        // The slide writes (0,0) and (0,1), the removal clears (0,0) and (1,0)
+        assertEquals(4, move.getJournal().size());
+        for (int i = 0; i < DIM * DIM; i++) {
+            assertTrue(board.isEmptyField(i));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ss.test;
+
+import org.junit.jupiter.api.Test;
+import ss.gamedesign.*;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZobristTest {
+
+    private static final int DIM = 7;
+
+    /**
+     * Plays random single and double moves, including invalid double moves
+     * that are undone, and checks the hash after every move.
+     */
+    @Test
+    void incrementalHashMatchesRecomputeAfterPlayoutsTest() {
+        SplittableRandom random = new SplittableRandom(11);
+        Player player = new HumanPlayer("player");
+        for (int game = 0; game < 200; game++) {
+            Board board = new Board(random);
+            Move move = new Move(board);
+            assertEquals(board.computeHash(), board.getHash());
+            move.fillSingleMovesMap();
+            for (int turn = 0; turn < 60; turn++) {
+                int singles = move.getSingleMovesMask();
+                if (singles != 0 && random.nextInt(4) != 0) {
+                    move.singleMove(player, pickCommand(singles, random));
+                } else {
+                    move.doubleMove(player, random.nextInt(28), random.nextInt(28));
+                }
+                assertEquals(board.computeHash(), board.getHash(), "game " + game + " turn " + turn);
+            }
+        }
+    }
+
+    @Test
+    void hashFollowsFieldChangesTest() {
+        SplittableRandom random = new SplittableRandom(5);
+        Board board = new Board(random);
+        for (int i = 0; i < 500; i++) {
+            board.setField(Colour.values()[random.nextInt(Colour.values().length)], random.nextInt(DIM * DIM));
+            assertEquals(board.computeHash(), board.getHash());
+        }
+        board.setBoardFieldsToEmpty();
+        assertEquals(0, board.getHash());
+    }
+
+    @Test
+    void equalPositionsHaveEqualHashesTest() {
+        SplittableRandom random = new SplittableRandom(9);
+        Board board = new Board(random);
+        Board other = new Board(random);
+        assertNotEquals(board.getHash(), other.getHash());
+
+        Board copy = board.deepCopy();
+        assertEquals(board.getHash(), copy.getHash());
+        other.copyFieldsFrom(board);
+        assertEquals(board.getHash(), other.getHash());
+
+        // The same position reached by different writes
+        for (int i = 0; i < DIM * DIM; i++) {
+            other.setField(Colour.EMPTY, i);
+        }
+        for (int i = DIM * DIM - 1; i >= 0; i--) {
+            other.setField(board.getColour(i), i);
+        }
+        assertEquals(board.getHash(), other.getHash());
+    }
+
+    @Test
+    void undoRestoresHashTest() {
+        Board board = new Board(new SplittableRandom(2));
+        long hash = board.getHash();
+        UndoJournal journal = new UndoJournal();
+        board.setJournal(journal);
+        board.slide(3);
+        board.setField(Colour.EMPTY, 0);
+        board.slide(24);
+        board.setJournal(null);
+        journal.undo(board);
+        assertEquals(hash, board.getHash());
+        assertEquals(board.computeHash(), board.getHash());
+    }
+
+    private static int pickCommand(int moves, SplittableRandom random) {
+        for (int skip = random.nextInt(Integer.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1;
+        }
+        return Integer.numberOfTrailingZeros(moves);
+    }
+}